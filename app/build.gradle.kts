@@ -35,6 +35,8 @@ android {
 }
 
 dependencies {
+    implementation(project(":vision-core"))
+
     implementation("androidx.cardview:cardview:1.0.0")
     implementation ("com.google.firebase:firebase-messaging:23.4.0")
 
@@ -49,6 +51,7 @@ dependencies {
     implementation("com.google.firebase:firebase-auth")
     implementation("com.google.firebase:firebase-database")
     implementation ("com.squareup.okhttp3:okhttp:4.9.3")
+    testImplementation ("com.squareup.okhttp3:mockwebserver:4.9.3")
     implementation ("com.google.android.gms:play-services-location:21.0.1")
     implementation ("com.android.volley:volley:1.2.1")
     implementation ("androidx.recyclerview:recyclerview:1.3.2")
@@ -9,6 +9,7 @@ import android.speech.RecognizerIntent;
 import android.speech.SpeechRecognizer;
 import android.speech.RecognitionListener;
 import android.speech.tts.TextToSpeech;
+import android.speech.tts.UtteranceProgressListener;
 import android.view.MotionEvent;
 import android.view.View;
 import android.widget.ImageButton;
@@ -19,15 +20,25 @@ import androidx.appcompat.app.AppCompatDelegate;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
+import com.example.bazmeraah.ai.Diagnostics;
 import com.example.bazmeraah.ai.VisionEngine;
 import com.example.bazmeraah.ai.CurrencyEngine;
 import com.example.bazmeraah.ai.FaceEngine;
 import com.example.bazmeraah.ai.FaceDatabase;
+import com.example.bazmeraah.ai.InferenceExecutor;
+import com.example.bazmeraah.ai.ModelRuntime;
+import com.example.bazmeraah.ai.SceneDescriber;
+import com.example.bazmeraah.ai.StickCamera;
 
+import com.example.bazmeraah.vision.LatencyHistogram;
+
+import java.io.File;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class AI_Assistant extends AppCompatActivity {
 
@@ -45,10 +56,25 @@ public class AI_Assistant extends AppCompatActivity {
     private VisionEngine visionEngine;
     private CurrencyEngine currencyEngine;
     private FaceEngine faceEngine;
+    private SceneDescriber sceneDescriber;
     private FaceDatabase faceDatabase;
 
     private boolean isUrdu = false;
 
+    // 🕒 speech latency: speak() to audio start, and the user's query to its answer
+    private final LatencyHistogram ttsStartLatency = Diagnostics.get().stage("tts.start");
+    private final LatencyHistogram answerLatency = Diagnostics.get().stage("query.answer");
+    private final Map<String, Long> speakRequested = new ConcurrentHashMap<>();
+    private volatile long queryStartNanos;
+
+    // the latest single-shot query; a new utterance supersedes it, so a late answer is never spoken
+    private InferenceExecutor.Request activeQuery;
+
+    // main thread only, see announceIfReady
+    private boolean ttsReady;
+    private boolean readyAnnounced;
+    private final Set<String> settledModels = new HashSet<>(); // loaded and warmed up, or failed
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
 
@@ -63,14 +89,15 @@ public class AI_Assistant extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_ai_assistant);
 
+        // models load and warm up in the background through ModelRuntime
         visionEngine = new VisionEngine(this);
-        visionEngine.start();
-
         currencyEngine = new CurrencyEngine(this);
-        currencyEngine.start();
-
         faceEngine = new FaceEngine(this);
+        ModelRuntime.get(this).addReadyListener(readyListener);
+        visionEngine.start();
+        currencyEngine.start();
         faceEngine.start();
+        sceneDescriber = new SceneDescriber(this, visionEngine, currencyEngine, faceEngine);
 
         faceDatabase = new FaceDatabase(this);
 
@@ -110,19 +137,79 @@ public class AI_Assistant extends AppCompatActivity {
         tts = new TextToSpeech(this, status -> {
             if (status == TextToSpeech.SUCCESS) {
                 tts.setLanguage(isUrdu ? new Locale("ur", "PK") : Locale.US);
+                tts.setOnUtteranceProgressListener(utteranceListener);
                 speakIntro();
+                ttsReady = true;
+                announceIfReady();
             }
         });
     }
+
+    // answers go through here so the time until the audio starts is recorded
+    private void speakResult(String text, int queueMode, String utteranceId) {
+        speakRequested.put(utteranceId, System.nanoTime());
+        tts.speak(text, queueMode, null, utteranceId);
+    }
+
+    private final UtteranceProgressListener utteranceListener = new UtteranceProgressListener() {
+
+        @Override
+        public void onStart(String utteranceId) {
+            Long requested = speakRequested.remove(utteranceId);
+            if (requested == null) return;
+
+            long now = System.nanoTime();
+            ttsStartLatency.record(now - requested);
+
+            long query = queryStartNanos;
+            if (query != 0) {
+                answerLatency.record(now - query);
+                queryStartNanos = 0;
+            }
+        }
+
+        @Override public void onDone(String utteranceId) {}
+        @Override public void onError(String utteranceId) {}
+    };
     private void speakIntro() {
 
         String intro = isUrdu ?
-                "اے آئی اسسٹنٹ تیار ہے۔ آپ پوچھ سکتی ہیں سامنے کیا ہے، رنگ کیا ہے، نوٹ کیا ہے یا یہ کون ہے۔" :
-                "AI Assistant is ready. You can ask what is in front, what is the color, which currency note or who is this.";
+                "آپ پوچھ سکتی ہیں سامنے کیا ہے، رنگ کیا ہے، نوٹ کیا ہے یا یہ کون ہے۔" :
+                "You can ask what is in front, what is the color, which currency note or who is this.";
 
         tts.speak(intro, TextToSpeech.QUEUE_FLUSH, null, "INTRO");
     }
 
+    /* ================= READINESS ================= */
+
+    // ⏳ "ready" only once every model is loaded and warmed up, so the first answer is fast
+    private final ModelRuntime.ReadyListener readyListener = new ModelRuntime.ReadyListener() {
+        @Override
+        public void onModelReady(String modelName) {
+            settledModels.add(modelName);
+            announceIfReady();
+        }
+
+        @Override
+        public void onModelFailed(String modelName, Exception error) {
+            // waiting longer will not bring it back, don't hold up the others
+            settledModels.add(modelName);
+            announceIfReady();
+        }
+    };
+
+    private void announceIfReady() {
+        if (readyAnnounced || !ttsReady) return;
+
+        // already warm from an earlier visit, or every load has finished since
+        boolean warm = visionEngine.isReady() && currencyEngine.isReady() && faceEngine.isReady();
+        if (!warm && settledModels.size() < 3) return;
+
+        readyAnnounced = true;
+        tts.speak(isUrdu ? "اے آئی اسسٹنٹ تیار ہے" : "AI Assistant is ready",
+                TextToSpeech.QUEUE_ADD, null, "READY");
+    }
+
     /* ================= SPEECH ================= */
 
     private boolean hasRecordPermission() {
@@ -209,6 +296,9 @@ public class AI_Assistant extends AppCompatActivity {
                 .replace(",", "")
                 .trim();
 
+        queryStartNanos = System.nanoTime();
+        if (activeQuery != null) activeQuery.cancel();
+
         // 🔥 NOTE SAVE MODE
         if (isSavingNote) {
             saveNote(spoken);
@@ -233,6 +323,12 @@ public class AI_Assistant extends AppCompatActivity {
             return;
         }
 
+        // 🛠 DIAGNOSTICS (hidden): speaks the latency summary and writes the full report
+        if (spoken.contains("diagnostics") || spoken.contains("latency report")) {
+            speakDiagnostics();
+            return;
+        }
+
         // 🔥 NAVIGATION
         if (spoken.contains("main page") || spoken.contains("go back") || spoken.contains("back")) {
             tts.speak("Going to main page",
@@ -243,6 +339,32 @@ public class AI_Assistant extends AppCompatActivity {
             return;
         }
 
+        // 🔥 CONTINUOUS DESCRIBE
+        if (spoken.contains("stop") && visionEngine.isContinuous()) {
+            visionEngine.stopContinuous();
+            tts.speak(isUrdu ? "بیان روک دیا" : "Stopped describing",
+                    TextToSpeech.QUEUE_FLUSH, null, "CONTINUOUS");
+            return;
+        }
+
+        // 🔥 EVERYTHING AT ONCE (before continuous "describe")
+        if (spoken.contains("everything") || spoken.contains("sab kuch")) {
+            describeEverything();
+            return;
+        }
+
+        if (spoken.contains("describe") || spoken.contains("surroundings")) {
+            startDescribing();
+            return;
+        }
+
+        // 🔥 FACE SAMPLE, before SAVE: "add face" would match it too
+        if (spoken.contains("add sample") || spoken.contains("add face")
+                || spoken.contains("another sample") || spoken.contains("more face")) {
+            addFaceSample(extractSampleName(spoken));
+            return;
+        }
+
         // 🔥 FACE SAVE
         if (spoken.contains("save face")||spoken.contains("safe")||spoken.contains("save")||spoken.contains("face")) {
             String name = extractName(spoken);
@@ -274,7 +396,7 @@ public class AI_Assistant extends AppCompatActivity {
         // 🔥 COLOR
         if (spoken.contains("color") || spoken.contains("rang")) {
             String result = visionEngine.detectColorOfLastObject();
-            tts.speak(result, TextToSpeech.QUEUE_FLUSH, null, "COLOR");
+            speakResult(result, TextToSpeech.QUEUE_FLUSH, "COLOR");
             return;
         }
 
@@ -311,6 +433,24 @@ public class AI_Assistant extends AppCompatActivity {
         return words[words.length - 1];
     }
 
+    // "add a sample for Ali", "add face to Ali"
+    private String extractSampleName(String spoken) {
+
+        spoken = spoken.replace("add sample", "")
+                .replace("add a sample", "")
+                .replace("another sample", "")
+                .replace("add face", "")
+                .replace("more face", "")
+                .replace(" for ", " ")
+                .replace(" to ", " ")
+                .replace(" of ", " ")
+                .trim();
+
+        if (spoken.isEmpty()) return null;
+        String[] words = spoken.split(" ");
+        return words[words.length - 1];
+    }
+
     /* ================= FACE ================= */
 
     private void saveFace(String name) {
@@ -332,10 +472,42 @@ public class AI_Assistant extends AppCompatActivity {
                 "WAIT"
         );
 
-        faceEngine.saveFace(name, faceDatabase, new FaceEngine.FaceCallback() {
+        activeQuery = faceEngine.saveFace(name, faceDatabase, new FaceEngine.FaceCallback() {
+            @Override
+            public void onSuccess(String result) {
+                speakResult(result, TextToSpeech.QUEUE_FLUSH, "SAVED");
+            }
+
+            @Override
+            public void onError(String error) {
+                tts.speak(error, TextToSpeech.QUEUE_FLUSH, null, "ERROR");
+            }
+        });
+    }
+
+    private void addFaceSample(String name) {
+
+        if (name == null) {
+            tts.speak(
+                    isUrdu ? "نام بتائیں" : "Tell the name",
+                    TextToSpeech.QUEUE_FLUSH,
+                    null,
+                    "NO_NAME"
+            );
+            return;
+        }
+
+        tts.speak(
+                isUrdu ? "نمونہ لیا جا رہا ہے" : "Taking a sample",
+                TextToSpeech.QUEUE_FLUSH,
+                null,
+                "WAIT"
+        );
+
+        activeQuery = faceEngine.addSample(name, faceDatabase, new FaceEngine.FaceCallback() {
             @Override
             public void onSuccess(String result) {
-                tts.speak(result, TextToSpeech.QUEUE_FLUSH, null, "SAVED");
+                speakResult(result, TextToSpeech.QUEUE_FLUSH, "SAMPLE_ADDED");
             }
 
             @Override
@@ -354,10 +526,10 @@ public class AI_Assistant extends AppCompatActivity {
                 "WAIT"
         );
 
-        faceEngine.recognizeFace(faceDatabase, new FaceEngine.FaceCallback() {
+        activeQuery = faceEngine.recognizeFace(faceDatabase, new FaceEngine.FaceCallback() {
             @Override
             public void onSuccess(String result) {
-                tts.speak(result, TextToSpeech.QUEUE_FLUSH, null, "FOUND");
+                speakResult(result, TextToSpeech.QUEUE_FLUSH, "FOUND");
             }
 
             @Override
@@ -377,11 +549,62 @@ public class AI_Assistant extends AppCompatActivity {
                 "THINK"
         );
 
-        visionEngine.fetchSnapshotAndDetect(new VisionEngine.DetectionCallback() {
+        activeQuery = visionEngine.fetchSnapshotAndDetect(new VisionEngine.DetectionCallback() {
+
+            @Override
+            public void onResult(String spokenText) {
+                speakResult(spokenText, TextToSpeech.QUEUE_FLUSH, "RESULT");
+            }
+
+            @Override
+            public void onError() {
+                tts.speak(
+                        isUrdu ? "کیمرہ میں مسئلہ ہے" : "Camera error",
+                        TextToSpeech.QUEUE_FLUSH,
+                        null,
+                        "ERROR"
+                );
+            }
+        });
+    }
+
+    private void startDescribing() {
+
+        tts.speak(
+                isUrdu ? "ارد گرد بیان کر رہا ہوں" : "Describing surroundings",
+                TextToSpeech.QUEUE_FLUSH,
+                null,
+                "CONTINUOUS"
+        );
+
+        visionEngine.startContinuous(new VisionEngine.DetectionCallback() {
+
+            @Override
+            public void onResult(String spokenText) {
+                // queued so a new description never cuts off the previous one
+                speakResult(spokenText, TextToSpeech.QUEUE_ADD, "CONTINUOUS_RESULT");
+            }
+
+            @Override
+            public void onError() {
+            }
+        });
+    }
+
+    private void describeEverything() {
+
+        tts.speak(
+                isUrdu ? "سب کچھ دیکھ رہا ہوں" : "Checking everything",
+                TextToSpeech.QUEUE_FLUSH,
+                null,
+                "THINK"
+        );
+
+        activeQuery = sceneDescriber.describe(faceDatabase, new SceneDescriber.DescribeCallback() {
 
             @Override
             public void onResult(String spokenText) {
-                tts.speak(spokenText, TextToSpeech.QUEUE_FLUSH, null, "RESULT");
+                speakResult(spokenText, TextToSpeech.QUEUE_FLUSH, "EVERYTHING_RESULT");
             }
 
             @Override
@@ -396,6 +619,16 @@ public class AI_Assistant extends AppCompatActivity {
         });
     }
 
+    /* ================= DIAGNOSTICS ================= */
+
+    private void speakDiagnostics() {
+        File report = Diagnostics.get().export(this);
+        String summary = Diagnostics.get().spokenSummary();
+
+        tts.speak(report != null ? summary + ". Report saved." : summary,
+                TextToSpeech.QUEUE_FLUSH, null, "DIAGNOSTICS");
+    }
+
     /* ================= CURRENCY ================= */
 
     private void speakCurrency() {
@@ -407,11 +640,11 @@ public class AI_Assistant extends AppCompatActivity {
                 "WAIT"
         );
 
-        currencyEngine.fetchSnapshotAndDetect(new CurrencyEngine.DetectionCallback() {
+        activeQuery = currencyEngine.fetchSnapshotAndDetect(new CurrencyEngine.DetectionCallback() {
 
             @Override
             public void onResult(String result) {
-                tts.speak(result, TextToSpeech.QUEUE_FLUSH, null, "CURRENCY_RESULT");
+                speakResult(result, TextToSpeech.QUEUE_FLUSH, "CURRENCY_RESULT");
             }
 
             @Override
@@ -422,16 +655,44 @@ public class AI_Assistant extends AppCompatActivity {
         });
     }
 
+    @Override
+    protected void onResume() {
+        super.onResume();
+        // keep the latest stick frame in memory while the assistant is open
+        StickCamera.get().startStreaming();
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        if (visionEngine != null) visionEngine.stopContinuous();
+        StickCamera.get().stopStreaming();
+    }
+
     @Override
     protected void onDestroy() {
         super.onDestroy();
 
+        if (activeQuery != null) activeQuery.cancel();
+        ModelRuntime.get(this).removeReadyListener(readyListener);
         if (speechRecognizer != null) speechRecognizer.destroy();
         if (tts != null) tts.shutdown();
         if (visionEngine != null) visionEngine.close();
         if (currencyEngine != null) currencyEngine.close();
         if (faceEngine != null) faceEngine.close();
+        if (sceneDescriber != null) sceneDescriber.close();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+
+        // interpreters are reloaded on next use, drop the idle ones under pressure
+        if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            ModelRuntime.get(this).unloadIdle();
+        }
     }
+
     private void saveNote(String noteText) {
 
         SharedPreferences prefs = getSharedPreferences("NotesPrefs", MODE_PRIVATE);
@@ -2,47 +2,61 @@ package com.example.bazmeraah.ai;
 
 import android.content.Context;
 import android.content.SharedPreferences;
-import android.content.res.AssetFileDescriptor;
 import android.graphics.*;
-import android.os.Handler;
-import android.os.Looper;
 import android.util.Log;
 import android.speech.RecognizerIntent;
 import android.speech.SpeechRecognizer;
 import android.speech.RecognitionListener;
 
+import com.example.bazmeraah.vision.DetectionBuffer;
+import com.example.bazmeraah.vision.LatencyHistogram;
+import com.example.bazmeraah.vision.NonMaxSuppression;
+import com.example.bazmeraah.vision.TensorPacker;
+import com.example.bazmeraah.vision.YoloDecoder;
+
 import org.tensorflow.lite.Interpreter;
 import org.tensorflow.lite.Tensor;
 
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.nio.*;
-import java.nio.channels.FileChannel;
 import java.util.*;
 
 public class CurrencyEngine {
 
     private static final String TAG = "CURRENCY_ENGINE";
-    private static final String SNAPSHOT_URL = "http://192.168.4.1:5000/snapshot";
     private static final String MODEL_NAME = "best_currency_model_float32.tflite";
     private static final String LABEL_FILE = "currency_labels.txt";
     private static final String PREFS_NAME = "AppSettings";
     private static final String KEY_LANGUAGE_URDU = "language_urdu";
     private static final float CONF_THRESHOLD = 0.40f;
     private static final float NMS_THRESHOLD = 0.50f;
+    private static final int MAX_DETECTIONS_FOR_NMS = 50;
+    private static final int NUM_THREADS = ThreadSplit.forDevice().currencyThreads; // until calibrated, see ModelRuntime
 
     private final Context context;
+    private final ModelRuntime runtime;
+    private final InferenceExecutor executor = InferenceExecutor.forModel(MODEL_NAME);
     private boolean isUrdu = false;
-    private final Handler mainHandler = new Handler(Looper.getMainLooper());
 
-    private Interpreter tflite;
     private List<String> labels = new ArrayList<>();
 
     private int inputWidth, inputHeight, inputChannels;
     private int dim1, dim2;
     private boolean transposedOutput = false;
 
+    // reused for every query once the model shapes are known
+    private FrameContext frame;
+    private YoloDecoder decoder;
+    private final NonMaxSuppression nms = new NonMaxSuppression(NMS_THRESHOLD, MAX_DETECTIONS_FOR_NMS);
+
+    // 🕒 per-stage latency, see Diagnostics
+    private final LatencyHistogram totalLatency = Diagnostics.get().stage("currency.total");
+    private final LatencyHistogram acquireLatency = Diagnostics.get().stage("currency.acquire");
+    private final LatencyHistogram letterboxLatency = Diagnostics.get().stage("currency.letterbox");
+    private final LatencyHistogram packLatency = Diagnostics.get().stage("currency.pack");
+    private final LatencyHistogram inferLatency = Diagnostics.get().stage("currency.infer");
+    private final LatencyHistogram postprocessLatency = Diagnostics.get().stage("currency.postprocess");
+
     public interface DetectionCallback {
         void onResult(String result);
         void onError();
@@ -50,37 +64,37 @@ public class CurrencyEngine {
 
     public CurrencyEngine(Context context) {
         this.context = context;
+        this.runtime = ModelRuntime.get(context);
         SharedPreferences prefs = context.getSharedPreferences("AppSettings", Context.MODE_PRIVATE);
         isUrdu = prefs.getBoolean("language_urdu", false);
     }
 
+    // Optional: begins loading in the background, otherwise the first query loads it
     public void start() {
-        try {
-            MappedByteBuffer modelBuffer = loadModelFile(MODEL_NAME);
+        runtime.preload(MODEL_NAME, NUM_THREADS);
+    }
 
-            Interpreter.Options options = new Interpreter.Options();
-            options.setNumThreads(4);
-            tflite = new Interpreter(modelBuffer, options);
+    public boolean isReady() {
+        return runtime.isReady(MODEL_NAME);
+    }
 
-            Tensor inputTensor = tflite.getInputTensor(0);
-            int[] inShape = inputTensor.shape();
-            inputHeight = inShape[1];
-            inputWidth = inShape[2];
-            inputChannels = inShape[3];
+    private void readModelInfo(Interpreter tflite) {
 
-            Tensor outputTensor = tflite.getOutputTensor(0);
-            int[] outShape = outputTensor.shape();
+        Tensor inputTensor = tflite.getInputTensor(0);
+        int[] inShape = inputTensor.shape();
+        inputHeight = inShape[1];
+        inputWidth = inShape[2];
+        inputChannels = inShape[3];
 
-            dim1 = outShape[1];
-            dim2 = outShape[2];
+        Tensor outputTensor = tflite.getOutputTensor(0);
+        int[] outShape = outputTensor.shape();
 
-            if (dim1 < dim2) transposedOutput = true;
+        if (outShape[1] < outShape[2]) transposedOutput = true;
 
-            loadLabels();
+        loadLabels();
 
-        } catch (Exception e) {
-            Log.e(TAG, "Model load failed", e);
-        }
+        dim2 = outShape[2];
+        dim1 = outShape[1];
     }
 
     private void loadLabels() {
@@ -96,210 +110,102 @@ public class CurrencyEngine {
         }
     }
 
-    private MappedByteBuffer loadModelFile(String modelName) throws Exception {
-        AssetFileDescriptor fd = context.getAssets().openFd(modelName);
-        FileInputStream fis = new FileInputStream(fd.getFileDescriptor());
-        FileChannel fileChannel = fis.getChannel();
-        return fileChannel.map(FileChannel.MapMode.READ_ONLY,
-                fd.getStartOffset(),
-                fd.getDeclaredLength());
-    }
+    /**
+     * Queues a single-shot query on the model's executor. A newer query
+     * supersedes it, and its answer is then dropped instead of delivered.
+     */
+    public InferenceExecutor.Request fetchSnapshotAndDetect(DetectionCallback callback) {
 
-    public void fetchSnapshotAndDetect(DetectionCallback callback) {
+        return executor.submit(request -> {
+            long start = System.nanoTime();
 
-        new Thread(() -> {
-            try {
-                URL url = new URL(SNAPSHOT_URL);
-                HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-                conn.connect();
+            // shared with other queries, the bitmap is not ours to recycle
+            try (FrameCache.Lease<StickFrame> frame = StickCamera.get().acquireFrame()) {
+                if (frame == null) throw new IOException("No frame from the stick camera");
 
-                InputStream is = conn.getInputStream();
-                Bitmap bitmap = BitmapFactory.decodeStream(is);
-                is.close();
-                conn.disconnect();
-
-                if (bitmap == null) {
-                    mainHandler.post(callback::onError);
-                    return;
-                }
-
-                String result = runDetection(bitmap);
-
-                mainHandler.post(() -> callback.onResult(result));
-
-            } catch (Exception e) {
-                Log.e(TAG, "Snapshot failed", e);
-                mainHandler.post(callback::onError);
+                request.throwIfCancelled(); // superseded while fetching
+                String result = detectIn(frame.value);
+                totalLatency.recordSince(start);
+                if (result != null) return result;
+                return isUrdu ? "کرنسی شناخت نہیں ہو سکی" : "Currency not detected";
             }
-        }).start();
-    }
-
-    private String runDetection(Bitmap bitmap) {
-
-        ByteBuffer input = letterbox(bitmap);
-
-        float[][][] output = new float[1][dim1][dim2];
-        tflite.run(input, output);
-
-        return decodeYOLO(output);
-    }
-
-    private String decodeYOLO(float[][][] output) {
-
-        List<Detection> detections = new ArrayList<>();
-
-        int boxes = transposedOutput ? dim2 : dim1;
-        int elements = transposedOutput ? dim1 : dim2;
-
-        for (int i = 0; i < boxes; i++) {
-
-            float[] row = new float[elements];
-
-            for (int j = 0; j < elements; j++) {
-                row[j] = transposedOutput ?
-                        output[0][j][i] :
-                        output[0][i][j];
+        }, new InferenceExecutor.Callback<String>() {
+            @Override
+            public void onResult(String result) {
+                callback.onResult(result);
             }
 
-            float x = row[0];
-            float y = row[1];
-            float w = row[2];
-            float h = row[3];
-
-            int bestClass = -1;
-            float bestScore = 0f;
-
-            for (int c = 4; c < elements; c++) {
-                if (row[c] > bestScore) {
-                    bestScore = row[c];
-                    bestClass = c - 4;
-                }
-            }
-
-            if (bestScore > CONF_THRESHOLD) {
-                detections.add(new Detection(x, y, w, h, bestScore, bestClass));
+            @Override
+            public void onError(Exception error) {
+                Log.e(TAG, "Snapshot failed", error);
+                callback.onError();
             }
-        }
-
-        List<Detection> finalDetections = applyNMS(detections);
-        if (finalDetections.isEmpty())
-            return isUrdu ? "کرنسی شناخت نہیں ہو سکی" : "Currency not detected";
-        Detection best = finalDetections.get(0);
-
-        if (best.classId >= 0 && best.classId < labels.size()) {
-
-            String label = labels.get(best.classId);
-
-            return isUrdu
-                    ? "یہ " + label + " کا نوٹ ہے"
-                    : "This is a " + label + " rupee note";
-
-        }
-
-        return "Currency detected";
+        });
     }
 
-    private List<Detection> applyNMS(List<Detection> detections) {
+    /**
+     * Blocking, also used by SceneDescriber to run next to the other models:
+     * the note that is seen, or null when there is none.
+     */
+    public synchronized String detectIn(StickFrame stickFrame) throws Exception {
 
-        detections.sort((a, b) ->
-                Float.compare(b.confidence, a.confidence));
+        long t = System.nanoTime();
+        Interpreter tflite = runtime.acquire(MODEL_NAME, NUM_THREADS);
+        acquireLatency.recordSince(t);
 
-        List<Detection> result = new ArrayList<>();
-
-        for (Detection d : detections) {
-
-            boolean keep = true;
-
-            for (Detection r : result) {
-                if (iou(d, r) > NMS_THRESHOLD) {
-                    keep = false;
-                    break;
-                }
-            }
-
-            if (keep) result.add(d);
+        try {
+            if (dim1 == 0) readModelInfo(tflite);
+            if (frame == null) createFrameContext();
+
+            // decoded at (just above) the input size, timed as camera.decode
+            Bitmap bitmap = stickFrame.forModel(inputWidth, inputHeight);
+            if (bitmap == null) throw new IOException("Undecodable stick frame");
+
+            t = System.nanoTime();
+            frame.letterbox(bitmap, Color.BLACK);
+            t = letterboxLatency.recordSince(t);
+            TensorPacker.packFloatRgb(frame.pixels, frame.pixels.length, frame.input);
+            t = packLatency.recordSince(t);
+
+            tflite.run(frame.input, frame.prepareOutput());
+            t = inferLatency.recordSince(t);
+            decoder.decode(frame.readOutput(), dim1, dim2, transposedOutput, frame.candidates);
+
+            String result = describeDetections(frame.candidates);
+            postprocessLatency.recordSince(t);
+            return result;
+        } finally {
+            runtime.release(MODEL_NAME);
         }
-
-        return result;
     }
 
-    private float iou(Detection a, Detection b) {
-
-        float left = Math.max(a.x - a.w / 2, b.x - b.w / 2);
-        float right = Math.min(a.x + a.w / 2, b.x + b.w / 2);
-        float top = Math.max(a.y - a.h / 2, b.y - b.h / 2);
-        float bottom = Math.min(a.y + a.h / 2, b.y + b.h / 2);
-
-        float inter = Math.max(0, right - left) *
-                Math.max(0, bottom - top);
-
-        float union = a.w * a.h + b.w * b.h - inter + 1e-6f;
-
-        return inter / union;
+    private void createFrameContext() {
+        int anchors = transposedOutput ? dim2 : dim1;
+        frame = new FrameContext(inputWidth, inputHeight, inputChannels, 4,
+                dim1 * dim2, 4, anchors);
+        decoder = new YoloDecoder(labels, null, CONF_THRESHOLD, CONF_THRESHOLD, 0f);
     }
 
-    private ByteBuffer letterbox(Bitmap bitmap) {
-
-        float scale = Math.min(
-                (float) inputWidth / bitmap.getWidth(),
-                (float) inputHeight / bitmap.getHeight());
-
-        int newW = Math.round(bitmap.getWidth() * scale);
-        int newH = Math.round(bitmap.getHeight() * scale);
-
-        Bitmap resized = Bitmap.createScaledBitmap(bitmap, newW, newH, true);
-
-        Bitmap outputBitmap = Bitmap.createBitmap(
-                inputWidth, inputHeight,
-                Bitmap.Config.ARGB_8888);
-
-        Canvas canvas = new Canvas(outputBitmap);
-        canvas.drawColor(Color.BLACK);
+    private String describeDetections(DetectionBuffer detections) {
 
-        int dx = (inputWidth - newW) / 2;
-        int dy = (inputHeight - newH) / 2;
+        if (nms.apply(detections) == 0) return null;
 
-        canvas.drawBitmap(resized, dx, dy, null);
+        int best = detections.classId[0];
 
-        ByteBuffer buffer = ByteBuffer.allocateDirect(
-                inputWidth * inputHeight * inputChannels * 4);
+        if (best >= 0 && best < labels.size()) {
 
-        buffer.order(ByteOrder.nativeOrder());
+            String label = labels.get(best);
 
-        int[] pixels = new int[inputWidth * inputHeight];
-        outputBitmap.getPixels(pixels, 0, inputWidth,
-                0, 0, inputWidth, inputHeight);
+            return isUrdu
+                    ? "یہ " + label + " کا نوٹ ہے"
+                    : "This is a " + label + " rupee note";
 
-        for (int pixel : pixels) {
-            buffer.putFloat(((pixel >> 16) & 0xFF) / 255f);
-            buffer.putFloat(((pixel >> 8) & 0xFF) / 255f);
-            buffer.putFloat((pixel & 0xFF) / 255f);
         }
 
-        buffer.rewind();
-        return buffer;
+        return "Currency detected";
     }
 
+    // The interpreter is shared through ModelRuntime, nothing to free per engine
     public void close() {
-        if (tflite != null) {
-            tflite.close();
-            tflite = null;
-        }
-    }
-
-    private static class Detection {
-        float x, y, w, h;
-        float confidence;
-        int classId;
-
-        Detection(float x, float y, float w,
-                  float h, float conf, int id) {
-            this.x = x;
-            this.y = y;
-            this.w = w;
-            this.h = h;
-            this.confidence = conf;
-            this.classId = id;
-        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,124 @@
+package com.example.bazmeraah.ai;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.bazmeraah.vision.LatencyHistogram;
+import com.example.bazmeraah.vision.LatencyStats;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Per-stage latency of every AI pipeline, for field diagnostics without a
+ * debugger. Stages are named "pipeline.stage"; a pipeline's end-to-end
+ * time is its "total" stage. The report is written to the app's external
+ * files dir (readable with adb) and a short summary can be spoken.
+ */
+public class Diagnostics {
+
+    private static final String TAG = "DIAGNOSTICS";
+
+    private static final Diagnostics instance = new Diagnostics();
+
+    public static Diagnostics get() {
+        return instance;
+    }
+
+    private final LatencyStats latency = new LatencyStats();
+
+    private Diagnostics() {
+    }
+
+    /** The histogram for a stage; engines look theirs up once and keep them. */
+    public LatencyHistogram stage(String name) {
+        return latency.stage(name);
+    }
+
+    public LatencyStats latency() {
+        return latency;
+    }
+
+    /** Writes the full report to a timestamped file and returns it, or null on failure. */
+    public File export(Context context) {
+        File dir = context.getExternalFilesDir(null);
+        if (dir == null) dir = context.getFilesDir();
+
+        String stamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(new Date());
+        File file = new File(dir, "latency_" + stamp + ".txt");
+
+        try {
+            latency.writeTo(file);
+            Log.d(TAG, "Latency report written to " + file + "\n" + latency.report());
+            return file;
+        } catch (IOException e) {
+            Log.e(TAG, "Latency export failed", e);
+            return null;
+        }
+    }
+
+    /**
+     * For each pipeline that has run: its median and 95th percentile total
+     * and the stage with the worst 95th percentile, e.g. "vision: 12 queries,
+     * median 420, p95 610 milliseconds, slowest infer at 380".
+     */
+    public String spokenSummary() {
+        List<String> names = latency.names();
+        List<String> parts = new ArrayList<>();
+
+        for (String name : names) {
+            if (!name.endsWith(".total")) continue;
+
+            LatencyHistogram total = latency.stage(name);
+            if (total.count() == 0) continue;
+
+            String pipeline = name.substring(0, name.length() - ".total".length());
+            StringBuilder part = new StringBuilder(String.format(Locale.US,
+                    "%s: %d queries, median %d, p95 %d milliseconds", pipeline, total.count(),
+                    Math.round(total.percentileMs(0.5)), Math.round(total.percentileMs(0.95))));
+
+            String slowest = slowestStage(names, pipeline + ".");
+            if (slowest != null) {
+                part.append(", slowest ").append(slowest.substring(pipeline.length() + 1))
+                        .append(" at ").append(Math.round(latency.stage(slowest).percentileMs(0.95)));
+            }
+            parts.add(part.toString());
+        }
+
+        // stages shared by every pipeline, the camera and speech
+        for (String name : names) {
+            if (name.startsWith("camera.") || name.startsWith("tts.") || name.startsWith("query.")) {
+                LatencyHistogram h = latency.stage(name);
+                if (h.count() == 0) continue;
+                parts.add(String.format(Locale.US, "%s p95 %d",
+                        name.replace('.', ' '), Math.round(h.percentileMs(0.95))));
+            }
+        }
+
+        return parts.isEmpty() ? "No timings recorded yet" : String.join(". ", parts);
+    }
+
+    private String slowestStage(List<String> names, String prefix) {
+        String slowest = null;
+        double worst = -1;
+
+        for (String name : names) {
+            if (!name.startsWith(prefix) || name.endsWith(".total")) continue;
+
+            LatencyHistogram h = latency.stage(name);
+            if (h.count() == 0) continue;
+
+            double p95 = h.percentileMs(0.95);
+            if (p95 > worst) {
+                worst = p95;
+                slowest = name;
+            }
+        }
+        return slowest;
+    }
+}
@@ -4,133 +4,194 @@ import android.content.Context;
 import android.content.SharedPreferences;
 import android.util.Log;
 
+import com.example.bazmeraah.vision.EmbeddingMatrix;
+import com.example.bazmeraah.vision.EmbeddingStore;
+import com.example.bazmeraah.vision.IvfFaceIndex;
+
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.util.HashMap;
+import java.io.File;
+import java.io.IOException;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
+/**
+ * Saved faces, in a binary {@link EmbeddingStore} (faces.bin in the files
+ * dir) shared by every FaceDatabase in the process. Faces saved by older
+ * versions as JSON in SharedPreferences are moved over on first open.
+ * Each person keeps up to {@link #MAX_SAMPLES} embeddings. People are
+ * shortlisted through an {@link IvfFaceIndex} (faces.ivf), exact until a
+ * few hundred are saved. New stores keep embeddings as int8; a store saved
+ * as float32 by an older version stays so until it is cleared.
+ */
 public class FaceDatabase {
 
     private static final String TAG = "FACE_DB";
     private static final String PREF_NAME = "FaceDB";
-    private static final String KEY_DATA = "faces";
+    private static final String KEY_DATA = "faces"; // JSON, before the binary store
+    private static final String STORE_FILE = "faces.bin";
+    private static final String INDEX_FILE = "faces.ivf";
+    // a quarter of the bytes; L2 within 0.01 of float32, see Int8EmbeddingTest
+    private static final EmbeddingStore.Encoding ENCODING = EmbeddingStore.Encoding.INT8;
+
+    /** Samples kept per person; past this the most redundant one is replaced. */
+    public static final int MAX_SAMPLES = 5;
 
-    private SharedPreferences prefs;
+    private static EmbeddingStore sharedStore;
+
+    private final EmbeddingStore store;
 
     public FaceDatabase(Context context) {
-        prefs = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+        store = open(context.getApplicationContext());
     }
 
-    /* ================= SAVE ================= */
-
-    public void saveFace(String name, float[] embedding) {
+    // one store per process, so every screen sees the same index
+    private static synchronized EmbeddingStore open(Context context) {
+        if (sharedStore != null) return sharedStore;
 
+        File file = new File(context.getFilesDir(), STORE_FILE);
+        File indexFile = new File(context.getFilesDir(), INDEX_FILE);
         try {
-            JSONObject allFaces = getAllFacesJSON();
-            JSONArray array = new JSONArray();
-
-            for (float v : embedding) {
-                array.put(v);
+            sharedStore = EmbeddingStore.open(file, IvfFaceIndex.open(indexFile, IvfFaceIndex.DEFAULT_NPROBE), ENCODING);
+        } catch (Exception e) {
+            Log.e(TAG, "Face store unreadable, set aside, starting empty", e);
+            file.renameTo(new File(file.getPath() + ".corrupt"));
+            indexFile.delete();
+            try {
+                sharedStore = EmbeddingStore.open(file, IvfFaceIndex.open(indexFile, IvfFaceIndex.DEFAULT_NPROBE), ENCODING);
+            } catch (Exception again) {
+                throw new IllegalStateException("Face store unavailable", again);
             }
+        }
 
-            allFaces.put(name, array);
-
-            // 🔥 Use commit (synchronous save)
-            boolean success = prefs.edit()
-                    .putString(KEY_DATA, allFaces.toString())
-                    .commit();
+        migrateJson(context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE), sharedStore);
+        return sharedStore;
+    }
 
-            Log.d(TAG, "Saved face: " + name);
-            Log.d(TAG, "Commit success: " + success);
-            debugPrintDatabase();
+    /* ================= SAVE ================= */
 
-        } catch (Exception e) {
+    /**
+     * @throws IllegalArgumentException the name is empty or longer than
+     *         {@link EmbeddingStore#NAME_BYTES} in UTF-8
+     * @throws IOException the store could not be written
+     */
+    public void saveFace(String name, float[] embedding) throws IOException {
+        try {
+            store.put(name, embedding);
+            Log.d(TAG, "Saved face: " + name + " (" + store.size() + " total)");
+        } catch (IOException | RuntimeException e) {
             Log.e(TAG, "Save error", e);
+            throw e;
         }
     }
 
-    /* ================= GET ALL ================= */
-
-    public Map<String, float[]> getAllFaces() {
-
-        Map<String, float[]> map = new HashMap<>();
-
+    /**
+     * Adds a sample for the person; returns how many they have now, at least 1.
+     * Throws as {@link #saveFace} does.
+     */
+    public int addSample(String name, float[] embedding) throws IOException {
         try {
-            JSONObject allFaces = getAllFacesJSON();
-            Iterator<String> keys = allFaces.keys();
-
-            while (keys.hasNext()) {
+            int samples = store.add(name, embedding, MAX_SAMPLES);
+            Log.d(TAG, "Added sample for " + name + " (" + samples + " of " + MAX_SAMPLES + ")");
+            return samples;
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Add sample error", e);
+            throw e;
+        }
+    }
 
-                String name = keys.next();
-                JSONArray arr = allFaces.getJSONArray(name);
+    /* ================= GET ALL ================= */
 
-                float[] embedding = new float[arr.length()];
+    /** Each person's centroid, copied, for listing. Recognition uses {@link #search}. */
+    public Map<String, float[]> getAllFaces() {
+        return store.toMap();
+    }
 
-                for (int i = 0; i < arr.length(); i++) {
-                    embedding[i] = (float) arr.getDouble(i);
-                }
+    /** The k closest people by their best sample, best first, each with its margin over the next. */
+    public List<EmbeddingMatrix.Hit> search(float[] embedding, int k) {
+        return store.search(embedding, k);
+    }
 
-                map.put(name, embedding);
-            }
+    public int size() {
+        return store.size();
+    }
 
-        } catch (Exception e) {
-            Log.e(TAG, "Read error", e);
-        }
+    public boolean contains(String name) {
+        return store.contains(name);
+    }
 
-        return map;
+    public int sampleCount(String name) {
+        return store.sampleCount(name);
     }
 
     /* ================= DEBUG PRINT ================= */
 
     public void debugPrintDatabase() {
 
-        Map<String, float[]> map = getAllFaces();
+        Log.d(TAG, "Total faces: " + store.size());
 
-        Log.d(TAG, "Total faces: " + map.size());
-
-        for (String name : map.keySet()) {
-            Log.d(TAG, "Saved name: " + name);
+        for (String name : store.names()) {
+            Log.d(TAG, "Saved name: " + name + " (" + store.sampleCount(name) + " samples)");
         }
     }
 
     /* ================= CLEAR DB (Testing) ================= */
 
     public void clearDatabase() {
-
-        prefs.edit().clear().commit();
-        Log.d(TAG, "Database cleared");
-    }
-
-    /* ================= INTERNAL ================= */
-
-    private JSONObject getAllFacesJSON() {
-
         try {
-            String data = prefs.getString(KEY_DATA, "{}");
-            return new JSONObject(data);
+            store.clear();
+            Log.d(TAG, "Database cleared");
         } catch (Exception e) {
-            Log.e(TAG, "JSON error", e);
-            return new JSONObject();
+            Log.e(TAG, "Clear error", e);
         }
     }
+
     public void deleteFace(String name) {
         try {
-            JSONObject allFaces = getAllFacesJSON();
+            if (store.remove(name)) Log.d(TAG, "Deleted: " + name);
+        } catch (IOException e) {
+            // the face is gone; the index is rewritten with the next change
+            Log.e(TAG, "Delete error", e);
+        }
+    }
 
-            // remove specific person
-            allFaces.remove(name);
+    /* ================= MIGRATION ================= */
 
-            // save back
-            prefs.edit()
-                    .putString(KEY_DATA, allFaces.toString())
-                    .commit();
+    // JSON {name: [floats]} from the SharedPreferences era; removed once copied
+    private static void migrateJson(SharedPreferences prefs, EmbeddingStore store) {
+        String data = prefs.getString(KEY_DATA, null);
+        if (data == null) return;
 
-            Log.d(TAG, "Deleted: " + name);
+        int moved = 0;
+        try {
+            JSONObject allFaces = new JSONObject(data);
+            Iterator<String> keys = allFaces.keys();
+
+            while (keys.hasNext()) {
+                String name = keys.next();
+                JSONArray arr = allFaces.getJSONArray(name);
 
+                float[] embedding = new float[arr.length()];
+                for (int i = 0; i < arr.length(); i++) embedding[i] = (float) arr.getDouble(i);
+
+                // a face saved since keeps its newer embedding
+                if (store.contains(name)) continue;
+                try {
+                    store.put(name, embedding);
+                    moved++;
+                } catch (IllegalArgumentException e) {
+                    Log.w(TAG, "Not migrated: " + name, e); // name too long or odd size
+                }
+            }
         } catch (Exception e) {
-            Log.e(TAG, "Delete error", e);
+            // keep the JSON, the next start tries again
+            Log.e(TAG, "Migration failed", e);
+            return;
         }
+
+        prefs.edit().remove(KEY_DATA).commit();
+        Log.d(TAG, "Migrated " + moved + " faces from SharedPreferences");
     }
-}
\ No newline at end of file
+}
@@ -2,46 +2,59 @@ package com.example.bazmeraah.ai;
 
 import android.content.Context;
 import android.content.SharedPreferences;
-import android.content.res.AssetFileDescriptor;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Rect;
-import android.os.Handler;
-import android.os.Looper;
 import android.util.Log;
 
+import com.google.android.gms.tasks.Tasks;
 import com.google.mlkit.vision.common.InputImage;
 import com.google.mlkit.vision.face.*;
 
+import com.example.bazmeraah.vision.EmbeddingMath;
+import com.example.bazmeraah.vision.EmbeddingMatrix;
+import com.example.bazmeraah.vision.LatencyHistogram;
+
 import org.tensorflow.lite.Interpreter;
 import org.tensorflow.lite.Tensor;
 
-import java.io.FileInputStream;
-import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.nio.MappedByteBuffer;
-import java.nio.channels.FileChannel;
-import java.util.Map;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 public class FaceEngine {
 
     private static final String TAG = "FACE_ENGINE";
     private static final String MODEL_NAME = "facenet.tflite";
-    private static final String SNAPSHOT_URL = "http://192.168.4.1:5000/snapshot";
+    private static final int NUM_THREADS = ThreadSplit.forDevice().faceThreads; // until calibrated, see ModelRuntime
+    private static final float MATCH_THRESHOLD = 0.9f; // L2, unit-length embeddings
+    private static final int TOP_K = 3;
+    private static final float AMBIGUOUS_MARGIN = 0.05f; // similarity between the two best, both matching
 
     private Context context;
+    private final ModelRuntime runtime;
     private boolean isUrdu;
-    private Interpreter interpreter;
-    private Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final InferenceExecutor executor = InferenceExecutor.forModel(MODEL_NAME);
 
     private int inputSize = 160;
     private int embeddingSize = 128;
 
     private FaceDetector detector;
 
+    // 🕒 per-stage latency, see Diagnostics
+    private final LatencyHistogram totalLatency = Diagnostics.get().stage("face.total");
+    private final LatencyHistogram detectLatency = Diagnostics.get().stage("face.detect");
+    private final LatencyHistogram cropLatency = Diagnostics.get().stage("face.crop");
+    private final LatencyHistogram acquireLatency = Diagnostics.get().stage("face.acquire");
+    private final LatencyHistogram preprocessLatency = Diagnostics.get().stage("face.preprocess");
+    private final LatencyHistogram inferLatency = Diagnostics.get().stage("face.infer");
+    private final LatencyHistogram matchLatency = Diagnostics.get().stage("face.match");
+    private final LatencyHistogram storeLatency = Diagnostics.get().stage("face.store");
+
+    // what a snapshot query does with the embedding
+    private enum Mode { RECOGNIZE, SAVE, ADD_SAMPLE }
+
     public interface FaceCallback {
         void onSuccess(String result);
         void onError(String error);
@@ -52,6 +65,7 @@ public class FaceEngine {
     public FaceEngine(Context context) {
 
         this.context = context;
+        this.runtime = ModelRuntime.get(context);
         SharedPreferences prefs = context.getSharedPreferences("AppSettings", Context.MODE_PRIVATE);
         isUrdu = prefs.getBoolean("language_urdu", false);
         FaceDetectorOptions options =
@@ -65,274 +79,298 @@ public class FaceEngine {
 
     /* ================= START (MODEL LOAD) ================= */
 
+    // Optional: begins loading in the background, otherwise the first query loads it
     public void start() {
-        try {
+        runtime.preload(MODEL_NAME, NUM_THREADS);
+    }
 
-            MappedByteBuffer modelBuffer = loadModelFile(context);
-            interpreter = new Interpreter(modelBuffer);
+    public boolean isReady() {
+        return runtime.isReady(MODEL_NAME);
+    }
 
-            Tensor inputTensor = interpreter.getInputTensor(0);
-            inputSize = inputTensor.shape()[1];
+    /* ================= SNAPSHOT ================= */
 
-            Tensor outputTensor = interpreter.getOutputTensor(0);
-            embeddingSize = outputTensor.shape()[1];
+    // blocking, runs on the face model's executor; errors carry the spoken message
+    private String query(InferenceExecutor.Request request,
+                         FaceDatabase database,
+                         Mode mode,
+                         String name) throws Exception {
 
-            Log.d(TAG, "Face model loaded");
+        long start = System.nanoTime();
 
-        } catch (Exception e) {
-            Log.e(TAG, "Model load failed", e);
+        // shared with other queries, the bitmap is not ours to recycle
+        try (FrameCache.Lease<StickFrame> frame = StickCamera.get().acquireFrame()) {
+            if (frame == null) throw new FaceException("Camera error");
+            request.throwIfCancelled(); // superseded while fetching
+
+            // full resolution: faces are small in a wide frame and get cropped out
+            Bitmap bitmap = frame.value.full();
+            if (bitmap == null) throw new FaceException("Camera error");
+            return processFace(request, bitmap, database, mode, name, start);
         }
     }
 
-    private MappedByteBuffer loadModelFile(Context context) throws Exception {
-        AssetFileDescriptor fd = context.getAssets().openFd(MODEL_NAME);
-        FileInputStream fis = new FileInputStream(fd.getFileDescriptor());
-        FileChannel channel = fis.getChannel();
-        return channel.map(FileChannel.MapMode.READ_ONLY,
-                fd.getStartOffset(),
-                fd.getDeclaredLength());
-    }
+    /**
+     * Blocking, for SceneDescriber: who is in the frame, or null when there
+     * is no face or nobody saved to compare with.
+     */
+    public String recognizeIn(InferenceExecutor.Request request,
+                              StickFrame frame,
+                              FaceDatabase database) throws Exception {
 
-    /* ================= SNAPSHOT ================= */
+        if (database.size() == 0) return null;
+        long start = System.nanoTime();
+
+        Bitmap bitmap = frame.full();
+        if (bitmap == null) return null;
 
-    private Bitmap fetchSnapshot() {
         try {
-            URL url = new URL(SNAPSHOT_URL);
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.connect();
-            InputStream is = conn.getInputStream();
-            Bitmap bitmap = BitmapFactory.decodeStream(is);
-            is.close();
-            conn.disconnect();
-            return bitmap;
-        } catch (Exception e) {
-            Log.e(TAG, "Snapshot failed", e);
-            return null;
+            return processFace(request, bitmap, database, Mode.RECOGNIZE, null, start);
+        } catch (FaceException e) {
+            return null; // no face, or it could not be read
         }
     }
 
     /* ================= MAIN PIPELINE ================= */
 
-    private void processFace(Bitmap bitmap,
-                             FaceDatabase database,
-                             FaceCallback callback,
-                             boolean isSave,
-                             String saveName) {
+    private String processFace(InferenceExecutor.Request request,
+                               Bitmap bitmap,
+                               FaceDatabase database,
+                               Mode mode,
+                               String name,
+                               long start) throws Exception {
 
         InputImage image = InputImage.fromBitmap(bitmap, 0);
+        long t = System.nanoTime();
 
-        detector.process(image)
-                .addOnSuccessListener(faces -> {
+        List<Face> faces;
+        try {
+            faces = Tasks.await(detector.process(image));
+        } catch (ExecutionException e) {
+            Log.e(TAG, "Face detection failed", e);
+            throw new FaceException(isUrdu ? "شناخت ناکام ہوگئی" : "Detection failed");
+        }
+        t = detectLatency.recordSince(t);
 
-                    if (faces.isEmpty()) {
-                        mainHandler.post(() ->
-                                callback.onError("No face detected"));
-                        return;
-                    }
+        if (faces.isEmpty()) {
+            totalLatency.recordSince(start);
+            throw new FaceException("No face detected");
+        }
+        request.throwIfCancelled();
+
+        Face face = faces.get(0);
+        Rect box = face.getBoundingBox();
+
+        Bitmap cropped = Bitmap.createBitmap(
+                bitmap,
+                Math.max(box.left, 0),
+                Math.max(box.top, 0),
+                Math.min(box.width(), bitmap.getWidth() - box.left),
+                Math.min(box.height(), bitmap.getHeight() - box.top)
+        );
+        cropLatency.recordSince(t);
+
+        float[] embedding = getEmbedding(cropped);
+        t = System.nanoTime();
+
+        if (embedding == null) throw new FaceException("Embedding failed");
+
+        // the one step not to drop half-way: a save that got this far is kept
+        if (mode == Mode.SAVE) {
+            try {
+                database.saveFace(name, embedding);
+            } catch (IllegalArgumentException e) {
+                throw new FaceException(isUrdu ? "نام بہت لمبا ہے" : "That name is too long");
+            } catch (IOException e) {
+                throw new FaceException(isUrdu ? "چہرہ محفوظ نہیں ہو سکا" : "Could not save the face");
+            }
+            storeLatency.recordSince(t);
+            totalLatency.recordSince(start);
 
-                    Face face = faces.get(0);
-                    Rect box = face.getBoundingBox();
+            return isUrdu
+                    ? "چہرہ " + name + " محفوظ ہو گیا"
+                    : "Face " + name + " saved";
+        }
 
-                    Bitmap cropped = Bitmap.createBitmap(
-                            bitmap,
-                            Math.max(box.left, 0),
-                            Math.max(box.top, 0),
-                            Math.min(box.width(), bitmap.getWidth() - box.left),
-                            Math.min(box.height(), bitmap.getHeight() - box.top)
-                    );
+        if (mode == Mode.ADD_SAMPLE) {
+            int samples;
+            try {
+                samples = database.addSample(name, embedding);
+            } catch (IOException | RuntimeException e) {
+                samples = 0;
+            }
+            if (samples <= 0) {
+                throw new FaceException(isUrdu ? "نمونہ محفوظ نہیں ہو سکا" : "Could not add the sample");
+            }
+            storeLatency.recordSince(t);
+            totalLatency.recordSince(start);
 
-                    float[] embedding = getEmbedding(cropped);
+            return isUrdu
+                    ? name + " کا نمونہ شامل ہو گیا، " + samples + " میں سے " + FaceDatabase.MAX_SAMPLES
+                    : "Added a sample for " + name + ", " + samples + " of " + FaceDatabase.MAX_SAMPLES;
+        }
 
-                    if (embedding == null) {
-                        mainHandler.post(() ->
-                                callback.onError("Embedding failed"));
-                        return;
-                    }
+        if (database.size() == 0) return isUrdu ? "ڈیٹابیس خالی ہے" : "Database empty";
 
-                    if (isSave) {
-
-                        database.saveFace(saveName, embedding);
-
-                        mainHandler.post(() ->
-                                callback.onSuccess(
-                                        isUrdu
-                                                ? "چہرہ " + saveName + " محفوظ ہو گیا"
-                                                : "Face " + saveName + " saved"
-                                ));
-
-                    } else {
-
-                        Map<String, float[]> db = database.getAllFaces();
-
-                        if (db.isEmpty()) {
-                            mainHandler.post(() ->
-                                    callback.onSuccess(
-                                            isUrdu
-                                                    ? "ڈیٹابیس خالی ہے"
-                                                    : "Database empty"
-                                    ));
-                            return;
-                        }
-
-                        String name = findBestMatch(embedding, db);
-
-                        if (name != null)
-                            mainHandler.post(() ->
-                                    callback.onSuccess(
-                                            isUrdu
-                                                    ? "یہ " + name + " ہے"
-                                                    : "This is " + name
-                                    ));
-                        else
-                            mainHandler.post(() ->
-                                    callback.onSuccess(
-                                            isUrdu
-                                                    ? "نامعلوم چہرہ"
-                                                    : "Unknown face"
-                                    ));
-                    }
+        List<EmbeddingMatrix.Hit> hits = database.search(embedding, TOP_K);
+        matchLatency.recordSince(t);
+        totalLatency.recordSince(start);
 
-                })
-                .addOnFailureListener(e ->
-                        mainHandler.post(() ->
-                                callback.onError(
-                                        isUrdu
-                                                ? "شناخت ناکام ہوگئی"
-                                                : "Detection failed"
-                                )));
+        return describeMatch(hits);
     }
-    /* ================= SAVE ================= */
 
-    public void saveFace(String name,
-                         FaceDatabase database,
-                         FaceCallback callback) {
+    // a failed query, with the message to speak
+    private static class FaceException extends Exception {
+        private static final long serialVersionUID = 1L;
 
-        new Thread(() -> {
-
-            Bitmap bitmap = fetchSnapshot();
+        FaceException(String message) {
+            super(message);
+        }
+    }
 
-            if (bitmap == null) {
-                mainHandler.post(() ->
-                        callback.onError("Camera error"));
-                return;
+    private static InferenceExecutor.Callback<String> deliverTo(FaceCallback callback) {
+        return new InferenceExecutor.Callback<String>() {
+            @Override
+            public void onResult(String result) {
+                callback.onSuccess(result);
             }
 
-            processFace(bitmap, database, callback, true, name);
-
-        }).start();
+            @Override
+            public void onError(Exception error) {
+                if (!(error instanceof FaceException)) Log.e(TAG, "Face query failed", error);
+                callback.onError(error instanceof FaceException ? error.getMessage() : "Camera error");
+            }
+        };
     }
 
-    /* ================= RECOGNIZE ================= */
+    /* ================= SAVE ================= */
 
-    public void recognizeFace(FaceDatabase database,
-                              FaceCallback callback) {
+    public InferenceExecutor.Request saveFace(String name,
+                                              FaceDatabase database,
+                                              FaceCallback callback) {
 
-        new Thread(() -> {
+        return executor.submit(
+                request -> query(request, database, Mode.SAVE, name),
+                deliverTo(callback));
+    }
 
-            Bitmap bitmap = fetchSnapshot();
+    /**
+     * Another sample of someone already saved, e.g. in different light, so
+     * they are still recognised when they look less like the first one.
+     */
+    public InferenceExecutor.Request addSample(String name,
+                                               FaceDatabase database,
+                                               FaceCallback callback) {
+
+        return executor.submit(
+                request -> {
+                    if (!database.contains(name)) {
+                        throw new FaceException(isUrdu
+                                ? name + " محفوظ نہیں ہے"
+                                : name + " is not saved yet");
+                    }
+                    return query(request, database, Mode.ADD_SAMPLE, name);
+                },
+                deliverTo(callback));
+    }
 
-            if (bitmap == null) {
-                mainHandler.post(() ->
-                        callback.onError("Camera error"));
-                return;
-            }
+    /* ================= RECOGNIZE ================= */
 
-            processFace(bitmap, database, callback, false, null);
+    public InferenceExecutor.Request recognizeFace(FaceDatabase database,
+                                                   FaceCallback callback) {
 
-        }).start();
+        return executor.submit(
+                request -> query(request, database, Mode.RECOGNIZE, null),
+                deliverTo(callback));
     }
 
     /* ================= EMBEDDING ================= */
 
     private float[] getEmbedding(Bitmap faceBitmap) {
 
-        if (interpreter == null)
-            return null;
-
-        Bitmap resized =
-                Bitmap.createScaledBitmap(faceBitmap, inputSize, inputSize, true);
-
-        ByteBuffer buffer =
-                ByteBuffer.allocateDirect(inputSize * inputSize * 3 * 4);
-
-        buffer.order(ByteOrder.nativeOrder());
+        Interpreter interpreter;
+        long t = System.nanoTime();
 
-        int[] pixels = new int[inputSize * inputSize];
-        resized.getPixels(pixels, 0, inputSize, 0, 0, inputSize, inputSize);
+        try {
+            interpreter = runtime.acquire(MODEL_NAME, NUM_THREADS);
+            t = acquireLatency.recordSince(t);
+        } catch (Exception e) {
+            Log.e(TAG, "Model unavailable", e);
+            return null;
+        }
 
-        for (int pixel : pixels) {
+        try {
+            Tensor inputTensor = interpreter.getInputTensor(0);
+            inputSize = inputTensor.shape()[1];
 
-            float r = ((pixel >> 16) & 0xFF);
-            float g = ((pixel >> 8) & 0xFF);
-            float b = (pixel & 0xFF);
+            Tensor outputTensor = interpreter.getOutputTensor(0);
+            embeddingSize = outputTensor.shape()[1];
 
-            buffer.putFloat((r - 127.5f) / 128f);
-            buffer.putFloat((g - 127.5f) / 128f);
-            buffer.putFloat((b - 127.5f) / 128f);
-        }
+            Bitmap resized =
+                    Bitmap.createScaledBitmap(faceBitmap, inputSize, inputSize, true);
 
-        buffer.rewind();
+            ByteBuffer buffer =
+                    ByteBuffer.allocateDirect(inputSize * inputSize * 3 * 4);
 
-        float[][] output = new float[1][embeddingSize];
-        interpreter.run(buffer, output);
+            buffer.order(ByteOrder.nativeOrder());
 
-        return normalize(output[0]);
-    }
+            int[] pixels = new int[inputSize * inputSize];
+            resized.getPixels(pixels, 0, inputSize, 0, 0, inputSize, inputSize);
 
-    private float[] normalize(float[] emb) {
+            for (int pixel : pixels) {
 
-        float sum = 0f;
+                float r = ((pixel >> 16) & 0xFF);
+                float g = ((pixel >> 8) & 0xFF);
+                float b = (pixel & 0xFF);
 
-        for (float v : emb)
-            sum += v * v;
+                buffer.putFloat((r - 127.5f) / 128f);
+                buffer.putFloat((g - 127.5f) / 128f);
+                buffer.putFloat((b - 127.5f) / 128f);
+            }
 
-        float norm = (float) Math.sqrt(sum);
+            buffer.rewind();
+            t = preprocessLatency.recordSince(t);
 
-        if (norm == 0) return emb;
+            float[][] output = new float[1][embeddingSize];
+            interpreter.run(buffer, output);
+            inferLatency.recordSince(t);
 
-        for (int i = 0; i < emb.length; i++)
-            emb[i] /= norm;
+            return EmbeddingMath.normalize(output[0]);
 
-        return emb;
+        } catch (Exception e) {
+            Log.e(TAG, "Embedding error", e);
+            return null;
+        } finally {
+            runtime.release(MODEL_NAME);
+        }
     }
 
     /* ================= MATCH ================= */
 
-    private String findBestMatch(float[] newEmb,
-                                 Map<String, float[]> database) {
+    // "This is Ali", or both names when a second person is almost as close
+    private String describeMatch(List<EmbeddingMatrix.Hit> hits) {
 
-        float bestDistance = Float.MAX_VALUE;
-        String bestMatch = null;
-
-        for (String name : database.keySet()) {
-
-            float dist = calculateDistance(newEmb, database.get(name));
-
-            if (dist < bestDistance) {
-                bestDistance = dist;
-                bestMatch = name;
-            }
-        }
-
-        Log.d("FACE_DEBUG", "Best distance: " + bestDistance);
-
-        return bestDistance < 0.9f ? bestMatch : null;
-    }
+        Log.d("FACE_DEBUG", "Best matches: " + hits);
 
-    private float calculateDistance(float[] e1, float[] e2) {
+        if (hits.isEmpty() || hits.get(0).distance >= MATCH_THRESHOLD)
+            return isUrdu ? "نامعلوم چہرہ" : "Unknown face";
 
-        float sum = 0f;
+        EmbeddingMatrix.Hit best = hits.get(0);
 
-        for (int i = 0; i < e1.length; i++) {
-            float diff = e1[i] - e2[i];
-            sum += diff * diff;
+        if (hits.size() > 1
+                && hits.get(1).distance < MATCH_THRESHOLD
+                && best.margin < AMBIGUOUS_MARGIN) {
+            String other = hits.get(1).name;
+            return isUrdu
+                    ? "یہ شاید " + best.name + " ہے، یا " + other
+                    : "This is probably " + best.name + ", or maybe " + other;
         }
 
-        return (float) Math.sqrt(sum);
+        return isUrdu ? "یہ " + best.name + " ہے" : "This is " + best.name;
     }
 
+    // The interpreter is shared through ModelRuntime, only the detector is ours
     public void close() {
-        if (interpreter != null)
-            interpreter.close();
+        detector.close();
     }
 }
\ No newline at end of file
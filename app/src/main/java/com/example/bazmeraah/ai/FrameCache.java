@@ -0,0 +1,215 @@
+package com.example.bazmeraah.ai;
+
+import java.util.function.LongSupplier;
+
+/**
+ * The last captured frame, shared by every query that arrives while it is
+ * still fresh. Freshness is measured from the frame's capture time, not
+ * from when it was fetched. Queries that arrive while a capture is in
+ * flight wait for it instead of starting their own.
+ *
+ * Frames are handed out as leases. A replaced frame is recycled once the
+ * last lease on it is closed.
+ *
+ * <pre>
+ * try (FrameCache.Lease&lt;Bitmap&gt; frame = cache.acquire()) {
+ *     if (frame == null) return;   // capture failed
+ *     detect(frame.value);
+ * }
+ * </pre>
+ */
+public class FrameCache<T> {
+
+    public interface Loader<T> {
+        /** Captures a new frame; null when the camera gave nothing. */
+        Captured<T> load() throws Exception;
+    }
+
+    public interface Recycler<T> {
+        void recycle(T value);
+    }
+
+    public static final class Captured<T> {
+        final T value;
+        final long captureTimeMs;
+
+        public Captured(T value, long captureTimeMs) {
+            this.value = value;
+            this.captureTimeMs = captureTimeMs;
+        }
+    }
+
+    public static final class Lease<T> implements AutoCloseable {
+        public final T value;
+        public final long captureTimeMs;
+
+        private final FrameCache<T> cache;
+        private final Entry<T> entry;
+        private boolean closed;
+
+        private Lease(FrameCache<T> cache, Entry<T> entry) {
+            this.cache = cache;
+            this.entry = entry;
+            this.value = entry.value;
+            this.captureTimeMs = entry.captureTimeMs;
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            cache.release(entry);
+        }
+    }
+
+    private static class Entry<T> {
+        final T value;
+        final long captureTimeMs;
+        int leases;
+        boolean replaced;
+
+        Entry(Captured<T> captured) {
+            this.value = captured.value;
+            this.captureTimeMs = captured.captureTimeMs;
+        }
+    }
+
+    // one capture in progress, and the queries waiting on it
+    private static class Fetch<T> {
+        int waiters;
+        boolean done;
+        Entry<T> entry;
+        Exception error;
+    }
+
+    private final Loader<T> loader;
+    private final Recycler<T> recycler;
+    private final LongSupplier clock;
+    private volatile long freshnessMs;
+
+    private Entry<T> current;
+    private Fetch<T> inFlight;
+
+    private long hits;
+    private long coalesced;
+    private long captures;
+
+    /** {@code clock} must be the one capture times are taken from, in milliseconds. */
+    public FrameCache(long freshnessMs, Loader<T> loader, Recycler<T> recycler, LongSupplier clock) {
+        this.freshnessMs = freshnessMs;
+        this.loader = loader;
+        this.recycler = recycler;
+        this.clock = clock;
+    }
+
+    public void setFreshnessMs(long ms) {
+        freshnessMs = ms;
+    }
+
+    public long getFreshnessMs() {
+        return freshnessMs;
+    }
+
+    /**
+     * A lease on the cached frame if it is fresh, otherwise on a newly
+     * captured one (shared with any query that asks meanwhile). Null when
+     * the capture failed. Blocking, call from a worker thread.
+     */
+    public Lease<T> acquire() throws Exception {
+        Fetch<T> fetch;
+
+        synchronized (this) {
+            Entry<T> e = current;
+            if (e != null && clock.getAsLong() - e.captureTimeMs <= freshnessMs) {
+                hits++;
+                e.leases++;
+                return new Lease<>(this, e);
+            }
+
+            if (inFlight != null) {
+                fetch = inFlight;
+                fetch.waiters++;
+                coalesced++;
+                return await(fetch);
+            }
+
+            fetch = inFlight = new Fetch<>();
+            captures++;
+        }
+
+        Captured<T> captured = null;
+        Exception error = null;
+        try {
+            captured = loader.load();
+        } catch (Exception e) {
+            error = e;
+        }
+
+        synchronized (this) {
+            inFlight = null;
+            fetch.done = true;
+            fetch.error = error;
+
+            if (captured != null && captured.value != null) {
+                Entry<T> entry = new Entry<>(captured);
+                entry.leases = fetch.waiters + 1; // reserved before anyone can replace it
+                fetch.entry = entry;
+                replace(entry);
+            }
+            notifyAll();
+
+            if (error != null) throw error;
+            return fetch.entry != null ? new Lease<>(this, fetch.entry) : null;
+        }
+    }
+
+    // caller holds the lock and has counted itself into fetch.waiters
+    private Lease<T> await(Fetch<T> fetch) throws Exception {
+        while (!fetch.done) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                if (fetch.done && fetch.entry != null) release(fetch.entry);
+                else fetch.waiters--;
+                throw e;
+            }
+        }
+
+        if (fetch.error != null) throw fetch.error;
+        return fetch.entry != null ? new Lease<>(this, fetch.entry) : null;
+    }
+
+    /** Drops the cached frame; the next query captures a new one. */
+    public synchronized void invalidate() {
+        replace(null);
+    }
+
+    private void replace(Entry<T> entry) {
+        Entry<T> old = current;
+        current = entry;
+
+        if (old != null) {
+            old.replaced = true;
+            if (old.leases == 0) recycler.recycle(old.value);
+        }
+    }
+
+    private synchronized void release(Entry<T> entry) {
+        entry.leases--;
+        if (entry.leases == 0 && entry.replaced) recycler.recycle(entry.value);
+    }
+
+    /** Queries answered from a fresh cached frame. */
+    public synchronized long hits() {
+        return hits;
+    }
+
+    /** Queries that waited on another query's capture. */
+    public synchronized long coalesced() {
+        return coalesced;
+    }
+
+    public synchronized long captures() {
+        return captures;
+    }
+}
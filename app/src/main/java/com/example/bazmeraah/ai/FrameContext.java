@@ -0,0 +1,83 @@
+package com.example.bazmeraah.ai;
+
+import android.graphics.Bitmap;
+
+import com.example.bazmeraah.vision.DetectionBuffer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Everything one engine needs to push a frame through its model, allocated
+ * once for the model's tensor shapes and reused for every frame after that.
+ * Only touch it while holding the engine's interpreter from ModelRuntime.
+ */
+class FrameContext {
+
+    final Letterboxer letterboxer;
+    final int[] pixels;
+    final ByteBuffer input;
+
+    final ByteBuffer outputBuffer;
+    final float[] output;            // float models
+    final byte[] quantizedOutput;    // uint8/int8 models
+
+    final DetectionBuffer candidates;
+
+    private final FloatBuffer outputView;
+
+    /**
+     * @param inputBytes  bytes per input value, 4 for float32 and 1 for uint8/int8
+     * @param outputBytes bytes per output value, same convention
+     */
+    FrameContext(int inputWidth, int inputHeight, int inputChannels, int inputBytes,
+                 int outputElements, int outputBytes, int maxCandidates) {
+
+        letterboxer = new Letterboxer(inputWidth, inputHeight);
+        pixels = letterboxer.pixels;
+
+        input = ByteBuffer.allocateDirect(inputWidth * inputHeight * inputChannels * inputBytes);
+        input.order(ByteOrder.nativeOrder());
+
+        outputBuffer = ByteBuffer.allocateDirect(outputElements * outputBytes);
+        outputBuffer.order(ByteOrder.nativeOrder());
+
+        if (outputBytes == 1) {
+            outputView = null;
+            output = null;
+            quantizedOutput = new byte[outputElements];
+        } else {
+            outputView = outputBuffer.asFloatBuffer();
+            output = new float[outputElements];
+            quantizedOutput = null;
+        }
+
+        candidates = new DetectionBuffer(maxCandidates);
+    }
+
+    /** Letterboxes the frame, its pixels end up in {@link #pixels}. */
+    void letterbox(Bitmap bitmap, int padColor) {
+        letterboxer.letterbox(bitmap, padColor);
+    }
+
+    /** Rewinds the output buffer so the interpreter can write the next result. */
+    ByteBuffer prepareOutput() {
+        outputBuffer.rewind();
+        return outputBuffer;
+    }
+
+    /** Copies a float interpreter output into {@link #output}. */
+    float[] readOutput() {
+        outputView.rewind();
+        outputView.get(output);
+        return output;
+    }
+
+    /** Copies a quantized interpreter output into {@link #quantizedOutput}. */
+    byte[] readQuantizedOutput() {
+        outputBuffer.rewind();
+        outputBuffer.get(quantizedOutput);
+        return quantizedOutput;
+    }
+}
@@ -0,0 +1,347 @@
+package com.example.bazmeraah.ai;
+
+import com.example.bazmeraah.vision.LatencyHistogram;
+import com.example.bazmeraah.vision.LatencyStats;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Runs a chain of frame-processing stages on their own threads, connected by
+ * small bounded queues. When a stage falls behind, the oldest waiting item is
+ * dropped (latest frame wins), so fetching frame N+1 overlaps work on frame N
+ * and the output never lags behind the camera.
+ *
+ * <pre>
+ * FramePipeline p = FramePipeline.from("fetch", source)
+ *         .then("decode", decodeStage)
+ *         .then("infer", inferStage)
+ *         .into("speak", sink);
+ * p.start();
+ * </pre>
+ */
+public class FramePipeline {
+
+    private static final long SOURCE_ERROR_BACKOFF_MS = 200;
+    private static final long STOP_JOIN_MS = 1000; // per thread, a stage can be mid-inference
+
+    public interface Source<T> {
+        /** Blocks until the next item is available; null skips a round. */
+        T next() throws Exception;
+    }
+
+    public interface Stage<I, O> {
+        /**
+         * Returns null to drop the item; the stage then owns recycling it.
+         * If it throws, the input goes to the {@link DropListener}, which
+         * must therefore tolerate items the stage already recycled.
+         */
+        O process(I input) throws Exception;
+    }
+
+    public interface Sink<T> {
+        void accept(T item) throws Exception;
+    }
+
+    /** Called with items that were dropped at a hand-off, to recycle their buffers. */
+    public interface DropListener {
+        void onDropped(Object item);
+    }
+
+    /* ================= BUILDER ================= */
+
+    public static <T> Builder<T> from(String name, Source<T> source) {
+        Builder<T> b = new Builder<>(new ArrayList<>());
+        b.nodes.add(new Node(name, null, source));
+        return b;
+    }
+
+    public static class Builder<T> {
+        private final List<Node> nodes;
+        private int queueCapacity = 1;
+        private DropListener dropListener;
+        private LatencyStats latencyStats;
+        private String latencyPrefix;
+
+        private Builder(List<Node> nodes) {
+            this.nodes = nodes;
+        }
+
+        /** Capacity of every hand-off queue, 1 by default. */
+        public Builder<T> queueCapacity(int capacity) {
+            queueCapacity = capacity;
+            return this;
+        }
+
+        public Builder<T> onDropped(DropListener listener) {
+            dropListener = listener;
+            return this;
+        }
+
+        /** Records each stage's latency into {@code stats} as prefix + stage name. */
+        public Builder<T> latencyInto(LatencyStats stats, String prefix) {
+            latencyStats = stats;
+            latencyPrefix = prefix;
+            return this;
+        }
+
+        public <O> Builder<O> then(String name, Stage<? super T, ? extends O> stage) {
+            nodes.add(new Node(name, stage, null));
+            Builder<O> next = new Builder<>(nodes);
+            next.queueCapacity = queueCapacity;
+            next.dropListener = dropListener;
+            next.latencyStats = latencyStats;
+            next.latencyPrefix = latencyPrefix;
+            return next;
+        }
+
+        public FramePipeline into(String name, Sink<? super T> sink) {
+            nodes.add(new Node(name, (Stage<T, Object>) item -> {
+                sink.accept(item);
+                return null;
+            }, null));
+
+            if (latencyStats != null) {
+                for (Node node : nodes) node.latency = latencyStats.stage(latencyPrefix + node.name);
+            }
+            return new FramePipeline(nodes, queueCapacity, dropListener);
+        }
+    }
+
+    /* ================= STATS ================= */
+
+    public static class StageStats {
+        public final String name;
+        public final long processed;
+        public final long dropped;
+        public final long errors;
+        public final int queueDepth;
+        public final double avgMs;
+        public final double p95Ms;
+        public final double perSecond;
+
+        StageStats(String name, long processed, long dropped, long errors,
+                   int queueDepth, double avgMs, double p95Ms, double perSecond) {
+            this.name = name;
+            this.processed = processed;
+            this.dropped = dropped;
+            this.errors = errors;
+            this.queueDepth = queueDepth;
+            this.avgMs = avgMs;
+            this.p95Ms = p95Ms;
+            this.perSecond = perSecond;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s: %.1f/s, %.1f ms avg, %.1f ms p95, queue %d, dropped %d, errors %d",
+                    name, perSecond, avgMs, p95Ms, queueDepth, dropped, errors);
+        }
+    }
+
+    /* ================= PIPELINE ================= */
+
+    private static class Node {
+        final String name;
+        final Stage<Object, Object> stage;
+        final Source<?> source;
+
+        // the queue this node reads from (null for the source)
+        DropOldestQueue input;
+
+        volatile long processed;
+        volatile long errors;
+        volatile long busyNanos;
+        LatencyHistogram latency = new LatencyHistogram();
+
+        @SuppressWarnings("unchecked")
+        Node(String name, Stage<?, ?> stage, Source<?> source) {
+            this.name = name;
+            this.stage = (Stage<Object, Object>) stage;
+            this.source = source;
+        }
+    }
+
+    private final List<Node> nodes;
+    private final List<Thread> threads = new ArrayList<>();
+    private final DropListener dropListener;
+    private volatile boolean running;
+    private long startedNanos;
+
+    private FramePipeline(List<Node> nodes, int queueCapacity, DropListener dropListener) {
+        this.nodes = nodes;
+        this.dropListener = dropListener;
+
+        for (int i = 1; i < nodes.size(); i++) {
+            nodes.get(i).input = new DropOldestQueue(queueCapacity);
+        }
+    }
+
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        startedNanos = System.nanoTime();
+
+        for (int i = 0; i < nodes.size(); i++) {
+            Node node = nodes.get(i);
+            Node next = i + 1 < nodes.size() ? nodes.get(i + 1) : null;
+
+            Thread t = new Thread(() -> runNode(node, next), "pipeline-" + node.name);
+            t.setDaemon(true);
+            threads.add(t);
+            t.start();
+        }
+    }
+
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+
+        for (Thread t : threads) t.interrupt();
+
+        // nothing offered after the drain below; a straggler drains after itself, see runNode
+        boolean interrupted = false;
+        for (Thread t : threads) {
+            try {
+                t.join(STOP_JOIN_MS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        threads.clear();
+
+        for (Node node : nodes) drain(node.input);
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private void drain(DropOldestQueue queue) {
+        if (queue == null) return;
+        Object left;
+        while ((left = queue.poll()) != null) dropped(left);
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public List<StageStats> stats() {
+        List<StageStats> out = new ArrayList<>();
+        double seconds = Math.max(1e-3, (System.nanoTime() - startedNanos) / 1e9);
+
+        for (Node node : nodes) {
+            long n = node.processed;
+            out.add(new StageStats(
+                    node.name,
+                    n,
+                    node.input != null ? node.input.dropped : 0,
+                    node.errors,
+                    node.input != null ? node.input.size() : 0,
+                    n == 0 ? 0 : node.busyNanos / 1e6 / n,
+                    node.latency.percentileMs(0.95),
+                    n / seconds));
+        }
+        return out;
+    }
+
+    private void runNode(Node node, Node next) {
+        while (running) {
+            Object item;
+            long fetchStart = System.nanoTime();
+
+            try {
+                item = node.source != null ? node.source.next() : node.input.take();
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                node.errors++;
+                if (!pause(SOURCE_ERROR_BACKOFF_MS)) return;
+                continue;
+            }
+
+            if (item == null) continue;
+
+            // a source's work is producing the item, for the others it is processing it
+            long start = node.source != null ? fetchStart : System.nanoTime();
+            Object out;
+
+            try {
+                out = node.source != null ? item : node.stage.process(item);
+            } catch (InterruptedException e) {
+                dropped(item);
+                return;
+            } catch (Exception e) {
+                node.errors++;
+                dropped(item);
+                out = null;
+            }
+
+            long busy = System.nanoTime() - start;
+            node.busyNanos += busy;
+            node.latency.record(busy);
+            node.processed++;
+
+            if (out != null && !running) {
+                dropped(out);
+                return;
+            }
+
+            if (out != null && next != null) {
+                Object evicted = next.input.offer(out);
+                if (evicted != null) dropped(evicted);
+                if (!running) drain(next.input); // stop() may have drained before the offer
+            }
+        }
+    }
+
+    private static boolean pause(long ms) {
+        try {
+            Thread.sleep(ms);
+            return true;
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+
+    private void dropped(Object item) {
+        if (dropListener != null) dropListener.onDropped(item);
+    }
+
+    /** Bounded queue that evicts its oldest item instead of blocking the producer. */
+    static class DropOldestQueue {
+        private final ArrayDeque<Object> items;
+        private final int capacity;
+        volatile long dropped;
+
+        DropOldestQueue(int capacity) {
+            this.capacity = capacity;
+            this.items = new ArrayDeque<>(capacity);
+        }
+
+        /** Adds the item and returns the one evicted to make room, if any. */
+        synchronized Object offer(Object item) {
+            Object evicted = null;
+            if (items.size() == capacity) {
+                evicted = items.pollFirst();
+                dropped++;
+            }
+            items.addLast(item);
+            notifyAll();
+            return evicted;
+        }
+
+        synchronized Object take() throws InterruptedException {
+            while (items.isEmpty()) wait();
+            return items.pollFirst();
+        }
+
+        synchronized Object poll() {
+            return items.pollFirst();
+        }
+
+        synchronized int size() {
+            return items.size();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.bazmeraah.ai;
+
+/**
+ * Keeps the last few frames from the stick together with their capture time.
+ * Producers put, consumers read the newest one or wait for the next one.
+ */
+public class FrameRingBuffer<T> {
+
+    public static class Frame<T> {
+        public final T value;
+        public final long timestampMs;
+        public final long sequence;
+
+        Frame(T value, long timestampMs, long sequence) {
+            this.value = value;
+            this.timestampMs = timestampMs;
+            this.sequence = sequence;
+        }
+
+        public long ageMs(long nowMs) {
+            return nowMs - timestampMs;
+        }
+    }
+
+    private final Object[] slots;
+    private long nextSequence = 1;
+
+    public FrameRingBuffer(int capacity) {
+        slots = new Object[capacity];
+    }
+
+    public synchronized Frame<T> put(T value, long timestampMs) {
+        Frame<T> frame = new Frame<>(value, timestampMs, nextSequence);
+        slots[(int) (nextSequence % slots.length)] = frame;
+        nextSequence++;
+        notifyAll();
+        return frame;
+    }
+
+    /** Newest frame, or null when nothing was received yet. */
+    @SuppressWarnings("unchecked")
+    public synchronized Frame<T> latest() {
+        if (nextSequence == 1) return null;
+        return (Frame<T>) slots[(int) ((nextSequence - 1) % slots.length)];
+    }
+
+    /** Newest frame if it is not older than maxAgeMs, otherwise null. */
+    public synchronized Frame<T> latest(long maxAgeMs, long nowMs) {
+        Frame<T> frame = latest();
+        return (frame != null && frame.ageMs(nowMs) <= maxAgeMs) ? frame : null;
+    }
+
+    /** Blocks until a frame newer than afterSequence arrives, null on timeout. */
+    public synchronized Frame<T> awaitNewer(long afterSequence, long timeoutMs)
+            throws InterruptedException {
+
+        long deadline = System.nanoTime() + timeoutMs * 1_000_000L;
+
+        while (nextSequence - 1 <= afterSequence) {
+            long waitMs = (deadline - System.nanoTime()) / 1_000_000L;
+            if (waitMs <= 0) return null;
+            wait(waitMs);
+        }
+        return latest();
+    }
+
+    public synchronized void clear() {
+        for (int i = 0; i < slots.length; i++) slots[i] = null;
+        nextSequence = 1;
+        notifyAll();
+    }
+}
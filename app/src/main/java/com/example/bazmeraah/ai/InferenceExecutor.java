@@ -0,0 +1,215 @@
+package com.example.bazmeraah.ai;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the queries for one model on its own worker thread, one at a time.
+ * At most one request runs and one waits; submitting another replaces the
+ * waiting one (latest request wins) and cancels the running one, which
+ * finishes its current step but never delivers its result. Results are
+ * delivered on the main thread, after a last check that the request is
+ * still wanted, so a superseded answer is never spoken.
+ *
+ * <pre>
+ * Request r = InferenceExecutor.forModel(MODEL_NAME).submit(request -> {
+ *     Bitmap frame = grab();
+ *     request.throwIfCancelled();   // superseded while fetching
+ *     return detect(frame);
+ * }, callback);
+ * </pre>
+ */
+public class InferenceExecutor {
+
+    private static final String TAG = "INFERENCE_EXECUTOR";
+
+    public interface Job<T> {
+        T run(Request request) throws Exception;
+    }
+
+    public interface Callback<T> {
+        void onResult(T result);
+        void onError(Exception error);
+    }
+
+    /** Handle for one submitted job, also passed to the job to poll for cancellation. */
+    public static final class Request {
+        private final long id;
+        private volatile boolean cancelled;
+
+        Request(long id) {
+            this.id = id;
+        }
+
+        public long id() {
+            return id;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /** Drops the request; if it already runs, its result is discarded. */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public void throwIfCancelled() {
+            if (cancelled) throw new CancellationException("request " + id + " superseded");
+        }
+    }
+
+    /* ================= REGISTRY ================= */
+
+    private static final Map<String, InferenceExecutor> executors = new HashMap<>();
+    private static final AtomicLong nextId = new AtomicLong();
+
+    /** The executor shared by every query on {@code modelName}. */
+    public static synchronized InferenceExecutor forModel(String modelName) {
+        InferenceExecutor executor = executors.get(modelName);
+        if (executor == null) {
+            Handler main = new Handler(Looper.getMainLooper());
+            executor = new InferenceExecutor(modelName, main::post);
+            executors.put(modelName, executor);
+        }
+        return executor;
+    }
+
+    /* ================= EXECUTOR ================= */
+
+    private static class Pending<T> {
+        final Request request;
+        final Job<T> job;
+        final Callback<T> callback;
+
+        Pending(Request request, Job<T> job, Callback<T> callback) {
+            this.request = request;
+            this.job = job;
+            this.callback = callback;
+        }
+    }
+
+    private final String name;
+    private final Executor delivery;
+
+    private Pending<?> waiting;   // next to run, replaced by newer submissions
+    private Pending<?> running;
+    private Thread worker;
+
+    private long submitted;
+    private long superseded;
+    private long delivered;
+
+    /** {@code delivery} runs the callbacks, the main thread for {@link #forModel}. */
+    public InferenceExecutor(String name, Executor delivery) {
+        this.name = name;
+        this.delivery = delivery;
+    }
+
+    public synchronized <T> Request submit(Job<T> job, Callback<T> callback) {
+        Request request = new Request(nextId.incrementAndGet());
+        submitted++;
+
+        if (waiting != null) {
+            waiting.request.cancel();
+            superseded++;
+        }
+        if (running != null && !running.request.isCancelled()) {
+            running.request.cancel();
+            superseded++;
+        }
+
+        waiting = new Pending<>(request, job, callback);
+
+        if (worker == null) {
+            worker = new Thread(this::work, "inference-" + name);
+            worker.setDaemon(true);
+            worker.start();
+        }
+        notifyAll();
+        return request;
+    }
+
+    /** Cancels the waiting and the running request, if any. */
+    public synchronized void cancelAll() {
+        if (waiting != null) waiting.request.cancel();
+        if (running != null) running.request.cancel();
+        waiting = null;
+    }
+
+    /** True while a request runs or waits. */
+    public synchronized boolean isBusy() {
+        return running != null || waiting != null;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return name + ": " + submitted + " submitted, " + superseded + " superseded, "
+                + delivered + " delivered";
+    }
+
+    private void work() {
+        while (true) {
+            Pending<?> next;
+
+            synchronized (this) {
+                while (waiting == null) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        worker = null;
+                        return;
+                    }
+                }
+                next = waiting;
+                waiting = null;
+                running = next;
+            }
+
+            execute(next);
+
+            synchronized (this) {
+                running = null;
+            }
+        }
+    }
+
+    private <T> void execute(Pending<T> p) {
+        if (p.request.isCancelled()) return;
+
+        T result = null;
+        Exception error = null;
+
+        try {
+            result = p.job.run(p.request);
+        } catch (CancellationException e) {
+            return;
+        } catch (Exception e) {
+            error = e;
+        } catch (Throwable t) {
+            Log.e(TAG, name + " request " + p.request.id + " crashed", t);
+            error = new RuntimeException(t);
+        }
+
+        T value = result;
+        Exception failure = error;
+
+        // checked again on the delivery thread, the request may be superseded meanwhile
+        delivery.execute(() -> {
+            if (p.request.isCancelled()) return;
+
+            synchronized (this) {
+                delivered++;
+            }
+            if (failure == null) p.callback.onResult(value);
+            else p.callback.onError(failure);
+        });
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.bazmeraah.ai;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import com.example.bazmeraah.vision.LatencyHistogram;
+import com.example.bazmeraah.vision.LetterboxGeometry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes stick JPEGs close to the size they are used at. The JPEG bounds
+ * are read first, then a power-of-two inSampleSize keeps the decoded image
+ * just above the model input (see {@link LetterboxGeometry#sampleSize}),
+ * into a bitmap reused from a small pool through inBitmap. A UXGA frame
+ * for a 640x640 model then costs an 800x600 decode instead of 1600x1200.
+ */
+public class JpegDecoder {
+
+    private static final String TAG = "JPEG_DECODER";
+    private static final int POOL_SIZE = 4;
+    private static final int MAX_POOLED_BYTES = 4 * 1024 * 1024; // larger (full-resolution) bitmaps are recycled
+
+    private final Bitmap.Config config;
+    private final LatencyHistogram latency;
+    private final List<Bitmap> pool = new ArrayList<>(POOL_SIZE);
+
+    public JpegDecoder(Bitmap.Config config, LatencyHistogram latency) {
+        this.config = config;
+        this.latency = latency;
+    }
+
+    /** Source dimensions from the JPEG header, {0, 0} if it is not an image. */
+    public static int[] bounds(byte[] jpeg) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(jpeg, 0, jpeg.length, options);
+        return new int[]{Math.max(0, options.outWidth), Math.max(0, options.outHeight)};
+    }
+
+    /**
+     * Decodes at the smallest size that still covers the target once
+     * letterboxed. The bitmap may come from the pool: hand it back with
+     * {@link #release} instead of recycling it. Null if undecodable.
+     */
+    public Bitmap decode(byte[] jpeg, int targetWidth, int targetHeight) {
+        int[] size = bounds(jpeg);
+        if (size[0] == 0 || size[1] == 0) return null;
+
+        return decode(jpeg, size[0], size[1],
+                LetterboxGeometry.sampleSize(size[0], size[1], targetWidth, targetHeight));
+    }
+
+    /** Decodes a {@code width x height} JPEG reduced by {@code sample} (1 for full resolution). */
+    public Bitmap decode(byte[] jpeg, int width, int height, int sample) {
+        long start = System.nanoTime();
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sample;
+        options.inPreferredConfig = config;
+        options.inMutable = true;
+        options.inBitmap = take(ceilDiv(width, sample), ceilDiv(height, sample));
+
+        Bitmap bitmap;
+        try {
+            bitmap = BitmapFactory.decodeByteArray(jpeg, 0, jpeg.length, options);
+        } catch (IllegalArgumentException e) {
+            // the pooled bitmap did not fit after all, decode into a new one
+            Log.w(TAG, "inBitmap rejected, decoding without reuse", e);
+            release(options.inBitmap);
+            options.inBitmap = null;
+            bitmap = BitmapFactory.decodeByteArray(jpeg, 0, jpeg.length, options);
+        }
+
+        latency.recordSince(start);
+        return bitmap;
+    }
+
+    /** Returns a bitmap from {@link #decode} to the pool, or recycles it when the pool is full. */
+    public void release(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) return;
+
+        synchronized (pool) {
+            if (bitmap.isMutable()
+                    && bitmap.getAllocationByteCount() <= MAX_POOLED_BYTES
+                    && pool.size() < POOL_SIZE
+                    && !pool.contains(bitmap)) {
+                pool.add(bitmap);
+                return;
+            }
+        }
+        bitmap.recycle();
+    }
+
+    // a pooled bitmap large enough for width x height, or null (decode allocates)
+    private Bitmap take(int width, int height) {
+        long needed = (long) width * height * bytesPerPixel(config);
+
+        synchronized (pool) {
+            for (int i = 0; i < pool.size(); i++) {
+                Bitmap b = pool.get(i);
+                if (b.getConfig() == config && b.getAllocationByteCount() >= needed) {
+                    return pool.remove(i);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+        return config == Bitmap.Config.RGB_565 ? 2 : 4;
+    }
+
+    // the decoder rounds sampled sizes up
+    private static int ceilDiv(int a, int b) {
+        return (a + b - 1) / b;
+    }
+}
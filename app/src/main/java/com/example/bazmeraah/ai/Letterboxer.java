@@ -0,0 +1,47 @@
+package com.example.bazmeraah.ai;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+
+import com.example.bazmeraah.vision.LetterboxGeometry;
+
+/**
+ * Scales frames into a reusable model-sized bitmap, keeping the aspect ratio
+ * and padding the rest, and exposes the resulting pixels.
+ */
+class Letterboxer {
+
+    final int width, height;
+    final Bitmap bitmap;
+    final int[] pixels;
+
+    // geometry of the last letterbox, to map boxes back onto the source frame
+    final LetterboxGeometry geometry = new LetterboxGeometry();
+
+    private final Canvas canvas;
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final RectF dst = new RectF();
+
+    Letterboxer(int width, int height) {
+        this.width = width;
+        this.height = height;
+
+        bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        canvas = new Canvas(bitmap);
+        pixels = new int[width * height];
+    }
+
+    /** Draws the frame scaled into the target and leaves its pixels in {@link #pixels}. */
+    void letterbox(Bitmap source, int padColor) {
+        LetterboxGeometry g = geometry.fit(source.getWidth(), source.getHeight(), width, height);
+
+        // draw scaled straight into the target, no intermediate resized bitmap
+        canvas.drawColor(padColor);
+        dst.set(g.padX, g.padY, g.padX + g.scaledWidth, g.padY + g.scaledHeight);
+        canvas.drawBitmap(source, null, dst, paint);
+
+        bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+    }
+}
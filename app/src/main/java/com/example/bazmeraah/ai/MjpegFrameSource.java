@@ -0,0 +1,245 @@
+package com.example.bazmeraah.ai;
+
+import java.io.IOException;
+
+import okhttp3.Call;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Background frame source for the stick camera. Holds one persistent
+ * multipart/MJPEG connection and keeps the latest decoded frames in a ring
+ * buffer. If the stick does not serve a stream it falls back to a keep-alive
+ * snapshot loop, so consumers always just read {@link #frames()}. Both go
+ * through the shared {@link StickClient}; snapshots are fetched
+ * conditionally, and an unchanged frame is re-published without decoding.
+ */
+public class MjpegFrameSource<T> {
+
+    public interface Decoder<T> {
+        /** Returns null if the bytes are not a usable image. */
+        T decode(byte[] jpeg) throws IOException;
+    }
+
+    private static final long MIN_BACKOFF_MS = 250;
+    private static final long MAX_BACKOFF_MS = 4000;
+
+    private final String streamUrl;
+    private final String snapshotUrl;
+    private final Decoder<T> decoder;
+    private final FrameRingBuffer<T> frames;
+    private final StickClient client;
+
+    // snapshot loop pacing, the stream itself is paced by the stick
+    private volatile long snapshotIntervalMs = 100;
+
+    private volatile boolean running;
+    private volatile Call activeCall;
+    private Thread worker;
+
+    private volatile long framesReceived;
+    private volatile long framesDropped;
+    private volatile long framesUnchanged;
+    private volatile long reconnects;
+    private volatile boolean streaming;
+
+    public MjpegFrameSource(String streamUrl, String snapshotUrl,
+                            Decoder<T> decoder, int capacity) {
+        this(streamUrl, snapshotUrl, decoder, capacity, StickClient.get());
+    }
+
+    public MjpegFrameSource(String streamUrl, String snapshotUrl,
+                            Decoder<T> decoder, int capacity, StickClient client) {
+        this.streamUrl = streamUrl;
+        this.snapshotUrl = snapshotUrl;
+        this.decoder = decoder;
+        this.frames = new FrameRingBuffer<>(capacity);
+        this.client = client;
+    }
+
+    public FrameRingBuffer<T> frames() {
+        return frames;
+    }
+
+    /** Newest frame not older than maxAgeMs, or null. */
+    public FrameRingBuffer.Frame<T> latest(long maxAgeMs) {
+        return frames.latest(maxAgeMs, nowMs());
+    }
+
+    /** Clock used for frame timestamps (monotonic, milliseconds). */
+    public static long nowMs() {
+        return System.nanoTime() / 1_000_000L;
+    }
+
+    public void setSnapshotIntervalMs(long intervalMs) {
+        snapshotIntervalMs = intervalMs;
+    }
+
+    public synchronized void start() {
+        if (running) return;
+
+        running = true;
+        worker = new Thread(this::run, "stick-frames");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public synchronized void stop() {
+        if (!running) return;
+
+        running = false;
+
+        // unblocks a read that is waiting on the stream socket
+        Call call = activeCall;
+        if (call != null) call.cancel();
+
+        worker.interrupt();
+        worker = null;
+        frames.clear();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /** True while frames come from a multipart stream, false in snapshot-loop mode. */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    public long getFramesReceived() {
+        return framesReceived;
+    }
+
+    public long getFramesDropped() {
+        return framesDropped;
+    }
+
+    /** Snapshots the stick answered with 304, re-published without decoding. */
+    public long getFramesUnchanged() {
+        return framesUnchanged;
+    }
+
+    public long getReconnects() {
+        return reconnects;
+    }
+
+    /* ================= WORKER ================= */
+
+    private void run() {
+        long backoff = MIN_BACKOFF_MS;
+
+        while (running) {
+            long published = framesReceived + framesUnchanged;
+            try {
+                if (!readStream()) snapshotLoop();
+            } catch (IOException e) {
+                if (!running) break;
+                reconnects++;
+            }
+            if (!running) break;
+
+            // a stream that ended cleanly waits too: a stick that closes it at once
+            // would otherwise be reconnected in a busy loop; only frames earn a reset
+            if (framesReceived + framesUnchanged > published) backoff = MIN_BACKOFF_MS;
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException ie) {
+                break;
+            }
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+        }
+
+        streaming = false;
+    }
+
+    /** Reads the MJPEG stream until it ends; false if the stick has no stream. */
+    private boolean readStream() throws IOException {
+
+        Call call = client.streamHttp().newCall(new Request.Builder().url(streamUrl).build());
+        activeCall = call;
+        if (!running) {
+            call.cancel();
+            throw new IOException("Stopped");
+        }
+
+        try (Response response = call.execute()) {
+            ResponseBody body = response.body();
+            MediaType type = body.contentType();
+
+            if (response.code() != 200 || type == null || !"multipart".equals(type.type())) {
+                drain(body);
+                return false;
+            }
+
+            streaming = true;
+
+            try (MjpegStreamReader reader = new MjpegStreamReader(body.byteStream())) {
+                byte[] jpeg;
+                while (running && (jpeg = reader.readFrame()) != null) {
+                    publish(jpeg);
+                }
+            }
+            return true;
+
+        } finally {
+            streaming = false;
+            activeCall = null;
+        }
+    }
+
+    private void snapshotLoop() throws IOException {
+
+        T last = null;
+
+        while (running) {
+            long start = System.nanoTime();
+
+            // retries and keep-alive are the client's; a failure here ends the loop with backoff
+            StickClient.Fetch fetch = client.fetchIfChanged(snapshotUrl);
+            if (!running) return;
+
+            if (fetch.notModified && last != null) {
+                framesUnchanged++;
+                frames.put(last, nowMs());
+            } else {
+                last = publish(fetch.body);
+            }
+
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000L;
+            long sleepMs = snapshotIntervalMs - elapsedMs;
+            if (sleepMs > 0) {
+                try {
+                    Thread.sleep(sleepMs);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // returns the decoded frame, null if it was dropped
+    private T publish(byte[] jpeg) throws IOException {
+        T frame = decoder.decode(jpeg);
+
+        if (frame == null) {
+            framesDropped++;
+            return null;
+        }
+
+        // counted before it is visible, so a reader woken by it sees the count
+        framesReceived++;
+        frames.put(frame, nowMs());
+        return frame;
+    }
+
+    private static void drain(ResponseBody body) {
+        try {
+            body.bytes(); // discard so the connection can be reused
+        } catch (IOException ignored) {
+            // connection is dropped instead
+        }
+    }
+}
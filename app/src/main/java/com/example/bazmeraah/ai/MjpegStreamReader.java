@@ -0,0 +1,112 @@
+package com.example.bazmeraah.ai;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+
+/**
+ * Splits a multipart/x-mixed-replace (MJPEG) body into individual JPEG
+ * frames. Uses each part's Content-Length when the server sends one and
+ * falls back to scanning for the JPEG end-of-image marker otherwise.
+ */
+public class MjpegStreamReader implements Closeable {
+
+    private static final int MAX_HEADER_LINE = 1024;
+    private static final int MAX_FRAME_BYTES = 4 * 1024 * 1024;
+
+    private final InputStream in;
+    private final ByteArrayOutputStream scanBuffer = new ByteArrayOutputStream(64 * 1024);
+
+    public MjpegStreamReader(InputStream in) {
+        this.in = new BufferedInputStream(in, 16 * 1024);
+    }
+
+    /** Next JPEG frame, or null when the stream ended cleanly. */
+    public byte[] readFrame() throws IOException {
+
+        int contentLength = -1;
+        boolean inHeaders = false;
+
+        // boundary line, part headers, blank line
+        while (true) {
+            String line = readLine();
+            if (line == null) return null;
+
+            if (line.isEmpty()) {
+                if (inHeaders) break;
+                continue;
+            }
+
+            if (line.startsWith("--")) {
+                inHeaders = true;
+                continue;
+            }
+
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                inHeaders = true;
+                String name = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+                if (name.equals("content-length")) {
+                    try {
+                        contentLength = Integer.parseInt(line.substring(colon + 1).trim());
+                    } catch (NumberFormatException ignored) {
+                        contentLength = -1;
+                    }
+                }
+            }
+        }
+
+        if (contentLength > MAX_FRAME_BYTES)
+            throw new IOException("Frame too large: " + contentLength);
+
+        return contentLength >= 0 ? readFully(contentLength) : readUntilEndOfImage();
+    }
+
+    private byte[] readFully(int length) throws IOException {
+        byte[] frame = new byte[length];
+        int off = 0;
+        while (off < length) {
+            int n = in.read(frame, off, length - off);
+            if (n < 0) throw new EOFException("Stream ended inside a frame");
+            off += n;
+        }
+        return frame;
+    }
+
+    private byte[] readUntilEndOfImage() throws IOException {
+        scanBuffer.reset();
+        int prev = -1;
+
+        while (true) {
+            int b = in.read();
+            if (b < 0) throw new EOFException("Stream ended inside a frame");
+
+            scanBuffer.write(b);
+            if (prev == 0xFF && b == 0xD9) return scanBuffer.toByteArray();
+            if (scanBuffer.size() > MAX_FRAME_BYTES) throw new IOException("Frame too large");
+            prev = b;
+        }
+    }
+
+    private String readLine() throws IOException {
+        StringBuilder sb = new StringBuilder();
+
+        while (true) {
+            int b = in.read();
+            if (b < 0) return sb.length() == 0 ? null : sb.toString();
+            if (b == '\n') break;
+            if (b != '\r') sb.append((char) b);
+            if (sb.length() > MAX_HEADER_LINE) throw new IOException("Malformed multipart header");
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.bazmeraah.ai;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.util.Log;
+
+import org.tensorflow.lite.Interpreter;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the fastest interpreter configuration for each model on this
+ * phone: every thread count from 1 to the number of cores, with and
+ * without XNNPACK, timed on a zero tensor. The winner is kept in
+ * preferences and used by {@link ModelRuntime} from the next load on.
+ * Results are dropped when the app is updated or the OS build changes,
+ * and the models are then measured again. A configuration whose timing
+ * overlapped a real query is thrown away and measured again once the
+ * phone is idle.
+ */
+public class ModelCalibrator {
+
+    private static final String TAG = "MODEL_CALIBRATOR";
+    private static final String PREFS_NAME = "ModelCalibration";
+    private static final String KEY_APP_UPDATED = "app_updated";
+    private static final String KEY_FINGERPRINT = "build_fingerprint";
+
+    private static final int MAX_THREADS = 8;
+    private static final int TIMED_RUNS = 5;            // median of, after one untimed run
+    private static final float FEWER_THREADS_MARGIN = 0.05f; // slower by at most this, for fewer threads
+    private static final int MAX_ATTEMPTS = 5;          // per configuration, then calibration waits for another load
+
+    /** Where a model should run. */
+    public static final class Config {
+        public final int threads;
+        public final boolean xnnpack;
+
+        Config(int threads, boolean xnnpack) {
+            this.threads = threads;
+            this.xnnpack = xnnpack;
+        }
+
+        @Override
+        public String toString() {
+            return threads + " threads, XNNPACK " + (xnnpack ? "on" : "off");
+        }
+    }
+
+    /** One measured configuration. */
+    static final class Trial {
+        final Config config;
+        final double medianMs;
+
+        Trial(int threads, boolean xnnpack, double medianMs) {
+            this.config = new Config(threads, xnnpack);
+            this.medianMs = medianMs;
+        }
+    }
+
+    /** Tells the calibration when the phone is busy with a real query. */
+    interface Gate {
+        /** Blocks while a query runs, then returns a stamp of the activity so far. */
+        long awaitIdle() throws InterruptedException;
+
+        /** True if a query ran, or is running, since {@code stamp}. */
+        boolean disturbedSince(long stamp);
+    }
+
+    private final SharedPreferences prefs;
+
+    public ModelCalibrator(Context context) {
+        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+
+        long updated = appUpdateTime(context);
+        String fingerprint = Build.FINGERPRINT;
+
+        // new app version or OS build: the old timings no longer say anything
+        if (prefs.getLong(KEY_APP_UPDATED, -1) != updated
+                || !fingerprint.equals(prefs.getString(KEY_FINGERPRINT, null))) {
+            prefs.edit()
+                    .clear()
+                    .putLong(KEY_APP_UPDATED, updated)
+                    .putString(KEY_FINGERPRINT, fingerprint)
+                    .apply();
+        }
+    }
+
+    /** The calibrated configuration, or null if this model has not been measured yet. */
+    public Config get(String modelName) {
+        int threads = prefs.getInt(modelName + ".threads", 0);
+        if (threads <= 0) return null;
+        return new Config(threads, prefs.getBoolean(modelName + ".xnnpack", true));
+    }
+
+    /**
+     * Times every configuration of the model and stores the fastest.
+     * Takes seconds, run it on a background thread. Returns null, storing
+     * nothing, when queries kept interrupting one configuration.
+     */
+    public Config calibrate(String modelName, ByteBuffer model, Gate gate) throws Exception {
+        int cores = Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors());
+        List<Trial> trials = new ArrayList<>();
+
+        for (int threads = 1; threads <= cores; threads++) {
+            for (boolean xnnpack : new boolean[]{true, false}) {
+                double ms = Double.NaN;
+                for (int attempt = 0; Double.isNaN(ms); attempt++) {
+                    if (attempt == MAX_ATTEMPTS) {
+                        Log.d(TAG, modelName + ": too busy to calibrate, later");
+                        return null;
+                    }
+                    ms = measure(model, threads, xnnpack, gate, gate.awaitIdle());
+                }
+                trials.add(new Trial(threads, xnnpack, ms));
+                Log.d(TAG, modelName + ": " + threads + " threads, XNNPACK " + xnnpack
+                        + " -> " + String.format("%.1f", ms) + " ms");
+            }
+        }
+
+        Config best = fastest(trials).config;
+        prefs.edit()
+                .putInt(modelName + ".threads", best.threads)
+                .putBoolean(modelName + ".xnnpack", best.xnnpack)
+                .apply();
+
+        Log.d(TAG, modelName + " calibrated: " + best);
+        return best;
+    }
+
+    private static double measure(ByteBuffer model, int threads, boolean xnnpack, Gate gate, long stamp) {
+        Interpreter.Options options = new Interpreter.Options()
+                .setNumThreads(threads)
+                .setUseXNNPACK(xnnpack);
+
+        try (Interpreter interpreter = new Interpreter(model, options)) {
+            Object[] inputs = ModelRuntime.zeroInputs(interpreter);
+            Map<Integer, Object> outputs = ModelRuntime.zeroOutputs(interpreter);
+            return medianMs(() -> ModelRuntime.run(interpreter, inputs, outputs), gate, stamp);
+        }
+    }
+
+    /**
+     * Median of {@link #TIMED_RUNS} after one untimed run, or NaN as soon as
+     * the gate reports a query since {@code stamp}: that timing shared the
+     * cores and says nothing.
+     */
+    static double medianMs(Runnable run, Gate gate, long stamp) {
+        run.run(); // warm-up, not timed
+        if (gate.disturbedSince(stamp)) return Double.NaN;
+
+        double[] ms = new double[TIMED_RUNS];
+        for (int i = 0; i < TIMED_RUNS; i++) {
+            long start = System.nanoTime();
+            run.run();
+            ms[i] = (System.nanoTime() - start) / 1e6;
+            if (gate.disturbedSince(stamp)) return Double.NaN;
+        }
+        Arrays.sort(ms);
+        return ms[TIMED_RUNS / 2];
+    }
+
+    /**
+     * The fastest trial, except that fewer threads win when they are at
+     * most {@link #FEWER_THREADS_MARGIN} slower: the cores they leave free
+     * serve the other models and the rest of the phone.
+     */
+    static Trial fastest(List<Trial> trials) {
+        double best = Double.MAX_VALUE;
+        for (Trial t : trials) best = Math.min(best, t.medianMs);
+
+        Trial chosen = null;
+        for (Trial t : trials) {
+            if (t.medianMs > best * (1 + FEWER_THREADS_MARGIN)) continue;
+            if (chosen == null
+                    || t.config.threads < chosen.config.threads
+                    || (t.config.threads == chosen.config.threads && t.medianMs < chosen.medianMs)) {
+                chosen = t;
+            }
+        }
+        return chosen;
+    }
+
+    private static long appUpdateTime(Context context) {
+        PackageManager pm = context.getPackageManager();
+        try {
+            PackageInfo info = Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                    ? pm.getPackageInfo(context.getPackageName(), PackageManager.PackageInfoFlags.of(0))
+                    : packageInfoBefore33(pm, context.getPackageName());
+            return info.lastUpdateTime;
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    // the int-flags overload is deprecated from API 33 but the only one before it
+    @SuppressWarnings("deprecation")
+    private static PackageInfo packageInfoBefore33(PackageManager pm, String packageName)
+            throws PackageManager.NameNotFoundException {
+        return pm.getPackageInfo(packageName, 0);
+    }
+}
@@ -0,0 +1,443 @@
+package com.example.bazmeraah.ai;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.tensorflow.lite.Interpreter;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Process-wide owner of the TFLite interpreters used by the ai engines.
+ *
+ * Models are memory-mapped and loaded on a background thread the first time
+ * they are needed, shared between activities, and closed again (least recently
+ * used first) once the loaded models no longer fit the memory budget.
+ *
+ * A model counts as ready only after a warm-up inference on a zero tensor,
+ * so the one-time delegate setup and memory planning never land on the
+ * user's first query. The cold and warm runs are recorded separately, as
+ * warmup.&lt;model&gt;.cold / .warm in Diagnostics.
+ *
+ * Thread count and XNNPACK come from {@link ModelCalibrator} once the model
+ * has been measured on this phone; until then the engine's default is used
+ * and the measurement runs in the background, stepping aside for queries.
+ */
+public class ModelRuntime {
+
+    private static final String TAG = "MODEL_RUNTIME";
+
+    private static final long DEFAULT_MEMORY_BUDGET_BYTES = 32L * 1024 * 1024;
+    private static final long LOW_RAM_MEMORY_BUDGET_BYTES = 12L * 1024 * 1024;
+
+    public interface ReadyListener {
+        void onModelReady(String modelName);
+        void onModelFailed(String modelName, Exception error);
+    }
+
+    private static ModelRuntime instance;
+
+    public static synchronized ModelRuntime get(Context context) {
+        if (instance == null) {
+            instance = new ModelRuntime(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private final Context context;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "model-loader");
+        t.setPriority(Thread.NORM_PRIORITY - 1);
+        return t;
+    });
+
+    private final ExecutorService calibration = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "model-calibration");
+        t.setPriority(Thread.MIN_PRIORITY);
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final ModelCalibrator calibrator;
+    private final Set<String> calibrating = new HashSet<>();
+
+    // access-ordered, so iteration starts at the least recently used model
+    private final LinkedHashMap<String, LoadedModel> models =
+            new LinkedHashMap<>(8, 0.75f, true);
+
+    private final List<ReadyListener> listeners = new ArrayList<>();
+
+    private long memoryBudgetBytes;
+    private long activity; // queries and loads started, for the calibration's gate
+
+    private static class LoadedModel {
+        final String name;
+        final int numThreads;
+
+        Future<?> loading;
+        Interpreter interpreter;
+        Exception error;
+        long sizeBytes;
+        boolean inUse;
+
+        LoadedModel(String name, int numThreads) {
+            this.name = name;
+            this.numThreads = numThreads;
+        }
+    }
+
+    private ModelRuntime(Context context) {
+        this.context = context;
+        this.calibrator = new ModelCalibrator(context);
+
+        ActivityManager am =
+                (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        memoryBudgetBytes = (am != null && am.isLowRamDevice())
+                ? LOW_RAM_MEMORY_BUDGET_BYTES
+                : DEFAULT_MEMORY_BUDGET_BYTES;
+    }
+
+    /* ================= CONFIG ================= */
+
+    public synchronized void setMemoryBudget(long bytes) {
+        memoryBudgetBytes = bytes;
+        trimToBudget(null);
+    }
+
+    public synchronized long getMemoryBudget() {
+        return memoryBudgetBytes;
+    }
+
+    public synchronized void addReadyListener(ReadyListener listener) {
+        listeners.add(listener);
+    }
+
+    public synchronized void removeReadyListener(ReadyListener listener) {
+        listeners.remove(listener);
+    }
+
+    /* ================= LOADING ================= */
+
+    /**
+     * Starts loading the model in the background if it is not loaded yet.
+     * Never blocks, safe to call from the UI thread.
+     */
+    public synchronized void preload(String modelName, int numThreads) {
+        LoadedModel model = models.get(modelName);
+
+        if (model == null) {
+            model = new LoadedModel(modelName, numThreads);
+            models.put(modelName, model);
+        }
+
+        if (model.interpreter == null && model.loading == null) {
+            LoadedModel target = model;
+            model.error = null;
+            model.loading = loader.submit(() -> load(target));
+            activity++;
+        }
+    }
+
+    /** Loaded and warmed up: the next inference runs at full speed. */
+    public synchronized boolean isReady(String modelName) {
+        LoadedModel model = models.get(modelName);
+        return model != null && model.interpreter != null;
+    }
+
+    /**
+     * Returns the interpreter for exclusive use by the calling thread, loading
+     * it first if needed. Must not be called on the UI thread. Every successful
+     * acquire has to be paired with {@link #release(String)}.
+     */
+    public Interpreter acquire(String modelName, int numThreads) throws Exception {
+
+        boolean attempted = false;
+
+        while (true) {
+            Future<?> pending;
+
+            synchronized (this) {
+                LoadedModel model = models.get(modelName);
+
+                if (model != null && model.interpreter != null) {
+                    if (!model.inUse) {
+                        model.inUse = true;
+                        activity++;
+                        return model.interpreter;
+                    }
+                    // Interpreter is not thread-safe, wait for the current user
+                    wait();
+                    continue;
+                }
+
+                if (attempted && model != null && model.loading == null && model.error != null)
+                    throw model.error;
+
+                preload(modelName, numThreads);
+                pending = models.get(modelName).loading;
+            }
+
+            // wait outside the lock so other models stay usable while this one maps
+            if (pending != null) pending.get();
+            attempted = true;
+        }
+    }
+
+    public synchronized void release(String modelName) {
+        LoadedModel model = models.get(modelName);
+        if (model == null) return;
+
+        model.inUse = false;
+        notifyAll();
+
+        trimToBudget(modelName);
+    }
+
+    private void load(LoadedModel model) {
+
+        Interpreter interpreter = null;
+        long size = 0;
+        Exception error = null;
+
+        try {
+            long start = SystemClock.elapsedRealtime();
+
+            MappedByteBuffer buffer = map(model.name);
+            size = buffer.capacity();
+
+            ModelCalibrator.Config tuned = calibrator.get(model.name);
+            Interpreter.Options options = new Interpreter.Options();
+            if (tuned != null) {
+                options.setNumThreads(tuned.threads);
+                options.setUseXNNPACK(tuned.xnnpack);
+            } else if (model.numThreads > 0) {
+                options.setNumThreads(model.numThreads);
+            }
+
+            interpreter = new Interpreter(buffer, options);
+            long loadMs = SystemClock.elapsedRealtime() - start;
+
+            warmUp(model.name, interpreter);
+
+            Log.d(TAG, model.name + " loaded in " + loadMs + " ms, warmed up in "
+                    + (SystemClock.elapsedRealtime() - start - loadMs) + " ms, "
+                    + (tuned != null ? tuned : "not calibrated yet"));
+
+            if (tuned == null) calibrateLater(model.name, model.numThreads);
+
+        } catch (Exception e) {
+            Log.e(TAG, "Model load failed: " + model.name, e);
+            error = e;
+        }
+
+        List<ReadyListener> toNotify;
+
+        synchronized (this) {
+            model.loading = null;
+            model.interpreter = interpreter;
+            model.sizeBytes = size;
+            model.error = error;
+
+            toNotify = new ArrayList<>(listeners);
+            notifyAll();
+            trimToBudget(model.name);
+        }
+
+        Exception failure = error;
+        mainHandler.post(() -> {
+            for (ReadyListener l : toNotify) {
+                if (failure == null) l.onModelReady(model.name);
+                else l.onModelFailed(model.name, failure);
+            }
+        });
+    }
+
+    private MappedByteBuffer map(String modelName) throws IOException {
+        AssetFileDescriptor fd = context.getAssets().openFd(modelName);
+        try (FileInputStream fis = new FileInputStream(fd.getFileDescriptor());
+             FileChannel channel = fis.getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_ONLY,
+                    fd.getStartOffset(),
+                    fd.getDeclaredLength());
+        } finally {
+            fd.close();
+        }
+    }
+
+    // ⏳ runs before the model is published as ready; a failure only costs the speed-up
+    private void warmUp(String modelName, Interpreter interpreter) {
+        try {
+            Object[] inputs = zeroInputs(interpreter);
+            Map<Integer, Object> outputs = zeroOutputs(interpreter);
+
+            String stage = "warmup." + baseName(modelName);
+
+            // first run pays delegate init and allocation, the second is what queries will see
+            long t = System.nanoTime();
+            run(interpreter, inputs, outputs);
+            t = Diagnostics.get().stage(stage + ".cold").recordSince(t);
+
+            run(interpreter, inputs, outputs);
+            Diagnostics.get().stage(stage + ".warm").recordSince(t);
+
+        } catch (Exception e) {
+            Log.w(TAG, "Warm-up failed for " + modelName + ", first query runs cold", e);
+        }
+    }
+
+    /* ================= SYNTHETIC INPUT ================= */
+
+    static Object[] zeroInputs(Interpreter interpreter) {
+        Object[] inputs = new Object[interpreter.getInputTensorCount()];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = zeros(interpreter.getInputTensor(i).numBytes());
+        }
+        return inputs;
+    }
+
+    static Map<Integer, Object> zeroOutputs(Interpreter interpreter) {
+        Map<Integer, Object> outputs = new HashMap<>();
+        for (int i = 0; i < interpreter.getOutputTensorCount(); i++) {
+            outputs.put(i, zeros(interpreter.getOutputTensor(i).numBytes()));
+        }
+        return outputs;
+    }
+
+    // the buffers are rewound, so the same ones can be run again
+    static void run(Interpreter interpreter, Object[] inputs, Map<Integer, Object> outputs) {
+        for (Object input : inputs) ((ByteBuffer) input).rewind();
+        for (Object output : outputs.values()) ((ByteBuffer) output).rewind();
+        interpreter.runForMultipleInputsOutputs(inputs, outputs);
+    }
+
+    private static ByteBuffer zeros(int bytes) {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+
+    /* ================= CALIBRATION ================= */
+
+    // once per model and app version; the model is reloaded with the result when idle
+    private synchronized void calibrateLater(String modelName, int numThreads) {
+        if (!calibrating.add(modelName)) return;
+
+        calibration.execute(() -> {
+            try {
+                if (calibrator.calibrate(modelName, map(modelName), idleGate) != null) {
+                    reloadIfIdle(modelName, numThreads);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                Log.w(TAG, "Calibration failed for " + modelName, e);
+            } finally {
+                synchronized (this) {
+                    calibrating.remove(modelName);
+                }
+            }
+        });
+    }
+
+    // no timing while a query runs: it would skew both
+    private final ModelCalibrator.Gate idleGate = new ModelCalibrator.Gate() {
+        @Override
+        public long awaitIdle() throws InterruptedException {
+            synchronized (ModelRuntime.this) {
+                while (busy()) ModelRuntime.this.wait();
+                return activity;
+            }
+        }
+
+        @Override
+        public boolean disturbedSince(long stamp) {
+            synchronized (ModelRuntime.this) {
+                return activity != stamp || busy();
+            }
+        }
+    };
+
+    private boolean busy() {
+        for (LoadedModel m : models.values()) {
+            if (m.inUse || m.loading != null) return true;
+        }
+        return false;
+    }
+
+    private synchronized void reloadIfIdle(String modelName, int numThreads) {
+        LoadedModel model = models.get(modelName);
+        if (model == null || model.interpreter == null || model.inUse) return;
+
+        close(model);
+        models.remove(modelName);
+        preload(modelName, numThreads);
+    }
+
+    // "yolov8n-oiv7_int8.tflite" -> "yolov8n-oiv7_int8"
+    private static String baseName(String modelName) {
+        int dot = modelName.lastIndexOf('.');
+        return dot > 0 ? modelName.substring(0, dot) : modelName;
+    }
+
+    /* ================= UNLOADING ================= */
+
+    /** Closes every loaded model that is not running right now. */
+    public synchronized void unloadIdle() {
+        Iterator<Map.Entry<String, LoadedModel>> it = models.entrySet().iterator();
+
+        while (it.hasNext()) {
+            LoadedModel model = it.next().getValue();
+            if (model.interpreter != null && !model.inUse) {
+                close(model);
+                it.remove();
+            }
+        }
+    }
+
+    private void trimToBudget(String keep) {
+
+        long total = 0;
+        for (LoadedModel m : models.values()) total += m.sizeBytes;
+
+        Iterator<Map.Entry<String, LoadedModel>> it = models.entrySet().iterator();
+
+        while (total > memoryBudgetBytes && it.hasNext()) {
+            LoadedModel model = it.next().getValue();
+
+            if (model.interpreter == null || model.inUse || model.name.equals(keep))
+                continue;
+
+            total -= model.sizeBytes;
+            close(model);
+            it.remove();
+        }
+    }
+
+    private void close(LoadedModel model) {
+        Log.d(TAG, "Unloading " + model.name + " (" + model.sizeBytes / 1024 + " KB)");
+        model.interpreter.close();
+        model.interpreter = null;
+        model.sizeBytes = 0;
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.bazmeraah.ai;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.example.bazmeraah.vision.LatencyHistogram;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * "Describe everything": the face, object and currency models run at the
+ * same time on one shared frame, each on its own interpreter with its share
+ * of the cores (see {@link ThreadSplit}), and their answers are merged into
+ * one utterance. The query takes about as long as the slowest model
+ * instead of the sum of all three.
+ */
+public class SceneDescriber {
+
+    private static final String TAG = "SCENE_DESCRIBER";
+    private static final String QUERY_NAME = "describe-everything";
+
+    public interface DescribeCallback {
+        void onResult(String spokenText);
+        void onError();
+    }
+
+    private final VisionEngine visionEngine;
+    private final CurrencyEngine currencyEngine;
+    private final FaceEngine faceEngine;
+    private final boolean isUrdu;
+
+    private final InferenceExecutor executor = InferenceExecutor.forModel(QUERY_NAME);
+
+    // one thread per model, waiting on its interpreter; the interpreters' own threads do the work
+    private final ExecutorService models = Executors.newFixedThreadPool(3, r -> {
+        Thread t = new Thread(r, "describe-model");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // 🕒 per-stage latency, see Diagnostics
+    private final LatencyHistogram totalLatency = Diagnostics.get().stage("scene.total");
+    private final LatencyHistogram frameLatency = Diagnostics.get().stage("scene.frame");
+    private final LatencyHistogram faceLatency = Diagnostics.get().stage("scene.face");
+    private final LatencyHistogram objectLatency = Diagnostics.get().stage("scene.object");
+    private final LatencyHistogram currencyLatency = Diagnostics.get().stage("scene.currency");
+    private final LatencyHistogram modelsLatency = Diagnostics.get().stage("scene.models");
+
+    public SceneDescriber(Context context,
+                          VisionEngine visionEngine,
+                          CurrencyEngine currencyEngine,
+                          FaceEngine faceEngine) {
+        this.visionEngine = visionEngine;
+        this.currencyEngine = currencyEngine;
+        this.faceEngine = faceEngine;
+
+        SharedPreferences prefs = context.getSharedPreferences("AppSettings", Context.MODE_PRIVATE);
+        isUrdu = prefs.getBoolean("language_urdu", false);
+    }
+
+    /**
+     * Queues the query; like the single-model queries, a newer one
+     * supersedes it and its answer is then never delivered.
+     */
+    public InferenceExecutor.Request describe(FaceDatabase database, DescribeCallback callback) {
+
+        return executor.submit(request -> {
+            long start = System.nanoTime();
+
+            // one frame for all three, decoded once per size the models need
+            try (FrameCache.Lease<StickFrame> frame = StickCamera.get().acquireFrame()) {
+                if (frame == null) throw new IOException("No frame from the stick camera");
+                long t = frameLatency.recordSince(start);
+                request.throwIfCancelled(); // superseded while fetching
+
+                CountDownLatch settled = new CountDownLatch(3);
+                FrameTask[] tasks = {
+                        new FrameTask(faceLatency, settled,
+                                () -> faceEngine.recognizeIn(request, frame.value, database)),
+                        new FrameTask(objectLatency, settled, () -> visionEngine.detectIn(frame.value)),
+                        new FrameTask(currencyLatency, settled, () -> currencyEngine.detectIn(frame.value)),
+                };
+
+                List<Future<String>> futures = new ArrayList<>(3);
+                List<String> parts = new ArrayList<>(3);
+                try {
+                    for (FrameTask task : tasks) futures.add(models.submit(task));
+                    for (Future<String> f : futures) collect(f, parts);
+                } finally {
+                    // interrupted or failed: the lease stays open until no model can touch the frame
+                    settle(tasks, futures, settled);
+                }
+                modelsLatency.recordSince(t);
+
+                totalLatency.recordSince(start);
+                return merge(parts);
+            }
+        }, new InferenceExecutor.Callback<String>() {
+            @Override
+            public void onResult(String result) {
+                callback.onResult(result);
+            }
+
+            @Override
+            public void onError(Exception error) {
+                Log.e(TAG, "Describe everything failed", error);
+                callback.onError();
+            }
+        });
+    }
+
+    // one model on the shared frame; counts down once it can no longer read it
+    private static final class FrameTask implements Callable<String> {
+        private final LatencyHistogram latency;
+        private final CountDownLatch settled;
+        private final Callable<String> part;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        FrameTask(LatencyHistogram latency, CountDownLatch settled, Callable<String> part) {
+            this.latency = latency;
+            this.settled = settled;
+            this.part = part;
+        }
+
+        @Override
+        public String call() throws Exception {
+            if (!claimed.compareAndSet(false, true)) return null; // withdrawn before it started
+            long start = System.nanoTime();
+            try {
+                return part.call();
+            } finally {
+                latency.recordSince(start);
+                settled.countDown();
+            }
+        }
+
+        // a task that has not started never will
+        void withdraw() {
+            if (claimed.compareAndSet(false, true)) settled.countDown();
+        }
+    }
+
+    // cancels what is still running and waits for it, keeping an interrupt for the caller
+    private static void settle(FrameTask[] tasks, List<Future<String>> futures, CountDownLatch settled) {
+        for (FrameTask task : tasks) task.withdraw();
+        for (Future<String> f : futures) f.cancel(true);
+
+        boolean interrupted = false;
+        while (true) {
+            try {
+                settled.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    // a failed model is left out of the answer rather than failing the others
+    private static void collect(Future<String> part, List<String> parts) throws InterruptedException {
+        try {
+            String text = part.get();
+            if (text != null) parts.add(text);
+        } catch (ExecutionException e) {
+            Log.w(TAG, "Model failed, left out of the description", e.getCause());
+        }
+    }
+
+    // "This is Ali. I see a Chair. This is a 100 rupee note"
+    private String merge(List<String> parts) {
+        if (parts.isEmpty()) return isUrdu ? "کچھ نظر نہیں آیا" : "Nothing detected";
+        return String.join(". ", parts);
+    }
+
+    public void close() {
+        executor.cancelAll();
+        models.shutdown();
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.bazmeraah.ai;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+import com.example.bazmeraah.vision.PerceptualHash;
+
+/**
+ * Computes the {@link PerceptualHash} of a frame. The frame is first drawn
+ * into a small reusable thumbnail, so hashing costs a few thousand pixels
+ * whatever the camera resolution.
+ */
+class SceneHasher {
+
+    private static final int THUMB_WIDTH = PerceptualHash.COLS * 8;
+    private static final int THUMB_HEIGHT = PerceptualHash.ROWS * 8;
+
+    private final Bitmap thumb = Bitmap.createBitmap(THUMB_WIDTH, THUMB_HEIGHT, Bitmap.Config.ARGB_8888);
+    private final Canvas canvas = new Canvas(thumb);
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Rect dst = new Rect(0, 0, THUMB_WIDTH, THUMB_HEIGHT);
+
+    private final int[] pixels = new int[THUMB_WIDTH * THUMB_HEIGHT];
+    private final int[] cells = new int[PerceptualHash.COLS * PerceptualHash.ROWS];
+
+    synchronized long hash(Bitmap frame) {
+        canvas.drawBitmap(frame, null, dst, paint);
+        thumb.getPixels(pixels, 0, THUMB_WIDTH, 0, 0, THUMB_WIDTH, THUMB_HEIGHT);
+        return PerceptualHash.dHash(pixels, THUMB_WIDTH, THUMB_HEIGHT, cells);
+    }
+}
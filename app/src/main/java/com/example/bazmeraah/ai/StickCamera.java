@@ -0,0 +1,145 @@
+package com.example.bazmeraah.ai;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import com.example.bazmeraah.vision.LatencyHistogram;
+
+/**
+ * Single entry point to the smart-stick camera for all engines. While
+ * streaming is on, queries are answered from the latest frame already in
+ * memory; otherwise (or if the stream went stale) one snapshot is fetched.
+ * Streamed frames are kept as JPEG bytes and only decoded when used.
+ *
+ * The captured frame is shared: queries within the freshness window of its
+ * capture (object, then currency, say) reuse it, and queries arriving
+ * while it is being fetched wait for that fetch instead of starting one.
+ * Each consumer decodes it at the size it needs, see {@link StickFrame}.
+ */
+public class StickCamera {
+
+    private static final String TAG = "STICK_CAMERA";
+    private static final String SNAPSHOT_URL = "http://192.168.4.1:5000/snapshot";
+    private static final String STREAM_URL = "http://192.168.4.1:5000/stream";
+
+    private static final int RING_CAPACITY = 2;
+    private static final long MAX_FRAME_AGE_MS = 1000;
+    private static final long DEFAULT_FRAME_FRESHNESS_MS = 1500; // shared decoded frame, from capture
+
+    private static StickCamera instance;
+
+    public static synchronized StickCamera get() {
+        if (instance == null) instance = new StickCamera();
+        return instance;
+    }
+
+    private final MjpegFrameSource<byte[]> source = new MjpegFrameSource<>(
+            STREAM_URL,
+            SNAPSHOT_URL,
+            jpeg -> jpeg,
+            RING_CAPACITY,
+            StickClient.get());
+
+    // 🕒 per-stage latency, see Diagnostics
+    private static final LatencyHistogram httpLatency = Diagnostics.get().stage("camera.http");
+    private static final LatencyHistogram decodeLatency = Diagnostics.get().stage("camera.decode");
+
+    // ARGB_8888: the models were trained on 8-bit colour, RGB_565 banding costs accuracy
+    private final JpegDecoder decoder = new JpegDecoder(Bitmap.Config.ARGB_8888, decodeLatency);
+
+    private final FrameCache<StickFrame> frameCache = new FrameCache<>(
+            DEFAULT_FRAME_FRESHNESS_MS,
+            this::capture,
+            StickFrame::release,
+            MjpegFrameSource::nowMs);
+
+    private StickCamera() {
+    }
+
+    /* ================= STREAMING ================= */
+
+    public void startStreaming() {
+        source.start();
+    }
+
+    public void stopStreaming() {
+        source.stop();
+        frameCache.invalidate();
+    }
+
+    public MjpegFrameSource<byte[]> getSource() {
+        return source;
+    }
+
+    /* ================= FRAMES ================= */
+
+    /**
+     * A lease on the current frame, shared with the other queries; close it
+     * when done and never recycle its bitmaps. Blocking, call from a worker
+     * thread. Returns null on camera failure.
+     */
+    public FrameCache.Lease<StickFrame> acquireFrame() throws Exception {
+        return frameCache.acquire();
+    }
+
+    /** How long after its capture a frame is still reused, in milliseconds. */
+    public void setFrameFreshnessMs(long ms) {
+        frameCache.setFreshnessMs(ms);
+    }
+
+    public FrameCache<StickFrame> getFrameCache() {
+        return frameCache;
+    }
+
+    // latest streamed frame if it is fresh, otherwise a one-off snapshot; nothing decoded yet
+    private FrameCache.Captured<StickFrame> capture() {
+        FrameRingBuffer.Frame<byte[]> frame = source.latest(MAX_FRAME_AGE_MS);
+        if (frame != null) {
+            StickFrame stick = StickFrame.of(frame.value, decoder);
+            if (stick != null) return new FrameCache.Captured<>(stick, frame.timestampMs);
+        }
+
+        long requested = MjpegFrameSource.nowMs();
+        byte[] jpeg = fetchSnapshot();
+        StickFrame stick = jpeg != null ? StickFrame.of(jpeg, decoder) : null;
+        return stick != null ? new FrameCache.Captured<>(stick, requested) : null;
+    }
+
+    /**
+     * Waits for a streamed JPEG newer than afterSequence, starting the stream
+     * if it is not running. Null on timeout.
+     */
+    public FrameRingBuffer.Frame<byte[]> awaitNextJpeg(long afterSequence, long timeoutMs)
+            throws InterruptedException {
+        source.start();
+        return source.frames().awaitNewer(afterSequence, timeoutMs);
+    }
+
+    /**
+     * Decodes a streamed JPEG just above targetW x targetH, into a pooled
+     * bitmap. Hand it back with {@link #release} when done. Null if undecodable.
+     */
+    public Bitmap decodeForModel(byte[] jpeg, int targetWidth, int targetHeight) {
+        return decoder.decode(jpeg, targetWidth, targetHeight);
+    }
+
+    /** Returns a bitmap from {@link #decodeForModel} to the decoder pool. */
+    public void release(Bitmap bitmap) {
+        decoder.release(bitmap);
+    }
+
+    // the JPEG bytes, read fully so the network and the decoder are timed apart
+    public byte[] fetchSnapshot() {
+        try {
+            long start = System.nanoTime();
+            StickClient.Fetch fetch = StickClient.get().fetch(SNAPSHOT_URL);
+            httpLatency.recordSince(start);
+
+            if (fetch.attempts > 1) Log.d(TAG, "Snapshot took " + fetch.attempts + " attempts");
+            return fetch.body;
+        } catch (Exception e) {
+            Log.e(TAG, "Snapshot failed", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.example.bazmeraah.ai;
+
+import com.example.bazmeraah.vision.LatencyHistogram;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * The one HTTP client for the smart stick. Snapshots share a keep-alive
+ * connection pool, timeouts are sized for the stick's own access point
+ * (one hop away, so a slow connect means the link is gone), and failed
+ * requests are retried a bounded number of times with jittered backoff.
+ * Conditional fetches send the last ETag / Last-Modified and skip the body
+ * when the stick reports the frame unchanged.
+ */
+public class StickClient {
+
+    private static final long CONNECT_TIMEOUT_MS = 1000;
+    private static final long READ_TIMEOUT_MS = 2000;
+    private static final long CALL_TIMEOUT_MS = 3000;        // per attempt, headers and body
+    private static final long STREAM_READ_TIMEOUT_MS = 3000; // between MJPEG parts, no call timeout
+    private static final int MAX_IDLE_CONNECTIONS = 2;
+    private static final long KEEP_ALIVE_MS = 60_000;
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long BASE_BACKOFF_MS = 80;
+    private static final long MAX_BACKOFF_MS = 600;
+
+    private static StickClient instance;
+
+    public static synchronized StickClient get() {
+        if (instance == null) {
+            instance = new StickClient(tunedBuilder().build(), MAX_ATTEMPTS, BASE_BACKOFF_MS,
+                    Diagnostics.get().stage("camera.rtt"));
+        }
+        return instance;
+    }
+
+    /** Pool and timeouts tuned for the stick; retries are ours, not OkHttp's. */
+    public static OkHttpClient.Builder tunedBuilder() {
+        return new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MS, TimeUnit.MILLISECONDS))
+                .connectTimeout(CONNECT_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .readTimeout(READ_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .writeTimeout(READ_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .callTimeout(CALL_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .retryOnConnectionFailure(false);
+    }
+
+    /** Result of one fetch, after retries. */
+    public static final class Fetch {
+        public final byte[] body;
+        public final boolean notModified; // body is the one cached from the last full fetch
+        public final long rttMs;          // request sent to response headers, last attempt
+        public final long totalMs;        // every attempt, backoff included
+        public final int attempts;
+
+        Fetch(byte[] body, boolean notModified, long rttMs, long totalMs, int attempts) {
+            this.body = body;
+            this.notModified = notModified;
+            this.rttMs = rttMs;
+            this.totalMs = totalMs;
+            this.attempts = attempts;
+        }
+    }
+
+    // validators from the last full response, for conditional fetches
+    private static final class Validators {
+        final String etag;
+        final String lastModified;
+        final byte[] body;
+
+        Validators(String etag, String lastModified, byte[] body) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.body = body;
+        }
+    }
+
+    // a response status, retried only for 5xx
+    private static final class StatusException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        final int code;
+
+        StatusException(int code) {
+            super("Stick HTTP " + code);
+            this.code = code;
+        }
+    }
+
+    private final OkHttpClient http;
+    private final OkHttpClient streamHttp;
+    private final int maxAttempts;
+    private final long baseBackoffMs;
+    private final LatencyHistogram rttLatency;
+
+    private final Map<String, Validators> validators = new ConcurrentHashMap<>();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private volatile long lastRttMs = -1;
+
+    StickClient(OkHttpClient http, int maxAttempts, long baseBackoffMs, LatencyHistogram rttLatency) {
+        this.http = http;
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMs = baseBackoffMs;
+        this.rttLatency = rttLatency;
+
+        // same pool, but a stream is open-ended and only its gaps are bounded
+        this.streamHttp = http.newBuilder()
+                .readTimeout(STREAM_READ_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .callTimeout(0, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /** For long-lived responses such as the MJPEG stream, sharing the pool. */
+    public OkHttpClient streamHttp() {
+        return streamHttp;
+    }
+
+    /* ================= FETCH ================= */
+
+    /** GETs the whole body, retrying connection failures, timeouts and 5xx. */
+    public Fetch fetch(String url) throws IOException {
+        return execute(url, false);
+    }
+
+    /**
+     * Like {@link #fetch}, but sends the validators of the last response for
+     * this url. On 304 the cached body is returned with notModified set.
+     */
+    public Fetch fetchIfChanged(String url) throws IOException {
+        return execute(url, true);
+    }
+
+    private Fetch execute(String url, boolean conditional) throws IOException {
+        long start = System.nanoTime();
+        IOException last = null;
+
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            if (attempt > 1) {
+                retries.incrementAndGet();
+                pause(backoffMs(attempt - 1));
+            }
+
+            Validators cached = conditional ? validators.get(url) : null;
+            Request.Builder request = new Request.Builder().url(url);
+            if (cached != null && cached.etag != null) request.header("If-None-Match", cached.etag);
+            if (cached != null && cached.lastModified != null)
+                request.header("If-Modified-Since", cached.lastModified);
+
+            requests.incrementAndGet();
+            long sent = System.nanoTime();
+
+            try (Response response = http.newCall(request.build()).execute()) {
+                long rtt = System.nanoTime() - sent;
+                rttLatency.record(rtt);
+                lastRttMs = rtt / 1_000_000;
+
+                int code = response.code();
+
+                if (code == 304 && cached != null) {
+                    notModified.incrementAndGet();
+                    return new Fetch(cached.body, true, lastRttMs, elapsedMs(start), attempt);
+                }
+                if (!response.isSuccessful()) throw new StatusException(code);
+
+                byte[] body = response.body().bytes();
+
+                if (conditional) {
+                    String etag = response.header("ETag");
+                    String modified = response.header("Last-Modified");
+                    if (etag != null || modified != null) {
+                        validators.put(url, new Validators(etag, modified, body));
+                    } else {
+                        validators.remove(url);
+                    }
+                }
+                return new Fetch(body, false, lastRttMs, elapsedMs(start), attempt);
+
+            } catch (IOException e) {
+                last = e;
+                if (!retryable(e)) break;
+            }
+        }
+
+        failures.incrementAndGet();
+        throw last;
+    }
+
+    private static boolean retryable(IOException e) {
+        if (Thread.currentThread().isInterrupted()) return false;
+        return !(e instanceof StatusException) || ((StatusException) e).code >= 500;
+    }
+
+    // "full jitter": uniform in [0, base * 2^retry], capped
+    private long backoffMs(int retry) {
+        long ceiling = Math.min(MAX_BACKOFF_MS, baseBackoffMs << Math.min(retry, 16));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private static void pause(long ms) throws IOException {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted during retry backoff");
+        }
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    /* ================= METRICS ================= */
+
+    /** HTTP requests sent, retries included. */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getRetries() {
+        return retries.get();
+    }
+
+    /** Fetches that failed after every attempt. */
+    public long getFailures() {
+        return failures.get();
+    }
+
+    public long getNotModified() {
+        return notModified.get();
+    }
+
+    /** RTT of the last request (to response headers), -1 before the first. */
+    public long getLastRttMs() {
+        return lastRttMs;
+    }
+
+    public int getPooledConnections() {
+        return http.connectionPool().connectionCount();
+    }
+}
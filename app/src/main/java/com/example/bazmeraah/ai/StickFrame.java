@@ -0,0 +1,88 @@
+package com.example.bazmeraah.ai;
+
+import android.graphics.Bitmap;
+
+import com.example.bazmeraah.vision.LetterboxGeometry;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One captured stick frame, shared between queries through the frame cache.
+ * It keeps the JPEG and decodes it on demand: at model resolution for the
+ * detectors, and at full resolution only when a consumer needs every pixel
+ * (face crops). Decodes at the same sample size are shared; different
+ * sizes decode in parallel, for models running at once on one frame.
+ * Bitmaps belong to the frame; never recycle them, they are released with it.
+ */
+public class StickFrame {
+
+    private final byte[] jpeg;
+    private final JpegDecoder decoder;
+    private final int width, height;
+
+    // by inSampleSize; 1 is the full-resolution frame
+    private final Map<Integer, Decoded> decoded = new HashMap<>(4);
+    private boolean released;
+
+    // one decode per sample size, locked on its own so sizes do not wait for each other
+    private static final class Decoded {
+        Bitmap bitmap;
+    }
+
+    /** Null if the bytes have no readable JPEG header. */
+    public static StickFrame of(byte[] jpeg, JpegDecoder decoder) {
+        int[] size = JpegDecoder.bounds(jpeg);
+        return size[0] > 0 && size[1] > 0 ? new StickFrame(jpeg, decoder, size[0], size[1]) : null;
+    }
+
+    private StickFrame(byte[] jpeg, JpegDecoder decoder, int width, int height) {
+        this.jpeg = jpeg;
+        this.decoder = decoder;
+        this.width = width;
+        this.height = height;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /** Decoded just above what a letterbox into targetW x targetH keeps. Null if undecodable. */
+    public Bitmap forModel(int targetWidth, int targetHeight) {
+        return at(LetterboxGeometry.sampleSize(width, height, targetWidth, targetHeight));
+    }
+
+    /** Every pixel, decoded on first use. Null if undecodable. */
+    public Bitmap full() {
+        return at(1);
+    }
+
+    private Bitmap at(int sample) {
+        Decoded slot;
+        synchronized (this) {
+            if (released) throw new IllegalStateException("Frame already released");
+            slot = decoded.get(sample);
+            if (slot == null) {
+                slot = new Decoded();
+                decoded.put(sample, slot);
+            }
+        }
+
+        synchronized (slot) {
+            if (slot.bitmap == null) slot.bitmap = decoder.decode(jpeg, width, height, sample);
+            return slot.bitmap;
+        }
+    }
+
+    /** Hands the decoded bitmaps back to the decoder's pool; called once the last lease closes. */
+    public synchronized void release() {
+        released = true;
+        // leases are closed, so no decode is running
+        for (Decoded slot : decoded.values()) decoder.release(slot.bitmap);
+        decoded.clear();
+    }
+}
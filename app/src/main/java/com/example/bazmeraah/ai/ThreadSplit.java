@@ -0,0 +1,85 @@
+package com.example.bazmeraah.ai;
+
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+
+/**
+ * How the interpreter threads are shared between the models, so that all
+ * three can run at once ("describe everything") without fighting over the
+ * cores. The big cores are split between the two detectors, the small face
+ * model gets a thread of its own (the scheduler puts it on a little core).
+ * An interpreter keeps the thread count it was created with, so single-shot
+ * queries use the same split. This is only the default until
+ * {@link ModelCalibrator} has measured the model on this phone.
+ */
+public final class ThreadSplit {
+
+    private static final String TAG = "THREAD_SPLIT";
+    private static final String CPU_DIR = "/sys/devices/system/cpu/";
+
+    private static ThreadSplit instance;
+
+    public static synchronized ThreadSplit forDevice() {
+        if (instance == null) {
+            int cores = Runtime.getRuntime().availableProcessors();
+            instance = forBigCores(bigCores(maxFrequencies(cores)));
+            Log.d(TAG, cores + " cores, " + instance);
+        }
+        return instance;
+    }
+
+    public final int bigCores;
+    public final int objectThreads;
+    public final int currencyThreads;
+    public final int faceThreads;
+
+    private ThreadSplit(int bigCores, int objectThreads, int currencyThreads, int faceThreads) {
+        this.bigCores = bigCores;
+        this.objectThreads = objectThreads;
+        this.currencyThreads = currencyThreads;
+        this.faceThreads = faceThreads;
+    }
+
+    static ThreadSplit forBigCores(int bigCores) {
+        int big = Math.max(1, bigCores);
+        int object = (big + 1) / 2;
+        return new ThreadSplit(big, object, Math.max(1, big - object), 1);
+    }
+
+    /**
+     * Cores faster than the slowest cluster, from their maximum frequencies
+     * (0 when unknown). A device that does not report clusters is taken as
+     * half big, half little.
+     */
+    static int bigCores(long[] maxFrequencies) {
+        long slowest = Long.MAX_VALUE;
+        for (long f : maxFrequencies) if (f > 0) slowest = Math.min(slowest, f);
+
+        int big = 0;
+        for (long f : maxFrequencies) if (f > slowest) big++;
+
+        return big > 0 ? big : Math.max(1, maxFrequencies.length / 2);
+    }
+
+    private static long[] maxFrequencies(int cores) {
+        long[] frequencies = new long[cores];
+        for (int i = 0; i < cores; i++) {
+            File file = new File(CPU_DIR + "cpu" + i + "/cpufreq/cpuinfo_max_freq");
+            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+                frequencies[i] = Long.parseLong(reader.readLine().trim());
+            } catch (Exception e) {
+                frequencies[i] = 0; // offline core or not readable
+            }
+        }
+        return frequencies;
+    }
+
+    @Override
+    public String toString() {
+        return bigCores + " big: object " + objectThreads + ", currency " + currencyThreads
+                + ", face " + faceThreads + " threads";
+    }
+}
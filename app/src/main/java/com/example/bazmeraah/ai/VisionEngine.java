@@ -1,39 +1,73 @@
 package com.example.bazmeraah.ai;
 
 import android.content.Context;
-import android.content.res.AssetFileDescriptor;
 import android.graphics.*;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 
+import com.example.bazmeraah.vision.ColorAnalyzer;
+import com.example.bazmeraah.vision.DetectionBuffer;
+import com.example.bazmeraah.vision.LatencyHistogram;
+import com.example.bazmeraah.vision.LetterboxGeometry;
+import com.example.bazmeraah.vision.NonMaxSuppression;
+import com.example.bazmeraah.vision.ObjectTracker;
+import com.example.bazmeraah.vision.SceneCache;
+import com.example.bazmeraah.vision.TensorPacker;
+import com.example.bazmeraah.vision.TensorRecording;
+import com.example.bazmeraah.vision.YoloDecoder;
+
+import org.tensorflow.lite.DataType;
 import org.tensorflow.lite.Interpreter;
 import org.tensorflow.lite.Tensor;
 
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.nio.*;
-import java.nio.channels.FileChannel;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 public class VisionEngine {
 
     private static final String TAG = "VISION_ENGINE";
-    private static final String SNAPSHOT_URL = "http://192.168.4.1:5000/snapshot";
-    private static final String MODEL_NAME = "yolov8n-oiv7_float32.tflite";
+    private static final String MODEL_NAME = "yolov8n-oiv7_int8.tflite";
     private static final String LABEL_FILE = "openimages_labels.txt";
     private String pendingLabel = "";
     private int pendingCount = 0;
 
+    private static final String DETECTION_ERROR = "Detection error";
+
     private static final float CONF_THRESHOLD = 0.20f;
     private static final float NMS_THRESHOLD = 0.35f; // Slightly tighter for better accuracy
     private static final int MAX_DETECTIONS_FOR_NMS = 50; // Speed optimization
+    private static final int NUM_THREADS = ThreadSplit.forDevice().objectThreads; // until calibrated, see ModelRuntime
+
+    private static final float DETECTION_THRESHOLD = 0.22f; // simple rakha (no bias)
+    private static final float OTHER_LABEL_THRESHOLD = 0.40f; // labels outside the allowed set
+    private static final float MIN_BOX_AREA = 0.01f;
+    private static final int PAD_COLOR = 0xFF727272; // rgb(114, 114, 114)
+
+    private static final int ROI_SIZE = 40;  // colour thumbnail, pixels per side
+    private static final long FRAME_WAIT_MS = 1000; // continuous mode, per streamed frame
+    private static final int PREPARED_FRAMES = 2;   // input tensors in flight between stages
+
+    // continuous mode tracking, see ObjectTracker
+    private static final float TRACK_HIGH_THRESHOLD = 0.35f;
+    private static final float TRACK_MATCH_IOU = 0.3f;
+    private static final int TRACK_MIN_HITS = 2;
+    private static final long TRACK_MAX_LOST_MS = 2000;
+    private static final long SETTLED_INFERENCE_INTERVAL_MS = 800; // model rate once nothing changes
+
+    // single-shot queries on an unchanged scene reuse the last answer
+    private static final int SCENE_MAX_HASH_DISTANCE = 6;   // of 64 bits
+    private static final long SCENE_CACHE_MAX_AGE_MS = 30000;
 
     private final Context context;
+    private final ModelRuntime runtime;
+    private final InferenceExecutor executor = InferenceExecutor.forModel(MODEL_NAME);
     private final Handler mainHandler = new Handler(Looper.getMainLooper());
 
-    private Interpreter tflite;
     private List<String> labels = new ArrayList<>();
 
 
@@ -61,15 +95,65 @@ public class VisionEngine {
     ));
 
     private int inputWidth, inputHeight, inputChannels;
-    private int dim1, dim2;
+    private int dim2;
+    private volatile int dim1; // non-zero once readModelInfo has run
 
     private boolean transposedOutput = false;
     private boolean builtInNMS = false;
 
-    // Stability & History
-    private Detection lastDetectedObject = null;
-    private Bitmap lastFrameBitmap = null;
+    // tensor types, quantized models take bytes in and give bytes out
+    private DataType inputType = DataType.FLOAT32;
+    private DataType outputType = DataType.FLOAT32;
+    private byte[] inputTable;
+    private float outputScale = 1f;
+    private int outputZeroPoint = 0;
+
+    // reused for every frame once the model shapes are known
+    private FrameContext frame;
+    private YoloDecoder decoder;
+    private final NonMaxSuppression nms = new NonMaxSuppression(NMS_THRESHOLD, MAX_DETECTIONS_FOR_NMS);
+
+    // continuous mode
+    private FramePipeline pipeline;
+    private Letterboxer pipelineLetterboxer;
+    private final BlockingQueue<PreparedFrame> freeFrames = new ArrayBlockingQueue<>(PREPARED_FRAMES);
+    private volatile boolean refillFrames;
+    private final ObjectTracker tracker = new ObjectTracker(
+            TRACK_HIGH_THRESHOLD, TRACK_MATCH_IOU, TRACK_MIN_HITS, TRACK_MAX_LOST_MS);
+    private final List<ObjectTracker.Track> announced = new ArrayList<>();
+    private volatile long lastInferenceMs;
+    private volatile long skippedFrames;
+
+    // Stability & History: the last single-shot answer, under the engine lock;
+    // continuous detections only feed the tracker
+    private boolean hasLastObject = false;
+    private float lastX, lastY, lastW, lastH;
+    private volatile int[] lastRoi = null; // ROI_SIZE² thumbnail of the object's centre
+
+    // colour analysis, on a thumbnail captured at detection time
+    private final ColorAnalyzer colorAnalyzer = new ColorAnalyzer();
+    private Bitmap roiBitmap;
+    private Canvas roiCanvas;
+    private final Paint roiPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Rect roiSrc = new Rect();
+    private final Rect roiDst = new Rect(0, 0, ROI_SIZE, ROI_SIZE);
     private String lastLabel = "";
+    private volatile File recordDir; // set for one query by recordNextQuery
+    private volatile CachedScene currentScene; // the scene last* describes, if it came from a single-shot query
+
+    // scene-change gating for single-shot queries
+    private final SceneHasher sceneHasher = new SceneHasher();
+    private final SceneCache<CachedScene> sceneCache =
+            new SceneCache<>(SCENE_MAX_HASH_DISTANCE, SCENE_CACHE_MAX_AGE_MS);
+
+    // 🕒 per-stage latency, see Diagnostics
+    private final LatencyHistogram totalLatency = Diagnostics.get().stage("vision.total");
+    private final LatencyHistogram hashLatency = Diagnostics.get().stage("vision.hash");
+    private final LatencyHistogram acquireLatency = Diagnostics.get().stage("vision.acquire");
+    private final LatencyHistogram letterboxLatency = Diagnostics.get().stage("vision.letterbox");
+    private final LatencyHistogram packLatency = Diagnostics.get().stage("vision.pack");
+    private final LatencyHistogram inferLatency = Diagnostics.get().stage("vision.infer");
+    private final LatencyHistogram postprocessLatency = Diagnostics.get().stage("vision.postprocess");
 
     public interface DetectionCallback {
         void onResult(String spokenText);
@@ -78,39 +162,61 @@ public class VisionEngine {
 
     public VisionEngine(Context context) {
         this.context = context;
+        this.runtime = ModelRuntime.get(context);
     }
 
+    // Optional: begins loading in the background, otherwise the first query loads it
     public void start() {
-        try {
-            MappedByteBuffer modelBuffer = loadModelFile(MODEL_NAME);
-            Interpreter.Options options = new Interpreter.Options();
-            options.setNumThreads(4); // Keep 4 threads for balance
-
-            tflite = new Interpreter(modelBuffer, options);
-
-            Tensor inputTensor = tflite.getInputTensor(0);
-            int[] inShape = inputTensor.shape();
-            inputHeight = inShape[1];
-            inputWidth = inShape[2];
-            inputChannels = inShape[3];
-
-            Tensor outputTensor = tflite.getOutputTensor(0);
-            int[] outShape = outputTensor.shape();
-            dim1 = outShape[1];
-            dim2 = outShape[2];
-
-            if (dim2 == 6) {
-                builtInNMS = true;
-            } else if (dim1 < dim2) {
-                transposedOutput = true;
-            }
+        runtime.preload(MODEL_NAME, NUM_THREADS);
+    }
+
+    public boolean isReady() {
+        return runtime.isReady(MODEL_NAME);
+    }
 
-            loadLabels();
-            Log.d(TAG, "Model & Labels loaded successfully");
+    private void readModelInfo(Interpreter tflite) {
 
-        } catch (Exception e) {
-            Log.e(TAG, "Model load failed", e);
+        Tensor inputTensor = tflite.getInputTensor(0);
+        int[] inShape = inputTensor.shape();
+        inputHeight = inShape[1];
+        inputWidth = inShape[2];
+        inputChannels = inShape[3];
+
+        inputType = inputTensor.dataType();
+        if (isQuantized(inputType)) {
+            Tensor.QuantizationParams q = inputTensor.quantizationParams();
+            inputTable = TensorPacker.quantizationTable(
+                    q.getScale(), q.getZeroPoint(), inputType == DataType.INT8);
+        }
+
+        Tensor outputTensor = tflite.getOutputTensor(0);
+        int[] outShape = outputTensor.shape();
+
+        outputType = outputTensor.dataType();
+        if (isQuantized(outputType)) {
+            Tensor.QuantizationParams q = outputTensor.quantizationParams();
+            outputScale = q.getScale();
+            outputZeroPoint = q.getZeroPoint();
+        }
+
+        Log.d(TAG, "Model input " + inputType + ", output " + outputType);
+
+        if (outShape[2] == 6) {
+            builtInNMS = true;
+        } else if (outShape[1] < outShape[2]) {
+            transposedOutput = true;
         }
+
+        loadLabels();
+        Log.d(TAG, "Model & Labels loaded successfully");
+
+        // written last, it marks the info as complete
+        dim2 = outShape[2];
+        dim1 = outShape[1];
+    }
+
+    private static boolean isQuantized(DataType type) {
+        return type == DataType.UINT8 || type == DataType.INT8;
     }
 
     private void loadLabels() {
@@ -123,360 +229,517 @@ public class VisionEngine {
         }
     }
 
-    private MappedByteBuffer loadModelFile(String modelName) throws Exception {
-        AssetFileDescriptor fileDescriptor = context.getAssets().openFd(modelName);
-        FileInputStream inputStream = new FileInputStream(fileDescriptor.getFileDescriptor());
-        FileChannel fileChannel = inputStream.getChannel();
-        return fileChannel.map(FileChannel.MapMode.READ_ONLY, fileDescriptor.getStartOffset(), fileDescriptor.getDeclaredLength());
-    }
+    /**
+     * Queues a single-shot query on the model's executor. A newer query
+     * supersedes it, and its answer is then dropped instead of delivered.
+     */
+    public InferenceExecutor.Request fetchSnapshotAndDetect(DetectionCallback callback) {
 
-    public void fetchSnapshotAndDetect(
-            DetectionCallback callback) {
+        return executor.submit(request -> {
+            long start = System.nanoTime();
 
-        new Thread(() -> {
-            try {
+            // shared with other queries, the bitmap is not ours to recycle
+            try (FrameCache.Lease<StickFrame> frame = StickCamera.get().acquireFrame()) {
+                if (frame == null) throw new IOException("No frame from the stick camera");
+
+                request.throwIfCancelled(); // superseded while fetching
+                String result = detect(frame.value);
+                totalLatency.recordSince(start);
+                return result;
+            }
+        }, new InferenceExecutor.Callback<String>() {
+            @Override
+            public void onResult(String result) {
+                callback.onResult(result);
+            }
+
+            @Override
+            public void onError(Exception error) {
+                Log.e(TAG, "Snapshot failed", error);
+                callback.onError();
+            }
+        });
+    }
 
-                URL url = new URL(SNAPSHOT_URL);
-                HttpURLConnection conn =
-                        (HttpURLConnection) url.openConnection();
+    /**
+     * Blocking, for queries that run several models on one frame (see
+     * SceneDescriber): what is seen, or null when there is no object.
+     */
+    public String detectIn(StickFrame stickFrame) throws Exception {
+        String result = detect(stickFrame);
+        if (DETECTION_ERROR.equals(result)) throw new IOException("Object detection failed");
+        return hasLastObject ? result : null;
+    }
 
-                conn.connect();
+    // single-shot and SceneDescriber queries may overlap, the last-object state is shared
+    private synchronized String detect(StickFrame stickFrame) throws Exception {
+        ensureModelInfo(); // the frame is decoded at the input size
+        Bitmap bitmap = stickFrame.forModel(inputWidth, inputHeight);
+        if (bitmap == null) throw new IOException("Undecodable stick frame");
+        return runObjectDetection(bitmap);
+    }
 
-                InputStream is = conn.getInputStream();
-                Bitmap bitmap = BitmapFactory.decodeStream(is);
+    private String runObjectDetection(Bitmap bitmap) {
 
-                is.close();
-                conn.disconnect();
+        // ♻️ same scene as last time, answer without the interpreter
+        long t = System.nanoTime();
+        long sceneHash = sceneHasher.hash(bitmap);
+        t = hashLatency.recordSince(t);
+        long now = SystemClock.elapsedRealtime();
 
-                if (bitmap == null) {
-                    mainHandler.post(callback::onError);
-                    return;
-                }
+        CachedScene cached = sceneCache.lookup(sceneHash, now);
+        if (cached != null) {
+            restore(cached);
+            return cached.text;
+        }
 
-                String result =
-                        runObjectDetection(bitmap);
+        Interpreter tflite;
 
-                mainHandler.post(
-                        () -> callback.onResult(result));
+        try {
+            tflite = runtime.acquire(MODEL_NAME, NUM_THREADS);
+            acquireLatency.recordSince(t);
+        } catch (Exception e) {
+            Log.e(TAG, "Model unavailable", e);
+            return DETECTION_ERROR;
+        }
 
-            } catch (Exception e) {
-                Log.e(TAG, "Snapshot failed", e);
-                mainHandler.post(callback::onError);
-            }
-        }).start();
-    }
+        String result;
 
-    private String runObjectDetection(Bitmap bitmap) {
         try {
-            ByteBuffer input = letterbox(bitmap);
-            float[][][] output = new float[1][dim1][dim2];
-            tflite.run(input, output);
-            return decodeRawYOLO(output, bitmap);
+            if (dim1 == 0) readModelInfo(tflite);
+            if (frame == null) createFrameContext();
+
+            // FIX: Using Neutral Gray (114, 114, 114) instead of Black for padding
+            t = System.nanoTime();
+            frame.letterbox(bitmap, PAD_COLOR);
+            t = letterboxLatency.recordSince(t);
+            pack(frame.pixels, frame.input);
+            packLatency.recordSince(t);
+
+            runPacked(tflite, frame.input);
+            result = describeDetections(bitmap);
+            if (recordDir != null) record();
         } catch (Exception e) {
             Log.e(TAG, "Inference error", e);
-            return "Detection error";
+            return DETECTION_ERROR;
+        } finally {
+            runtime.release(MODEL_NAME);
         }
-    }
 
-    private String decodeRawYOLO(float[][][] output, Bitmap bitmap) {
+        CachedScene scene = snapshot(result);
+        sceneCache.store(sceneHash, scene, now);
+        currentScene = scene;
+        return result;
+    }
 
-        List<Detection> detections = new ArrayList<>();
-        int boxes = transposedOutput ? dim2 : dim1;
-        int elements = transposedOutput ? dim1 : dim2;
+    /**
+     * Dumps the letterboxed frame and raw output tensor of the next
+     * single-shot query into {@code dir} (see TensorRecording), for replaying
+     * in the benchmarks module.
+     */
+    public void recordNextQuery(File dir) {
+        sceneCache.invalidate();
+        recordDir = dir;
+    }
 
-        for (int i = 0; i < boxes; i++) {
+    // caller holds the interpreter
+    private void record() {
+        File dir = recordDir;
+        recordDir = null;
 
-            float bestScore = 0f;
-            int bestClass = -1;
+        try {
+            TensorRecording.writeInts(new File(dir,
+                    "frame_" + inputWidth + "x" + inputHeight + ".argb"), frame.pixels);
 
-            // 🔍 find best class
-            for (int c = 4; c < elements; c++) {
-                float score = transposedOutput ? output[0][c][i] : output[0][i][c];
-                if (score > bestScore) {
-                    bestScore = score;
-                    bestClass = c - 4;
-                }
+            if (frame.output != null) {
+                TensorRecording.writeFloats(new File(dir,
+                        "yolo_output_" + dim1 + "x" + dim2 + ".f32"), frame.output);
             }
+            Log.d(TAG, "Recorded frame to " + dir);
+        } catch (IOException e) {
+            Log.e(TAG, "Recording failed", e);
+        }
+    }
 
-            // 🔥 label
-            String label = (bestClass >= 0 && bestClass < labels.size())
-                    ? labels.get(bestClass)
-                    : "object";
+    /** How many single-shot queries were answered from the scene cache. */
+    public long getSceneCacheHits() {
+        return sceneCache.hits();
+    }
 
-            // 🔥 FILTER
-            if (!allowed.contains(label)) {
-                if (bestScore < 0.40f) continue;
-            }
+    public long getSceneCacheMisses() {
+        return sceneCache.misses();
+    }
 
-            float dynamicThreshold = 0.22f; // simple rakha (no bias)
+    private void ensureModelInfo() throws Exception {
+        if (dim1 != 0) return;
 
-            if (bestScore > dynamicThreshold) {
+        Interpreter tflite = runtime.acquire(MODEL_NAME, NUM_THREADS);
+        try {
+            if (dim1 == 0) readModelInfo(tflite);
+        } finally {
+            runtime.release(MODEL_NAME);
+        }
+    }
 
-                float x = transposedOutput ? output[0][0][i] : output[0][i][0];
-                float y = transposedOutput ? output[0][1][i] : output[0][i][1];
-                float w = transposedOutput ? output[0][2][i] : output[0][i][2];
-                float h = transposedOutput ? output[0][3][i] : output[0][i][3];
+    private void pack(int[] pixels, ByteBuffer input) {
+        if (inputTable != null) {
+            TensorPacker.packQuantizedRgb(pixels, pixels.length, inputTable, input);
+        } else {
+            TensorPacker.packFloatRgb(pixels, pixels.length, input);
+        }
+    }
 
-                if (w * h < 0.01f) continue;
+    // caller holds the interpreter; leaves the detections, after NMS, in frame.candidates
+    private void runPacked(Interpreter tflite, ByteBuffer input) {
 
-                detections.add(new Detection(x, y, w, h, bestScore, bestClass));
-            }
+        long t = System.nanoTime();
+        tflite.run(input, frame.prepareOutput());
+        t = inferLatency.recordSince(t);
+
+        if (isQuantized(outputType)) {
+            decoder.decodeQuantized(frame.readQuantizedOutput(), dim1, dim2, transposedOutput,
+                    outputType == DataType.INT8, outputScale, outputZeroPoint, frame.candidates);
+        } else {
+            decoder.decode(frame.readOutput(), dim1, dim2, transposedOutput, frame.candidates);
         }
 
         // ✅ NMS
-        List<Detection> finalDetections = applyNMS(detections);
+        nms.apply(frame.candidates);
+        postprocessLatency.recordSince(t);
+    }
+
+    private void createFrameContext() {
+        int anchors = transposedOutput ? dim2 : dim1;
+        frame = new FrameContext(inputWidth, inputHeight, inputChannels,
+                isQuantized(inputType) ? 1 : 4,
+                dim1 * dim2,
+                isQuantized(outputType) ? 1 : 4,
+                anchors);
+        decoder = new YoloDecoder(labels, allowed, DETECTION_THRESHOLD, OTHER_LABEL_THRESHOLD, MIN_BOX_AREA);
+    }
+
+    // single-shot only, under the engine lock: the answer becomes the last object
+    private String describeDetections(Bitmap bitmap) {
 
-        if (finalDetections.isEmpty()) {
+        DetectionBuffer detections = frame.candidates;
+
+        currentScene = null;
+
+        if (detections.size() == 0) {
             lastLabel = "";
-            lastDetectedObject = null;
+            lastRoi = null;
+            hasLastObject = false;
             return "No object detected";
         }
 
         // 🎯 best detection
-        Detection currentBest = finalDetections.get(0);
-        int cls = currentBest.classId;
+        int cls = detections.classId[0];
+        float confidence = detections.score[0];
 
         String currentLabel = (cls >= 0 && cls < labels.size())
                 ? labels.get(cls)
                 : "object";
 
         // ✅ SIMPLE MEMORY (NO BIAS)
-        lastDetectedObject = currentBest;
-        lastFrameBitmap = bitmap;
+        lastX = detections.x[0];
+        lastY = detections.y[0];
+        lastW = detections.w[0];
+        lastH = detections.h[0];
+        lastRoi = captureRoi(bitmap, lastX, lastY, lastW, lastH);
+        hasLastObject = true;
         lastLabel = currentLabel;
 
         // ✅ SMART SPEAKING
-        if (currentBest.confidence < 0.19f) {
+        if (confidence < 0.19f) {
             return "I think it might be a " + currentLabel;
         } else {
             return "I see a " + currentLabel;
         }
     }
 
-    // Color detection method remains unchanged as it's functional
     public String detectColorOfLastObject() {
 
-        if (lastDetectedObject == null || lastFrameBitmap == null)
+        int[] roi = lastRoi;
+        if (!hasLastObject || roi == null)
             return "No object selected for color detection";
 
-        int imgW = lastFrameBitmap.getWidth();
-        int imgH = lastFrameBitmap.getHeight();
+        CachedScene scene = currentScene;
+        if (scene != null && scene.color != null) return scene.color;
 
-        float scale = Math.min((float) inputWidth / imgW, (float) inputHeight / imgH);
-        int padX = (inputWidth - Math.round(imgW * scale)) / 2;
-        int padY = (inputHeight - Math.round(imgH * scale)) / 2;
+        String color;
+        synchronized (colorAnalyzer) {
+            color = colorAnalyzer.dominantColor(roi, roi.length);
+        }
 
-        float cx = (lastDetectedObject.x * inputWidth - padX) / scale;
-        float cy = (lastDetectedObject.y * inputHeight - padY) / scale;
-        float bw = (lastDetectedObject.w * inputWidth) / scale;
-        float bh = (lastDetectedObject.h * inputHeight) / scale;
+        String result = "The color of the " + lastLabel + " is " + color;
+        if (scene != null) scene.color = result;
+        return result;
+    }
 
-        int x = Math.max(0, (int)(cx - bw / 2));
-        int y = Math.max(0, (int)(cy - bh / 2));
-        int w = Math.min(imgW - x, (int)bw);
-        int h = Math.min(imgH - y, (int)bh);
+    /**
+     * Copies the centre third of the detected box into a small thumbnail, so
+     * the colour can be asked for later without keeping the frame alive.
+     */
+    private int[] captureRoi(Bitmap bitmap, float bx, float by, float bw, float bh) {
 
-        if (w <= 0 || h <= 0)
-            return "Unable to determine color";
+        int imgW = bitmap.getWidth();
+        int imgH = bitmap.getHeight();
 
-        try {
+        LetterboxGeometry g = new LetterboxGeometry().fit(imgW, imgH, inputWidth, inputHeight);
 
-            // 🎯 CENTER CROP (MAIN FIX)
-            int centerX = x + w / 2;
-            int centerY = y + h / 2;
+        float cx = g.toSourceX(bx);
+        float cy = g.toSourceY(by);
+        float w = g.toSourceWidth(bw);
+        float h = g.toSourceHeight(bh);
 
-            int cropW = w / 3;
-            int cropH = h / 3;
+        // 🎯 CENTER CROP
+        int cropW = (int) (w / 3);
+        int cropH = (int) (h / 3);
 
-            int startX = Math.max(0, centerX - cropW / 2);
-            int startY = Math.max(0, centerY - cropH / 2);
+        int startX = Math.max(0, (int) cx - cropW / 2);
+        int startY = Math.max(0, (int) cy - cropH / 2);
 
-            cropW = Math.min(cropW, imgW - startX);
-            cropH = Math.min(cropH, imgH - startY);
+        cropW = Math.min(cropW, imgW - startX);
+        cropH = Math.min(cropH, imgH - startY);
 
-            Bitmap cropped = Bitmap.createBitmap(
-                    lastFrameBitmap,
-                    startX,
-                    startY,
-                    cropW,
-                    cropH
-            );
+        if (cropW <= 0 || cropH <= 0) return null;
 
-            String color = getDominantColor(cropped);
+        int[] roi = new int[ROI_SIZE * ROI_SIZE];
 
-            return "The color of the " + lastLabel + " is " + color;
+        // single-shot and continuous detection may overlap
+        synchronized (roiDst) {
+            if (roiBitmap == null) {
+                roiBitmap = Bitmap.createBitmap(ROI_SIZE, ROI_SIZE, Bitmap.Config.ARGB_8888);
+                roiCanvas = new Canvas(roiBitmap);
+            }
 
-        } catch (Exception e) {
-            return "Color detection failed";
+            roiSrc.set(startX, startY, startX + cropW, startY + cropH);
+            roiCanvas.drawBitmap(bitmap, roiSrc, roiDst, roiPaint);
+            roiBitmap.getPixels(roi, 0, ROI_SIZE, 0, 0, ROI_SIZE, ROI_SIZE);
         }
+        return roi;
     }
 
-    private String getDominantColor(Bitmap bitmap) {
-
-        Bitmap small = Bitmap.createScaledBitmap(bitmap, 40, 40, true);
+    /* ================= SCENE CACHE ================= */
 
-        Map<Integer, Integer> colorMap = new HashMap<>();
+    // what a single-shot query leaves behind, restored when the scene has not changed
+    private static class CachedScene {
+        String text;
+        boolean hasObject;
+        String label;
+        float x, y, w, h;
+        int[] roi;
+        volatile String color;
+    }
 
-        int[] pixels = new int[40 * 40];
-        small.getPixels(pixels, 0, 40, 0, 0, 40, 40);
+    private CachedScene snapshot(String text) {
+        CachedScene scene = new CachedScene();
+        scene.text = text;
+        scene.hasObject = hasLastObject;
+        scene.label = lastLabel;
+        scene.x = lastX;
+        scene.y = lastY;
+        scene.w = lastW;
+        scene.h = lastH;
+        scene.roi = lastRoi;
+        return scene;
+    }
 
-        for (int pixel : pixels) {
+    // the colour is filled in lazily, the first time it is asked for
+    private void restore(CachedScene scene) {
+        currentScene = scene;
+        hasLastObject = scene.hasObject;
+        lastLabel = scene.label;
+        lastX = scene.x;
+        lastY = scene.y;
+        lastW = scene.w;
+        lastH = scene.h;
+        lastRoi = scene.roi;
+    }
 
-            int r = (pixel >> 16) & 0xFF;
-            int g = (pixel >> 8) & 0xFF;
-            int b = pixel & 0xFF;
+    /* ================= CONTINUOUS ================= */
+
+    /**
+     * Describes the surroundings continuously: fetch, decode, preprocess,
+     * inference and speaking run as separate pipeline stages, so the next
+     * frame is fetched while the current one is in the model. Detections are
+     * tracked across frames and only newly appearing objects are reported.
+     * While the tracked scene is settled, inference drops to one frame every
+     * {@link #SETTLED_INFERENCE_INTERVAL_MS} and the tracker extrapolates.
+     */
+    public synchronized void startContinuous(DetectionCallback callback) {
+        if (pipeline != null) return;
+
+        tracker.clear();
+        lastInferenceMs = 0;
+        skippedFrames = 0;
+        refillFrames = true;
+        long[] lastSequence = {0};
+
+        pipeline = FramePipeline.from("fetch", () -> {
+                    FrameRingBuffer.Frame<byte[]> jpeg =
+                            StickCamera.get().awaitNextJpeg(lastSequence[0], FRAME_WAIT_MS);
+                    if (jpeg == null) return null;
+                    lastSequence[0] = jpeg.sequence;
+                    return jpeg.value;
+                })
+                .onDropped(this::recycle)
+                .latencyInto(Diagnostics.get().latency(), "describe.")
+                .then("decode", (byte[] jpeg) -> shouldInfer() ? decodeForModel(jpeg) : null)
+                .then("preprocess", this::prepare)
+                .then("infer", this::infer)
+                .into("speak", (String text) -> mainHandler.post(() -> callback.onResult(text)));
+
+        pipeline.start();
+    }
 
-            // 🎯 quantization (noise reduce)
-            int key = ((r / 32) << 16) | ((g / 32) << 8) | (b / 32);
+    public synchronized void stopContinuous() {
+        if (pipeline == null) return;
 
-            colorMap.put(key, colorMap.getOrDefault(key, 0) + 1);
+        for (FramePipeline.StageStats stats : pipeline.stats()) {
+            Log.d(TAG, "Pipeline " + stats);
         }
+        Log.d(TAG, "Frames skipped while tracking: " + skippedFrames);
 
-        // 🎯 top 2 colors
-        int firstColor = 0, secondColor = 0;
-        int firstCount = 0, secondCount = 0;
+        pipeline.stop();
+        pipeline = null;
+    }
 
-        for (Map.Entry<Integer, Integer> entry : colorMap.entrySet()) {
+    public synchronized boolean isContinuous() {
+        return pipeline != null;
+    }
 
-            int count = entry.getValue();
+    public synchronized List<FramePipeline.StageStats> getPipelineStats() {
+        return pipeline != null ? pipeline.stats() : Collections.emptyList();
+    }
 
-            if (count > firstCount) {
-                secondCount = firstCount;
-                secondColor = firstColor;
+    // straight to (just above) the input size, into a pooled bitmap
+    private Bitmap decodeForModel(byte[] jpeg) throws Exception {
+        ensureModelInfo();
+        return StickCamera.get().decodeForModel(jpeg, inputWidth, inputHeight);
+    }
 
-                firstCount = count;
-                firstColor = entry.getKey();
+    private PreparedFrame prepare(Bitmap bitmap) throws Exception {
+        ensureModelInfo();
 
-            } else if (count > secondCount) {
-                secondCount = count;
-                secondColor = entry.getKey();
-            }
+        if (pipelineLetterboxer == null) pipelineLetterboxer = new Letterboxer(inputWidth, inputHeight);
+        if (refillFrames) {
+            // replaces buffers a previous run lost; late returns find the pool full and are dropped
+            int bytes = inputWidth * inputHeight * inputChannels * (isQuantized(inputType) ? 1 : 4);
+            while (freeFrames.size() < PREPARED_FRAMES) freeFrames.offer(new PreparedFrame(bytes));
+            refillFrames = false;
         }
 
-        // 🔁 convert FIRST color (FIXED)
-        int r1 = ((firstColor >> 16) & 0xFF) * 32 + 16;
-        int g1 = ((firstColor >> 8) & 0xFF) * 32 + 16;
-        int b1 = (firstColor & 0xFF) * 32 + 16;
-
-        float[] hsv1 = new float[3];
-        Color.RGBToHSV(r1, g1, b1, hsv1);
-
-        // 🔆 brightness adjust
-        hsv1[2] = Math.min(hsv1[2] * 1.1f, 1.0f);
-
-        String color1 = mapHSVToColor(hsv1[0], hsv1[1], hsv1[2]);
-
-        // 🔁 convert SECOND color (FIXED)
-        int r2 = ((secondColor >> 16) & 0xFF) * 32 + 16;
-        int g2 = ((secondColor >> 8) & 0xFF) * 32 + 16;
-        int b2 = (secondColor & 0xFF) * 32 + 16;
-
-        float[] hsv2 = new float[3];
-        Color.RGBToHSV(r2, g2, b2, hsv2);
-
-        String color2 = mapHSVToColor(hsv2[0], hsv2[1], hsv2[2]);
-
-        // 🎯 DECISION LOGIC
-
-        // agar dominant gray hai lekin second strong hai → second use karo
-        if (color1.equals("Gray") && secondCount > firstCount * 0.6f) {
-            return color2;
+        // waits while every input buffer is queued or in the model (back-pressure)
+        PreparedFrame prepared = freeFrames.take();
+        synchronized (prepared) {
+            prepared.free = false;
         }
 
-        return color1;
+        try {
+            long t = System.nanoTime();
+            pipelineLetterboxer.letterbox(bitmap, PAD_COLOR);
+            t = letterboxLatency.recordSince(t);
+            pack(pipelineLetterboxer.pixels, prepared.input);
+            packLatency.recordSince(t);
+        } catch (Exception e) {
+            recycle(prepared); // the bitmap is the pipeline's to drop
+            throw e;
+        }
+        prepared.bitmap = bitmap;
+        return prepared;
     }
 
-    private String mapHSVToColor(float hue, float sat, float val) {
-
-        // 🔆 brightness boost (camera weak case)
-        val = Math.min(val * 1.3f, 1.0f);
+    // skips the frame (before decoding it) while the tracker has the scene covered
+    private boolean shouldInfer() {
+        long now = SystemClock.elapsedRealtime();
 
-        if (val < 0.08) return "Black";
-        if (sat < 0.12 && val > 0.85) return "White";
-        if (sat < 0.25) return "Gray";
+        if (!tracker.isSettled() || now - lastInferenceMs >= SETTLED_INFERENCE_INTERVAL_MS)
+            return true;
 
-        if (hue < 10 || hue > 350) return "Red";
-        if (hue < 45) return (sat < 0.5) ? "Brown" : "Orange";
-        if (hue < 70) return "Yellow";
-        if (hue < 160) return "Green";
-        if (hue < 250) return "Blue";
-        if (hue < 300) return "Purple";
-
-        return "Pink";
+        tracker.predict(now);
+        skippedFrames++;
+        return false;
     }
 
-    private List<Detection> applyNMS(List<Detection> detections) {
-        // Sort by confidence descending
-        Collections.sort(detections, (a, b) -> Float.compare(b.confidence, a.confidence));
-
-        // Speed optimization: Only process top 100 boxes
-        int limit = Math.min(detections.size(), MAX_DETECTIONS_FOR_NMS);
-        List<Detection> topDetections = detections.subList(0, limit);
-
-        List<Detection> result = new ArrayList<>();
-        for (Detection d : topDetections) {
-            boolean keep = true;
-            for (Detection r : result) {
-                if (iou(d, r) > NMS_THRESHOLD) {
-                    keep = false;
-                    break;
-                }
-            }
-            if (keep) result.add(d);
+    private String infer(PreparedFrame prepared) throws Exception {
+        boolean acquired = false;
+        try {
+            long t = System.nanoTime();
+            Interpreter tflite = runtime.acquire(MODEL_NAME, NUM_THREADS); // interrupted by stop()
+            acquired = true;
+            acquireLatency.recordSince(t);
+
+            if (frame == null) createFrameContext();
+            runPacked(tflite, prepared.input); // the tracker's, "what color" keeps the last single-shot object
+
+            long now = SystemClock.elapsedRealtime();
+            lastInferenceMs = now;
+            tracker.update(frame.candidates, now);
+
+            announced.clear();
+            if (tracker.takeUnannounced(announced) == 0) return null;
+            return announcement(announced);
+        } finally {
+            if (acquired) runtime.release(MODEL_NAME);
+            recycle(prepared);
         }
-        return result;
-    }
-
-    private float iou(Detection a, Detection b) {
-        float x1 = Math.max(a.x - a.w / 2, b.x - b.w / 2);
-        float y1 = Math.max(a.y - a.h / 2, b.y - b.h / 2);
-        float x2 = Math.min(a.x + a.w / 2, b.x + b.w / 2);
-        float y2 = Math.min(a.y + a.h / 2, b.y + b.h / 2);
-        float inter = Math.max(0, x2 - x1) * Math.max(0, y2 - y1);
-        float union = a.w * a.h + b.w * b.h - inter + 1e-6f;
-        return inter / union;
     }
 
-    private ByteBuffer letterbox(Bitmap bitmap) {
-        float scale = Math.min((float) inputWidth / bitmap.getWidth(), (float) inputHeight / bitmap.getHeight());
-        int newW = Math.round(bitmap.getWidth() * scale);
-        int newH = Math.round(bitmap.getHeight() * scale);
-
-        Bitmap resized = Bitmap.createScaledBitmap(bitmap, newW, newH, true);
-        Bitmap outputBitmap = Bitmap.createBitmap(inputWidth, inputHeight, Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(outputBitmap);
-
-        // FIX: Using Neutral Gray (114, 114, 114) instead of Black for padding
-        canvas.drawColor(Color.rgb(114, 114, 114));
-        canvas.drawBitmap(resized, (inputWidth - newW) / 2f, (inputHeight - newH) / 2f, null);
-
-        ByteBuffer buffer = ByteBuffer.allocateDirect(inputWidth * inputHeight * inputChannels * 4);
-        buffer.order(ByteOrder.nativeOrder());
+    // "I see a Chair", "I see a Chair and a Door", "I see a Chair, a Door and a Lamp"
+    private String announcement(List<ObjectTracker.Track> tracks) {
+        List<String> names = new ArrayList<>();
+        for (ObjectTracker.Track t : tracks) {
+            String label = (t.classId >= 0 && t.classId < labels.size())
+                    ? labels.get(t.classId)
+                    : "object";
+            if (!names.contains(label)) names.add(label);
+        }
 
-        int[] pixels = new int[inputWidth * inputHeight];
-        outputBitmap.getPixels(pixels, 0, inputWidth, 0, 0, inputWidth, inputHeight);
+        StringBuilder text = new StringBuilder("I see ");
+        for (int i = 0; i < names.size(); i++) {
+            if (i > 0) text.append(i == names.size() - 1 ? " and " : ", ");
+            text.append("a ").append(names.get(i));
+        }
+        return text.toString();
+    }
 
-        for (int pixel : pixels) {
-            buffer.putFloat(((pixel >> 16) & 0xFF) / 255f);
-            buffer.putFloat(((pixel >> 8) & 0xFF) / 255f);
-            buffer.putFloat((pixel & 0xFF) / 255f);
+    private void recycle(Object item) {
+        if (item instanceof PreparedFrame) {
+            PreparedFrame prepared = (PreparedFrame) item;
+            Bitmap bitmap;
+            synchronized (prepared) { // a failed stage's input is dropped again by the pipeline
+                if (prepared.free) return;
+                prepared.free = true;
+                bitmap = prepared.bitmap;
+                prepared.bitmap = null;
+            }
+            if (bitmap != null) StickCamera.get().release(bitmap);
+            freeFrames.offer(prepared);
+        } else if (item instanceof Bitmap) {
+            StickCamera.get().release((Bitmap) item);
         }
-        buffer.rewind();
-        return buffer;
     }
 
-    private static class Detection {
-        float x, y, w, h, confidence;
-        int classId;
-        Detection(float x, float y, float w, float h, float conf, int id) {
-            this.x = x; this.y = y; this.w = w; this.h = h; this.confidence = conf; this.classId = id;
+    // a packed input tensor on its way from preprocess to infer
+    private static class PreparedFrame {
+        final ByteBuffer input;
+        Bitmap bitmap;
+        boolean free = true; // in freeFrames, guarded by the frame
+
+        PreparedFrame(int bytes) {
+            input = ByteBuffer.allocateDirect(bytes);
+            input.order(ByteOrder.nativeOrder());
         }
     }
 
+    // The interpreter is shared through ModelRuntime, only local state is dropped here
     public void close() {
-        if (tflite != null) {
-            tflite.close();
-            tflite = null;
-        }
+        stopContinuous();
+        hasLastObject = false;
+        lastRoi = null;
+        currentScene = null;
+        sceneCache.invalidate();
+        Log.d(TAG, "Scene cache: " + sceneCache.hits() + " hits, " + sceneCache.misses() + " misses");
     }
 }
\ No newline at end of file
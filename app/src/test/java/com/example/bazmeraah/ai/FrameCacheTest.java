@@ -0,0 +1,129 @@
+package com.example.bazmeraah.ai;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class FrameCacheTest {
+
+    private final AtomicLong now = new AtomicLong(10_000);
+    private final AtomicInteger loads = new AtomicInteger();
+    private final List<String> recycled = new CopyOnWriteArrayList<>();
+
+    private FrameCache<String> cache(long freshnessMs, FrameCache.Loader<String> loader) {
+        return new FrameCache<>(freshnessMs, loader, recycled::add, now::get);
+    }
+
+    // frame-1, frame-2, ... captured "now"
+    private FrameCache.Captured<String> next() {
+        return new FrameCache.Captured<>("frame-" + loads.incrementAndGet(), now.get());
+    }
+
+    @Test
+    public void parallelQueriesShareOneCapture() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+
+        FrameCache<String> cache = cache(1000, () -> {
+            loading.countDown();
+            finish.await();
+            return next();
+        });
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            results.add(pool.submit(() -> {
+                try (FrameCache.Lease<String> frame = cache.acquire()) {
+                    return frame.value;
+                }
+            }));
+        }
+
+        assertTrue(loading.await(2, TimeUnit.SECONDS));
+        Thread.sleep(50); // let the others join the capture in flight
+        finish.countDown();
+
+        for (Future<String> f : results) assertEquals("frame-1", f.get(2, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.captures());
+        assertEquals(3, cache.coalesced() + cache.hits());
+    }
+
+    @Test
+    public void reusesFrameWithinWindowOfItsCaptureTime() throws Exception {
+        FrameCache<String> cache = cache(1000, this::next);
+
+        FrameCache.Lease<String> first = cache.acquire();
+        now.addAndGet(900);
+        try (FrameCache.Lease<String> again = cache.acquire()) {
+            assertEquals("frame-1", again.value);
+        }
+
+        now.addAndGet(200);
+        try (FrameCache.Lease<String> fresh = cache.acquire()) {
+            assertEquals("frame-2", fresh.value);
+        }
+
+        // frame-1 is still leased, recycled only once let go
+        assertTrue(recycled.isEmpty());
+        first.close();
+        first.close();
+        assertEquals(List.of("frame-1"), recycled);
+    }
+
+    @Test
+    public void captureAgeCountsFromCaptureNotFetch() throws Exception {
+        // a streamed frame that was already 800 ms old when fetched
+        FrameCache<String> cache = cache(1000, () ->
+                new FrameCache.Captured<>("old-" + loads.incrementAndGet(), now.get() - 800));
+
+        cache.acquire().close();
+        now.addAndGet(300);
+        try (FrameCache.Lease<String> frame = cache.acquire()) {
+            assertEquals("old-2", frame.value);
+        }
+    }
+
+    @Test
+    public void failedCaptureReturnsNullAndErrorsPropagate() throws Exception {
+        FrameCache<String> empty = cache(1000, () -> null);
+        assertNull(empty.acquire());
+
+        FrameCache<String> broken = cache(1000, () -> {
+            throw new IllegalStateException("stick offline");
+        });
+        try {
+            broken.acquire();
+            fail("expected the capture error");
+        } catch (IllegalStateException e) {
+            assertEquals("stick offline", e.getMessage());
+        }
+    }
+
+    @Test
+    public void invalidateRecyclesUnleasedFrame() throws Exception {
+        FrameCache<String> cache = cache(1000, this::next);
+        cache.acquire().close();
+
+        cache.invalidate();
+        assertEquals(List.of("frame-1"), recycled);
+
+        try (FrameCache.Lease<String> frame = cache.acquire()) {
+            assertEquals("frame-2", frame.value);
+        }
+    }
+}
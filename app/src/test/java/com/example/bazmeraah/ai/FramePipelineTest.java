@@ -0,0 +1,64 @@
+package com.example.bazmeraah.ai;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class FramePipelineTest {
+
+    private final AtomicInteger produced = new AtomicInteger();
+    private final List<Object> dropped = new CopyOnWriteArrayList<>();
+    private final List<Object> consumed = new CopyOnWriteArrayList<>();
+
+    private Integer nextItem() throws InterruptedException {
+        Thread.sleep(1);
+        return produced.incrementAndGet();
+    }
+
+    @Test
+    public void failedStageHandsItsInputToTheDropListener() throws Exception {
+        CountDownLatch failed = new CountDownLatch(3);
+
+        FramePipeline p = FramePipeline.from("fetch", this::nextItem)
+                .onDropped(dropped::add)
+                .then("fail", (Integer i) -> {
+                    failed.countDown();
+                    throw new IllegalStateException("bad frame " + i);
+                })
+                .into("sink", consumed::add);
+
+        p.start();
+        assertTrue(failed.await(2, TimeUnit.SECONDS));
+        p.stop();
+
+        assertTrue(consumed.isEmpty());
+        assertEquals(produced.get(), dropped.size()); // failed, evicted or drained, none lost
+    }
+
+    @Test
+    public void stopAccountsForEveryItem() throws Exception {
+        CountDownLatch busy = new CountDownLatch(5);
+
+        FramePipeline p = FramePipeline.from("fetch", this::nextItem)
+                .onDropped(dropped::add)
+                .then("slow", (Integer i) -> {
+                    busy.countDown();
+                    Thread.sleep(5); // interrupted here by stop(), mid-item
+                    return i;
+                })
+                .into("sink", consumed::add);
+
+        p.start();
+        assertTrue(busy.await(2, TimeUnit.SECONDS));
+        p.stop();
+        assertFalse(p.isRunning());
+
+        assertEquals(produced.get(), consumed.size() + dropped.size());
+    }
+}
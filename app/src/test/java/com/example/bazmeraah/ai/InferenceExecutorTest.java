@@ -0,0 +1,114 @@
+package com.example.bazmeraah.ai;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class InferenceExecutorTest {
+
+    private final List<String> delivered = new CopyOnWriteArrayList<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    // callbacks run on the worker, in place of the main thread
+    private final InferenceExecutor executor = new InferenceExecutor("test", Runnable::run);
+
+    @Test
+    public void latestRequestWinsAndRunningOneIsDropped() throws Exception {
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        CountDownLatch lastDone = new CountDownLatch(1);
+
+        InferenceExecutor.Request first = executor.submit(request -> {
+            firstStarted.countDown();
+            releaseFirst.await();
+            return "first";
+        }, record(null));
+        assertTrue(firstStarted.await(2, TimeUnit.SECONDS));
+
+        // queued behind the running one, then replaced
+        InferenceExecutor.Request second = executor.submit(request -> "second", record(null));
+        InferenceExecutor.Request third = executor.submit(request -> "third", record(lastDone));
+        releaseFirst.countDown();
+
+        assertTrue(lastDone.await(2, TimeUnit.SECONDS));
+        assertTrue(first.isCancelled());
+        assertTrue(second.isCancelled());
+        assertFalse(third.isCancelled());
+        assertTrue(third.id() > second.id());
+        assertEquals(List.of("third"), delivered);
+    }
+
+    @Test
+    public void runsOneRequestAtATime() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            String name = "r" + i;
+            executor.submit(request -> {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                Thread.sleep(2);
+                inFlight.decrementAndGet();
+                return name;
+            }, record(null));
+            // latest-wins: give the worker a chance to pick some up
+            if (i % 4 == 0) Thread.sleep(10);
+        }
+
+        long deadline = System.currentTimeMillis() + 2000;
+        while (executor.isBusy() && System.currentTimeMillis() < deadline) Thread.sleep(5);
+
+        assertFalse(executor.isBusy());
+        assertEquals(1, maxInFlight.get());
+        assertEquals("r19", delivered.get(delivered.size() - 1));
+    }
+
+    @Test
+    public void cancelledJobDeliversNothingAndErrorsAreReported() throws Exception {
+        CountDownLatch errored = new CountDownLatch(1);
+
+        executor.submit(request -> {
+            request.cancel();
+            request.throwIfCancelled();
+            return "never";
+        }, record(null));
+
+        InferenceExecutor.Request failing = executor.submit(request -> {
+            throw new IllegalStateException("camera");
+        }, new InferenceExecutor.Callback<String>() {
+            @Override
+            public void onResult(String result) {
+                delivered.add(result);
+            }
+
+            @Override
+            public void onError(Exception error) {
+                delivered.add("error " + error.getMessage());
+                errored.countDown();
+            }
+        });
+
+        assertTrue(errored.await(2, TimeUnit.SECONDS));
+        assertEquals(List.of("error camera"), delivered);
+        assertFalse(failing.isCancelled());
+    }
+
+    private InferenceExecutor.Callback<String> record(CountDownLatch done) {
+        return new InferenceExecutor.Callback<String>() {
+            @Override
+            public void onResult(String result) {
+                delivered.add(result);
+                if (done != null) done.countDown();
+            }
+
+            @Override
+            public void onError(Exception error) {
+                fail(error.toString());
+            }
+        };
+    }
+}
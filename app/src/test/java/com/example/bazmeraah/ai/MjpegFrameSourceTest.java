@@ -0,0 +1,192 @@
+package com.example.bazmeraah.ai;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs MjpegFrameSource against a local stand-in for the stick's HTTP server
+ * that replays a few recorded frames.
+ */
+public class MjpegFrameSourceTest {
+
+    private static final String BOUNDARY = "frame";
+
+    private static final byte[][] RECORDED = {
+            jpeg(1, 200),
+            jpeg(2, 900),
+            jpeg(3, 50),
+    };
+
+    private HttpServer server;
+    private String base;
+    private MjpegFrameSource<byte[]> source;
+    private final AtomicInteger snapshotRequests = new AtomicInteger();
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        base = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        server.createContext("/snapshot", exchange -> {
+            byte[] frame = RECORDED[snapshotRequests.getAndIncrement() % RECORDED.length];
+            exchange.getResponseHeaders().set("Content-Type", "image/jpeg");
+            exchange.sendResponseHeaders(200, frame.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(frame);
+            }
+        });
+
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        if (source != null) source.stop();
+        server.stop(0);
+    }
+
+    @Test
+    public void streamDeliversEveryRecordedFrame() throws Exception {
+
+        server.createContext("/stream", exchange -> {
+            exchange.getResponseHeaders().set("Content-Type",
+                    "multipart/x-mixed-replace; boundary=" + BOUNDARY);
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(multipart(RECORDED));
+            }
+        });
+
+        source = new MjpegFrameSource<>(base + "/stream", base + "/snapshot", jpeg -> jpeg, 2);
+        source.start();
+
+        Set<Integer> seen = receiveFrames(3, 5000);
+
+        assertEquals(3, seen.size());
+        assertTrue(source.getFramesReceived() >= 3);
+        assertEquals("stream served, snapshots untouched", 0, snapshotRequests.get());
+        assertNotNull(source.latest(1000));
+    }
+
+    @Test
+    public void emptyStreamIsNotReconnectedInALoop() throws Exception {
+
+        AtomicInteger streamRequests = new AtomicInteger();
+        server.createContext("/empty", exchange -> {
+            streamRequests.incrementAndGet();
+            exchange.getResponseHeaders().set("Content-Type",
+                    "multipart/x-mixed-replace; boundary=" + BOUNDARY);
+            exchange.sendResponseHeaders(200, 0);
+            exchange.getResponseBody().close(); // ends cleanly, no frames
+        });
+
+        source = new MjpegFrameSource<>(base + "/empty", base + "/snapshot", jpeg -> jpeg, 2);
+        source.start();
+        Thread.sleep(1000);
+
+        // 250 and 500 ms of backoff fit in a second; without it, dozens
+        assertTrue("reconnected " + streamRequests.get() + " times", streamRequests.get() <= 4);
+        assertEquals(0, source.getFramesReceived());
+    }
+
+    @Test
+    public void fallsBackToSnapshotLoopWithoutStream() throws Exception {
+
+        source = new MjpegFrameSource<>(base + "/missing", base + "/snapshot", jpeg -> jpeg, 2);
+        source.setSnapshotIntervalMs(10);
+        source.start();
+
+        Set<Integer> seen = receiveFrames(3, 5000);
+
+        assertEquals(3, seen.size());
+        assertFalse(source.isStreaming());
+        assertTrue(snapshotRequests.get() >= 3);
+    }
+
+    @Test
+    public void readerSplitsPartsWithoutContentLength() throws IOException {
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (byte[] frame : RECORDED) {
+            body.write(("--" + BOUNDARY + "\r\nContent-Type: image/jpeg\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            body.write(frame);
+            body.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+        }
+
+        MjpegStreamReader reader = new MjpegStreamReader(new ByteArrayInputStream(body.toByteArray()));
+
+        for (byte[] expected : RECORDED) {
+            assertArrayEquals(expected, reader.readFrame());
+        }
+        assertNull(reader.readFrame());
+    }
+
+    @Test
+    public void ringBufferKeepsLatestAndExpiresOldFrames() {
+        FrameRingBuffer<String> ring = new FrameRingBuffer<>(2);
+
+        ring.put("a", 100);
+        ring.put("b", 200);
+        ring.put("c", 300);
+
+        assertEquals("c", ring.latest().value);
+        assertEquals(3, ring.latest().sequence);
+        assertNotNull(ring.latest(50, 350));
+        assertNull(ring.latest(50, 400));
+    }
+
+    private Set<Integer> receiveFrames(int distinct, long timeoutMs) throws InterruptedException {
+        Set<Integer> seen = new HashSet<>();
+        long seq = 0;
+        long deadline = System.currentTimeMillis() + timeoutMs;
+
+        while (seen.size() < distinct && System.currentTimeMillis() < deadline) {
+            FrameRingBuffer.Frame<byte[]> frame = source.frames().awaitNewer(seq, 500);
+            if (frame == null) continue;
+            seq = frame.sequence;
+            seen.add((int) frame.value[2]);
+        }
+        return seen;
+    }
+
+    /* ================= RECORDED FRAMES ================= */
+
+    // SOI, an id byte, filler, EOI; enough for the reader, which never decodes
+    private static byte[] jpeg(int id, int size) {
+        byte[] b = new byte[size];
+        b[0] = (byte) 0xFF;
+        b[1] = (byte) 0xD8;
+        b[2] = (byte) id;
+        for (int i = 3; i < size - 2; i++) b[i] = (byte) (i % 200);
+        b[size - 2] = (byte) 0xFF;
+        b[size - 1] = (byte) 0xD9;
+        return b;
+    }
+
+    private static byte[] multipart(byte[][] frames) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] frame : frames) {
+            out.write(("--" + BOUNDARY + "\r\nContent-Type: image/jpeg\r\nContent-Length: "
+                    + frame.length + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.write(frame);
+            out.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+        }
+        return out.toByteArray();
+    }
+}
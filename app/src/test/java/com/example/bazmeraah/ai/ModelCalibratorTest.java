@@ -0,0 +1,84 @@
+package com.example.bazmeraah.ai;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ModelCalibratorTest {
+
+    private static ModelCalibrator.Trial trial(int threads, boolean xnnpack, double ms) {
+        return new ModelCalibrator.Trial(threads, xnnpack, ms);
+    }
+
+    @Test
+    public void picksTheFastestConfiguration() {
+        ModelCalibrator.Trial best = ModelCalibrator.fastest(Arrays.asList(
+                trial(1, true, 90), trial(1, false, 140),
+                trial(2, true, 50), trial(2, false, 80),
+                trial(3, true, 38), trial(3, false, 70)));
+
+        assertEquals(3, best.config.threads);
+        assertTrue(best.config.xnnpack);
+    }
+
+    @Test
+    public void fewerThreadsWinWhenAlmostAsFast() {
+        // 4 threads is 2% faster than 2, not worth two more cores
+        ModelCalibrator.Trial best = ModelCalibrator.fastest(Arrays.asList(
+                trial(1, true, 80), trial(2, true, 41), trial(2, false, 40.5),
+                trial(4, true, 40), trial(4, false, 60)));
+
+        assertEquals(2, best.config.threads);
+        assertFalse(best.config.xnnpack); // the faster of the two at 2 threads
+    }
+
+    @Test
+    public void xnnpackOffCanWin() {
+        ModelCalibrator.Trial best = ModelCalibrator.fastest(Arrays.asList(
+                trial(1, true, 30), trial(1, false, 20),
+                trial(2, true, 25), trial(2, false, 21)));
+
+        assertEquals(1, best.config.threads);
+        assertFalse(best.config.xnnpack);
+    }
+
+    // a query starts during the given run (0 is the warm-up)
+    private static final class QueryDuringRun implements ModelCalibrator.Gate {
+        final int run;
+        int runs;
+
+        QueryDuringRun(int run) {
+            this.run = run;
+        }
+
+        @Override
+        public long awaitIdle() {
+            return 0;
+        }
+
+        @Override
+        public boolean disturbedSince(long stamp) {
+            return runs > run;
+        }
+    }
+
+    @Test
+    public void undisturbedRunsGiveTheMedian() {
+        QueryDuringRun gate = new QueryDuringRun(Integer.MAX_VALUE);
+        double ms = ModelCalibrator.medianMs(() -> gate.runs++, gate, 0);
+
+        assertFalse(Double.isNaN(ms));
+        assertEquals(6, gate.runs); // warm-up and five timed
+    }
+
+    @Test
+    public void aQueryMidMeasurementDiscardsIt() {
+        QueryDuringRun gate = new QueryDuringRun(2);
+        double ms = ModelCalibrator.medianMs(() -> gate.runs++, gate, 0);
+
+        assertTrue(Double.isNaN(ms));
+        assertEquals(3, gate.runs); // stopped right after the disturbed run
+    }
+}
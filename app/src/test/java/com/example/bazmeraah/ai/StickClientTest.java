@@ -0,0 +1,162 @@
+package com.example.bazmeraah.ai;
+
+import com.example.bazmeraah.vision.LatencyHistogram;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.SocketPolicy;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs StickClient against a mock stick that can be slow, drop connections
+ * or answer with errors.
+ */
+public class StickClientTest {
+
+    private MockWebServer server;
+    private String url;
+    private final LatencyHistogram rtt = new LatencyHistogram();
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        url = server.url("/snapshot").toString();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    // tuned timeouts, but short backoff so the tests stay fast
+    private StickClient client(int maxAttempts) {
+        return new StickClient(StickClient.tunedBuilder().build(), maxAttempts, 5, rtt);
+    }
+
+    private static String text(StickClient.Fetch fetch) {
+        return new String(fetch.body, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void snapshotsReuseOneKeepAliveConnection() throws Exception {
+        StickClient client = client(3);
+        for (int i = 0; i < 3; i++) server.enqueue(new MockResponse().setBody("frame-" + i));
+
+        for (int i = 0; i < 3; i++) assertEquals("frame-" + i, text(client.fetch(url)));
+
+        assertEquals(0, server.takeRequest().getSequenceNumber());
+        assertEquals(1, server.takeRequest().getSequenceNumber());
+        assertEquals(2, server.takeRequest().getSequenceNumber());
+        assertEquals(3, rtt.count());
+        assertTrue(client.getLastRttMs() >= 0);
+    }
+
+    @Test
+    public void retriesDroppedConnectionsAndServerErrors() throws Exception {
+        StickClient client = client(3);
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START));
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setBody("frame"));
+
+        StickClient.Fetch fetch = client.fetch(url);
+
+        assertEquals("frame", text(fetch));
+        assertEquals(3, fetch.attempts);
+        assertEquals(2, client.getRetries());
+        assertEquals(0, client.getFailures());
+    }
+
+    @Test
+    public void givesUpAfterMaxAttempts() {
+        StickClient client = client(2);
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START));
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START));
+        server.enqueue(new MockResponse().setBody("too late"));
+
+        try {
+            client.fetch(url);
+            fail("expected the fetch to fail");
+        } catch (IOException expected) {
+            // both attempts dropped
+        }
+        assertEquals(2, server.getRequestCount());
+        assertEquals(1, client.getFailures());
+    }
+
+    @Test
+    public void clientErrorsAreNotRetried() {
+        StickClient client = client(3);
+        server.enqueue(new MockResponse().setResponseCode(404));
+        server.enqueue(new MockResponse().setBody("frame"));
+
+        try {
+            client.fetch(url);
+            fail("expected HTTP 404");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("404"));
+        }
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void stalledLinkTimesOutAndRetryRecovers() throws Exception {
+        OkHttpClient tight = StickClient.tunedBuilder()
+                .readTimeout(200, TimeUnit.MILLISECONDS)
+                .build();
+        StickClient client = new StickClient(tight, 2, 5, rtt);
+
+        // headers arrive, then the body trickles slower than the read timeout
+        server.enqueue(new MockResponse().setBody("stalled frame")
+                .throttleBody(1, 1, TimeUnit.SECONDS));
+        server.enqueue(new MockResponse().setBody("frame"));
+
+        long start = System.nanoTime();
+        StickClient.Fetch fetch = client.fetch(url);
+        long ms = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals("frame", text(fetch));
+        assertEquals(2, fetch.attempts);
+        assertTrue("took " + ms + " ms", ms < 2000);
+    }
+
+    @Test
+    public void slowButSteadyLinkStillSucceeds() throws Exception {
+        StickClient client = client(1);
+        server.enqueue(new MockResponse().setBody("frame")
+                .setHeadersDelay(300, TimeUnit.MILLISECONDS));
+
+        StickClient.Fetch fetch = client.fetch(url);
+
+        assertEquals("frame", text(fetch));
+        assertTrue(fetch.rttMs >= 300);
+    }
+
+    @Test
+    public void conditionalFetchSkipsUnchangedFrame() throws Exception {
+        StickClient client = client(3);
+        server.enqueue(new MockResponse().setBody("frame-1").setHeader("ETag", "\"v1\""));
+        server.enqueue(new MockResponse().setResponseCode(304));
+
+        StickClient.Fetch first = client.fetchIfChanged(url);
+        StickClient.Fetch second = client.fetchIfChanged(url);
+
+        assertFalse(first.notModified);
+        assertTrue(second.notModified);
+        assertEquals("frame-1", text(second));
+        assertEquals(1, client.getNotModified());
+
+        assertNull(server.takeRequest().getHeader("If-None-Match"));
+        assertEquals("\"v1\"", server.takeRequest().getHeader("If-None-Match"));
+    }
+}
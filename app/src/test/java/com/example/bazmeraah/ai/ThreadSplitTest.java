@@ -0,0 +1,38 @@
+package com.example.bazmeraah.ai;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ThreadSplitTest {
+
+    @Test
+    public void countsCoresAboveTheLittleCluster() {
+        // 4 little, 3 big, 1 prime
+        long[] freqs = {1_800_000, 1_800_000, 1_800_000, 1_800_000,
+                2_400_000, 2_400_000, 2_400_000, 3_000_000};
+        assertEquals(4, ThreadSplit.bigCores(freqs));
+    }
+
+    @Test
+    public void unknownTopologyIsHalfBig() {
+        assertEquals(4, ThreadSplit.bigCores(new long[8]));
+        assertEquals(4, ThreadSplit.bigCores(new long[]{2_000_000, 2_000_000, 2_000_000, 2_000_000,
+                2_000_000, 2_000_000, 2_000_000, 2_000_000}));
+        assertEquals(1, ThreadSplit.bigCores(new long[1]));
+    }
+
+    @Test
+    public void detectorsShareTheBigCores() {
+        for (int big = 1; big <= 8; big++) {
+            ThreadSplit split = ThreadSplit.forBigCores(big);
+            assertTrue(split.objectThreads >= 1 && split.currencyThreads >= 1);
+            assertEquals(1, split.faceThreads);
+            // a thread each at least, so with one big core the two detectors take two
+            assertTrue(split.toString(),
+                    split.objectThreads + split.currencyThreads <= Math.max(2, big));
+        }
+        assertEquals(2, ThreadSplit.forBigCores(4).objectThreads);
+        assertEquals(2, ThreadSplit.forBigCores(4).currencyThreads);
+    }
+}
@@ -0,0 +1,35 @@
+// JMH benchmarks for the detection/recognition post-processing, JVM only.
+//
+//   ./gradlew :benchmarks:jmh
+//   ./gradlew :benchmarks:jmh -Pbench.recordings=/path/to/dumps
+//
+// Recordings are the files written by VisionEngine.recordNextQuery
+// (adb pull them from the app's files dir). Without them the benchmarks run
+// on deterministic synthetic tensors of the same shapes.
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    implementation(project(":vision-core"))
+}
+
+tasks.withType<JavaCompile>().configureEach {
+    options.encoding = "UTF-8"
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    resultFormat.set("JSON")
+
+    findProperty("bench.recordings")?.let { jvmArgsAppend.add("-Dbench.recordings=$it") }
+}
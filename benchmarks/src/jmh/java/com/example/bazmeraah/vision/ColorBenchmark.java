@@ -0,0 +1,46 @@
+package com.example.bazmeraah.vision;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/** Colour quantisation/clustering on a 40x40 ROI, and the scene hash of a thumbnail. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ColorBenchmark {
+
+    private static final int FRAME = 640;
+    private static final int ROI = 40;
+    private static final int THUMB_W = PerceptualHash.COLS * 8;
+    private static final int THUMB_H = PerceptualHash.ROWS * 8;
+
+    private final ColorAnalyzer analyzer = new ColorAnalyzer();
+    private final int[] roi = new int[ROI * ROI];
+    private final int[] thumb = new int[THUMB_W * THUMB_H];
+    private final int[] cells = new int[PerceptualHash.COLS * PerceptualHash.ROWS];
+
+    @Setup
+    public void setUp() throws Exception {
+        int[] frame = Recordings.frame(FRAME, FRAME);
+
+        // centre crop for the ROI, every 8th pixel for the thumbnail
+        int offset = (FRAME - ROI) / 2;
+        for (int y = 0; y < ROI; y++) {
+            System.arraycopy(frame, (offset + y) * FRAME + offset, roi, y * ROI, ROI);
+        }
+        for (int y = 0; y < THUMB_H; y++) {
+            for (int x = 0; x < THUMB_W; x++) thumb[y * THUMB_W + x] = frame[(y * 8) * FRAME + x * 8];
+        }
+    }
+
+    @Benchmark
+    public String dominantColor() {
+        return analyzer.dominantColor(roi, roi.length);
+    }
+
+    @Benchmark
+    public long sceneHash() {
+        return PerceptualHash.dHash(thumb, THUMB_W, THUMB_H, cells);
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.bazmeraah.vision;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Nearest enrolled face: per-row L2 over float[][] (the old matching
+ * loop) against dot products over one flat EmbeddingMatrix. Searches over
+ * several samples per person are in EmbeddingStoreBenchmark.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EmbeddingDistanceBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int gallerySize;
+
+    @Param({"128", "512"})
+    public int dim;
+
+    private float[][] gallery;
+
+    private EmbeddingMatrix matrix;
+    private float[] query;
+
+    @Setup
+    public void setUp() {
+        gallery = Recordings.embeddings(gallerySize, dim, 1);
+        query = Recordings.embeddings(1, dim, 2)[0];
+
+        String[] names = new String[gallerySize];
+        float[] data = new float[gallerySize * dim];
+        for (int i = 0; i < gallerySize; i++) {
+            names[i] = "person " + i;
+            System.arraycopy(gallery[i], 0, data, i * dim, dim);
+        }
+        matrix = new EmbeddingMatrix(names, data, dim);
+    }
+
+    @Benchmark
+    public int nearestL2() {
+        int best = -1;
+        float bestDistance = Float.MAX_VALUE;
+
+        for (int i = 0; i < gallery.length; i++) {
+            float d = EmbeddingMath.distance(query, gallery[i]);
+            if (d < bestDistance) {
+                bestDistance = d;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    @Benchmark
+    public int nearestSquaredL2() {
+        int best = -1;
+        float bestDistance = Float.MAX_VALUE;
+
+        for (int i = 0; i < gallery.length; i++) {
+            float d = EmbeddingMath.squaredDistance(query, gallery[i]);
+            if (d < bestDistance) {
+                bestDistance = d;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    @Benchmark
+    public Object matrixTop1() {
+        return matrix.search(query, 1);
+    }
+
+    @Benchmark
+    public Object matrixTop3() {
+        return matrix.search(query, 3);
+    }
+}
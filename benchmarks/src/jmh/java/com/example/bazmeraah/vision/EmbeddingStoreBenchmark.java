@@ -0,0 +1,63 @@
+package com.example.bazmeraah.vision;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FaceDatabase costs on the binary store: saving a face (in place) and
+ * matching one, as the gallery grows. Both should stay flat in the number
+ * of faces for writes, and linear without parsing for matches. Float32
+ * against int8 records; the file size is printed once per trial.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EmbeddingStoreBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int gallerySize;
+
+    @Param({"FLOAT32", "INT8"})
+    public EmbeddingStore.Encoding encoding;
+
+    private static final int DIM = 128;
+
+    private File dir;
+    private EmbeddingStore store;
+    private float[][] embeddings;
+    private float[] query;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("embedding-store").toFile();
+        store = EmbeddingStore.open(new File(dir, "faces.bin"), new ExactFaceIndex(), encoding);
+        embeddings = Recordings.embeddings(gallerySize, DIM, 1);
+        for (int i = 0; i < gallerySize; i++) store.put("person " + i, embeddings[i]);
+        query = Recordings.embeddings(1, DIM, 2)[0];
+        System.out.printf("%n%s, %d faces: %d KiB%n", encoding, gallerySize, store.fileBytes() / 1024);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        store.clear();
+        store.close();
+        dir.delete();
+    }
+
+    @Benchmark
+    public void saveFace() throws IOException {
+        int i = next++ % gallerySize;
+        store.put("person " + i, embeddings[(i + 1) % gallerySize]);
+    }
+
+    @Benchmark
+    public List<EmbeddingMatrix.Hit> recognize() {
+        return store.search(query, 1);
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.bazmeraah.vision;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shortlisting people by centroid: exact scan against the IVF-flat index.
+ * Queries are enrolled faces plus noise (cosine about 0.8), like a second
+ * look at someone saved. Recall@1 against exact search is printed once
+ * per trial; random embeddings have no cluster structure, so it is a
+ * lower bound for real faces.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FaceIndexBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int identities;
+
+    @Param({"exact", "ivf4", "ivf8", "ivf16"})
+    public String index;
+
+    private static final int DIM = 128;
+    private static final int QUERIES = 256;
+
+    private FaceIndex faces;
+    private float[][] queries;
+    private int next;
+
+    @Setup
+    public void setUp() throws InterruptedException {
+        float[][] enrolled = Recordings.embeddings(identities, DIM, 1);
+        faces = index.equals("exact")
+                ? new ExactFaceIndex()
+                : new IvfFaceIndex(Integer.parseInt(index.substring(3)));
+        ExactFaceIndex reference = new ExactFaceIndex();
+        for (int i = 0; i < identities; i++) {
+            faces.put("person " + i, enrolled[i]);
+            reference.put("person " + i, enrolled[i]);
+        }
+        if (faces instanceof IvfFaceIndex) ((IvfFaceIndex) faces).awaitTraining();
+
+        Random random = new Random(2);
+        queries = new float[QUERIES][];
+        int agree = 0;
+        for (int q = 0; q < QUERIES; q++) {
+            float[] v = enrolled[random.nextInt(identities)].clone();
+            for (int i = 0; i < DIM; i++) v[i] += (float) random.nextGaussian() * 0.06f;
+            queries[q] = EmbeddingMath.normalize(v);
+
+            if (faces.search(queries[q], 1).get(0).name.equals(reference.search(queries[q], 1).get(0).name)) agree++;
+        }
+        System.out.printf("%n%s, %d identities: recall@1 %.3f%n", index, identities, agree / (double) QUERIES);
+    }
+
+    @Benchmark
+    public Object top1() {
+        return faces.search(queries[next++ % QUERIES], 1);
+    }
+
+    @Benchmark
+    public Object shortlist() {
+        return faces.search(queries[next++ % QUERIES], EmbeddingStore.SHORTLIST);
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.bazmeraah.vision;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NonMaxSuppression over the candidates of a decoded frame. Each call first
+ * restores the candidates (a handful of array copies, included in the time).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NmsBenchmark {
+
+    private static final int CLASSES = 601;
+    private static final int ANCHORS = 8400;
+
+    @Param({"50", "300"})
+    public int topK;
+
+    @Param({"greedy", "grid", "classAware"})
+    public String mode;
+
+    private final DetectionBuffer source = new DetectionBuffer(ANCHORS);
+    private final DetectionBuffer work = new DetectionBuffer(ANCHORS);
+    private NonMaxSuppression nms;
+
+    @Setup
+    public void setUp() throws Exception {
+        float[] output = Recordings.yoloOutput(4 + CLASSES, ANCHORS);
+
+        List<String> labels = new ArrayList<>();
+        for (int i = 0; i < CLASSES; i++) labels.add("Label " + i);
+
+        // no allowlist and a low threshold, so the frame is dense
+        new YoloDecoder(labels, null, 0.2f, 0.2f, 0f)
+                .decode(output, 4 + CLASSES, ANCHORS, true, source);
+
+        nms = new NonMaxSuppression(0.35f, topK)
+                .classAware(mode.equals("classAware"))
+                .gridThreshold(mode.equals("greedy") ? Integer.MAX_VALUE : 1);
+    }
+
+    @Benchmark
+    public int suppress() {
+        int n = source.count;
+        System.arraycopy(source.x, 0, work.x, 0, n);
+        System.arraycopy(source.y, 0, work.y, 0, n);
+        System.arraycopy(source.w, 0, work.w, 0, n);
+        System.arraycopy(source.h, 0, work.h, 0, n);
+        System.arraycopy(source.score, 0, work.score, 0, n);
+        System.arraycopy(source.classId, 0, work.classId, 0, n);
+        work.count = n;
+
+        return nms.apply(work);
+    }
+}
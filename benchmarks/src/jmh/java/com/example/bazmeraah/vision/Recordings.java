@@ -0,0 +1,97 @@
+package com.example.bazmeraah.vision;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Inputs for the benchmarks: recorded tensors and frames from
+ * {@code -Dbench.recordings=<dir>} when present (see VisionEngine.recordNextQuery),
+ * otherwise deterministic synthetic data of the same shape.
+ */
+final class Recordings {
+
+    private static final String DIR = System.getProperty("bench.recordings");
+
+    private Recordings() {
+    }
+
+    /** YOLOv8 output, transposed [4 + classes][anchors], normalised boxes. */
+    static float[] yoloOutput(int dim1, int dim2) throws IOException {
+        File recorded = recorded("yolo_output_" + dim1 + "x" + dim2 + ".f32");
+        if (recorded != null) return TensorRecording.readFloats(recorded);
+
+        Random random = new Random(dim1 * 31L + dim2);
+        float[] out = new float[dim1 * dim2];
+        int classes = dim1 - 4;
+
+        for (int i = 0; i < dim2; i++) {
+            out[i] = random.nextFloat();
+            out[dim2 + i] = random.nextFloat();
+            out[2 * dim2 + i] = 0.02f + random.nextFloat() * 0.3f;
+            out[3 * dim2 + i] = 0.02f + random.nextFloat() * 0.3f;
+            for (int c = 4; c < dim1; c++) out[c * dim2 + i] = random.nextFloat() * 0.03f;
+        }
+
+        // ~40 objects, each picked up by a cluster of overlapping anchors
+        for (int object = 0; object < 40; object++) {
+            int cls = random.nextInt(classes);
+            float x = random.nextFloat(), y = random.nextFloat();
+            float w = 0.05f + random.nextFloat() * 0.3f, h = 0.05f + random.nextFloat() * 0.3f;
+
+            for (int k = 0; k < 20; k++) {
+                int i = random.nextInt(dim2);
+                out[i] = x + (random.nextFloat() - 0.5f) * w * 0.2f;
+                out[dim2 + i] = y + (random.nextFloat() - 0.5f) * h * 0.2f;
+                out[2 * dim2 + i] = w;
+                out[3 * dim2 + i] = h;
+                out[(4 + cls) * dim2 + i] = 0.25f + random.nextFloat() * 0.7f;
+            }
+        }
+        return out;
+    }
+
+    /** Letterboxed ARGB frame, row-major. */
+    static int[] frame(int width, int height) throws IOException {
+        File recorded = recorded("frame_" + width + "x" + height + ".argb");
+        if (recorded != null) return TensorRecording.readInts(recorded);
+
+        Random random = new Random(width * 31L + height);
+        int[] px = new int[width * height];
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = x * 255 / width, g = y * 255 / height, b = (x + y) * 255 / (width + height);
+                int n = random.nextInt(16);
+                px[y * width + x] = 0xFF000000
+                        | Math.min(255, r + n) << 16 | Math.min(255, g + n) << 8 | Math.min(255, b + n);
+            }
+        }
+
+        for (int block = 0; block < 12; block++) {
+            int bx = random.nextInt(width - 80), by = random.nextInt(height - 80);
+            int color = random.nextInt() | 0xFF000000;
+            for (int y = by; y < by + 80; y++) {
+                for (int x = bx; x < bx + 80; x++) px[y * width + x] = color;
+            }
+        }
+        return px;
+    }
+
+    /** Unit-length random embeddings, {@code count} rows of {@code dim}. */
+    static float[][] embeddings(int count, int dim, long seed) {
+        Random random = new Random(seed);
+        float[][] out = new float[count][dim];
+        for (float[] e : out) {
+            for (int i = 0; i < dim; i++) e[i] = (float) random.nextGaussian();
+            EmbeddingMath.normalize(e);
+        }
+        return out;
+    }
+
+    private static File recorded(String name) {
+        if (DIR == null) return null;
+        File file = new File(DIR, name);
+        return file.isFile() ? file : null;
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.bazmeraah.vision;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+/** Letterboxed 640x640 ARGB frame to float32 and int8 input tensors. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TensorPackBenchmark {
+
+    private static final int SIZE = 640;
+
+    private int[] pixels;
+    private ByteBuffer floatInput;
+    private ByteBuffer quantizedInput;
+    private byte[] table;
+
+    @Setup
+    public void setUp() throws Exception {
+        pixels = Recordings.frame(SIZE, SIZE);
+
+        floatInput = ByteBuffer.allocateDirect(SIZE * SIZE * 3 * 4).order(ByteOrder.nativeOrder());
+        quantizedInput = ByteBuffer.allocateDirect(SIZE * SIZE * 3);
+        table = TensorPacker.quantizationTable(1f / 255f, -128, true);
+    }
+
+    @Benchmark
+    public ByteBuffer packFloat() {
+        TensorPacker.packFloatRgb(pixels, pixels.length, floatInput);
+        return floatInput;
+    }
+
+    @Benchmark
+    public ByteBuffer packQuantized() {
+        TensorPacker.packQuantizedRgb(pixels, pixels.length, table, quantizedInput);
+        return quantizedInput;
+    }
+}
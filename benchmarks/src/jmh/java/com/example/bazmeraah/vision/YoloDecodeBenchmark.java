@@ -0,0 +1,62 @@
+package com.example.bazmeraah.vision;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** YoloDecoder on the OpenImages (601 classes) and COCO (80 classes) output shapes. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class YoloDecodeBenchmark {
+
+    private static final int ANCHORS = 8400;
+
+    @Param({"601", "80"})
+    public int classes;
+
+    private float[] output;
+    private byte[] quantized;
+    private YoloDecoder decoder;
+    private DetectionBuffer candidates;
+
+    private final float scale = 1f / 255f;
+    private final int zeroPoint = -128;
+
+    @Setup
+    public void setUp() throws Exception {
+        int dim1 = 4 + classes;
+        output = Recordings.yoloOutput(dim1, ANCHORS);
+
+        quantized = new byte[output.length];
+        for (int i = 0; i < output.length; i++) {
+            quantized[i] = (byte) Math.max(-128, Math.min(127, Math.round(output[i] / scale) + zeroPoint));
+        }
+
+        List<String> labels = new ArrayList<>();
+        for (int i = 0; i < classes; i++) labels.add("Label " + i);
+
+        // an allowlist of a dozen labels, like VisionEngine's
+        decoder = new YoloDecoder(labels,
+                new HashSet<>(Arrays.asList("Label 0", "Label 3", "Label 7", "Label 12", "Label 19",
+                        "Label 26", "Label 33", "Label 41", "Label 56", "Label 62", "Label 70", "Label 77")),
+                0.22f, 0.40f, 0.01f);
+        candidates = new DetectionBuffer(ANCHORS);
+    }
+
+    @Benchmark
+    public int decodeFloat() {
+        decoder.decode(output, 4 + classes, ANCHORS, true, candidates);
+        return candidates.size();
+    }
+
+    @Benchmark
+    public int decodeQuantized() {
+        decoder.decodeQuantized(quantized, 4 + classes, ANCHORS, true, true, scale, zeroPoint, candidates);
+        return candidates.size();
+    }
+}
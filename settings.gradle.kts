@@ -21,4 +21,6 @@ dependencyResolutionManagement {
 
 rootProject.name = "bazm e raah"
 include(":app")
+include(":vision-core")
+include(":benchmarks")
  
\ No newline at end of file
@@ -0,0 +1,19 @@
+// Android-free detection/recognition algorithms over primitive arrays:
+// YOLO decoding, NMS, tracking, colour, scene hashing, embedding storage and matching.
+// The engines in :app adapt Bitmaps and TFLite tensors to these.
+plugins {
+    `java-library`
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+tasks.withType<JavaCompile>().configureEach {
+    options.encoding = "UTF-8"
+}
+
+dependencies {
+    testImplementation(libs.junit)
+}
@@ -0,0 +1,259 @@
+package com.example.bazmeraah.vision;
+
+/**
+ * Names the dominant colour of a small pixel region, e.g. the centre of a
+ * detected object.
+ *
+ * Pixels are counted into a fixed 8x8x8 RGB histogram (plain int[], no
+ * boxing), then the occupied bins are clustered with a weighted k-means in
+ * CIE Lab space, where distances follow perceived colour difference. The
+ * biggest cluster wins, unless it is grey and a coloured cluster is close
+ * behind. Not thread-safe, keep one per caller.
+ */
+public class ColorAnalyzer {
+
+    private static final int LEVELS = 8;                 // per channel, 32 values each
+    private static final int BINS = LEVELS * LEVELS * LEVELS;
+
+    private static final int CLUSTERS = 3;
+    private static final int ITERATIONS = 8;
+
+    // a grey winner gives way to a runner-up with at least this share of its weight
+    private static final float GREY_RUNNER_UP_RATIO = 0.6f;
+
+    // Lab of each bin centre, [L, a, b] per bin
+    private static final float[] BIN_LAB = new float[BINS * 3];
+
+    static {
+        for (int bin = 0; bin < BINS; bin++) {
+            toLab(binRed(bin), binGreen(bin), binBlue(bin), BIN_LAB, bin * 3);
+        }
+    }
+
+    private final int[] histogram = new int[BINS];
+    private final int[] occupied = new int[BINS];
+    private final int[] assignment = new int[BINS];
+
+    private final int[] seeds = new int[CLUSTERS];
+    private final float[] centroid = new float[CLUSTERS * 3];
+    private final float[] sum = new float[CLUSTERS * 3];
+    private final long[] weight = new long[CLUSTERS];
+
+    /** Colour name of the first {@code count} ARGB pixels, e.g. "Blue". */
+    public String dominantColor(int[] argb, int count) {
+
+        for (int i = 0; i < BINS; i++) histogram[i] = 0;
+
+        for (int i = 0; i < count; i++) {
+            int p = argb[i];
+            int bin = (((p >> 16) & 0xFF) >> 5) * LEVELS * LEVELS
+                    + (((p >> 8) & 0xFF) >> 5) * LEVELS
+                    + ((p & 0xFF) >> 5);
+            histogram[bin]++;
+        }
+
+        int n = 0;
+        for (int bin = 0; bin < BINS; bin++) {
+            if (histogram[bin] > 0) occupied[n++] = bin;
+        }
+        if (n == 0) return "Unknown";
+
+        int k = cluster(n);
+
+        // 🎯 biggest cluster, and the runner-up for the grey rule
+        int first = -1, second = -1;
+        for (int c = 0; c < k; c++) {
+            if (first < 0 || weight[c] > weight[first]) {
+                second = first;
+                first = c;
+            } else if (second < 0 || weight[c] > weight[second]) {
+                second = c;
+            }
+        }
+
+        String name = nameOf(representative(first, n), 1.1f);
+
+        if (second >= 0 && name.equals("Gray")
+                && weight[second] > weight[first] * GREY_RUNNER_UP_RATIO) {
+            return nameOf(representative(second, n), 1f);
+        }
+        return name;
+    }
+
+    /* ================= K-MEANS ================= */
+
+    // weighted k-means over the occupied bins, returns the number of clusters
+    private int cluster(int n) {
+        int k = Math.min(CLUSTERS, n);
+
+        // seed with the k most populated bins
+        for (int c = 0; c < k; c++) {
+            int best = -1;
+            for (int i = 0; i < n; i++) {
+                int bin = occupied[i];
+                if (isSeed(bin, c)) continue;
+                if (best < 0 || histogram[bin] > histogram[best]) best = bin;
+            }
+            seeds[c] = best;
+            System.arraycopy(BIN_LAB, best * 3, centroid, c * 3, 3);
+        }
+
+        for (int iter = 0; iter < ITERATIONS; iter++) {
+
+            for (int c = 0; c < k; c++) {
+                weight[c] = 0;
+                sum[c * 3] = sum[c * 3 + 1] = sum[c * 3 + 2] = 0f;
+            }
+
+            boolean moved = false;
+
+            for (int i = 0; i < n; i++) {
+                int bin = occupied[i];
+                int nearest = nearest(bin * 3, k);
+
+                if (assignment[bin] != nearest || iter == 0) moved = true;
+                assignment[bin] = nearest;
+
+                int count = histogram[bin];
+                weight[nearest] += count;
+                sum[nearest * 3] += BIN_LAB[bin * 3] * count;
+                sum[nearest * 3 + 1] += BIN_LAB[bin * 3 + 1] * count;
+                sum[nearest * 3 + 2] += BIN_LAB[bin * 3 + 2] * count;
+            }
+
+            for (int c = 0; c < k; c++) {
+                if (weight[c] == 0) continue;
+                centroid[c * 3] = sum[c * 3] / weight[c];
+                centroid[c * 3 + 1] = sum[c * 3 + 1] / weight[c];
+                centroid[c * 3 + 2] = sum[c * 3 + 2] / weight[c];
+            }
+
+            if (!moved) break;
+        }
+        return k;
+    }
+
+    private boolean isSeed(int bin, int taken) {
+        for (int c = 0; c < taken; c++) {
+            if (seeds[c] == bin) return true;
+        }
+        return false;
+    }
+
+    private int nearest(int labOffset, int k) {
+        int best = 0;
+        float bestDist = Float.MAX_VALUE;
+
+        for (int c = 0; c < k; c++) {
+            float dl = BIN_LAB[labOffset] - centroid[c * 3];
+            float da = BIN_LAB[labOffset + 1] - centroid[c * 3 + 1];
+            float db = BIN_LAB[labOffset + 2] - centroid[c * 3 + 2];
+            float d = dl * dl + da * da + db * db;
+            if (d < bestDist) {
+                bestDist = d;
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    // the occupied bin of the cluster closest to its centroid, a colour that is really there
+    private int representative(int cluster, int n) {
+        int best = occupied[0];
+        float bestDist = Float.MAX_VALUE;
+
+        for (int i = 0; i < n; i++) {
+            int bin = occupied[i];
+            if (assignment[bin] != cluster) continue;
+
+            float dl = BIN_LAB[bin * 3] - centroid[cluster * 3];
+            float da = BIN_LAB[bin * 3 + 1] - centroid[cluster * 3 + 1];
+            float db = BIN_LAB[bin * 3 + 2] - centroid[cluster * 3 + 2];
+            float d = dl * dl + da * da + db * db;
+            if (d < bestDist) {
+                bestDist = d;
+                best = bin;
+            }
+        }
+        return best;
+    }
+
+    /* ================= NAMING ================= */
+
+    private static String nameOf(int bin, float brightness) {
+        int r = binRed(bin), g = binGreen(bin), b = binBlue(bin);
+
+        int max = Math.max(r, Math.max(g, b));
+        int min = Math.min(r, Math.min(g, b));
+        float delta = max - min;
+
+        float hue;
+        if (delta == 0) hue = 0;
+        else if (max == r) hue = 60f * (((g - b) / delta) % 6);
+        else if (max == g) hue = 60f * ((b - r) / delta + 2);
+        else hue = 60f * ((r - g) / delta + 4);
+        if (hue < 0) hue += 360f;
+
+        float sat = max == 0 ? 0f : delta / max;
+        float val = Math.min(max / 255f * brightness, 1f);
+
+        return mapHSVToColor(hue, sat, val);
+    }
+
+    static String mapHSVToColor(float hue, float sat, float val) {
+
+        // 🔆 brightness boost (camera weak case)
+        val = Math.min(val * 1.3f, 1.0f);
+
+        if (val < 0.08) return "Black";
+        if (sat < 0.12 && val > 0.85) return "White";
+        if (sat < 0.25) return "Gray";
+
+        if (hue < 10 || hue > 350) return "Red";
+        if (hue < 45) return (sat < 0.5) ? "Brown" : "Orange";
+        if (hue < 70) return "Yellow";
+        if (hue < 160) return "Green";
+        if (hue < 250) return "Blue";
+        if (hue < 300) return "Purple";
+
+        return "Pink";
+    }
+
+    /* ================= COLOUR SPACE ================= */
+
+    private static int binRed(int bin) {
+        return (bin / (LEVELS * LEVELS)) * 32 + 16;
+    }
+
+    private static int binGreen(int bin) {
+        return ((bin / LEVELS) % LEVELS) * 32 + 16;
+    }
+
+    private static int binBlue(int bin) {
+        return (bin % LEVELS) * 32 + 16;
+    }
+
+    // sRGB (D65) to CIE Lab
+    static void toLab(int r, int g, int b, float[] out, int offset) {
+        double rl = linear(r), gl = linear(g), bl = linear(b);
+
+        double x = (0.4124 * rl + 0.3576 * gl + 0.1805 * bl) / 0.95047;
+        double y = 0.2126 * rl + 0.7152 * gl + 0.0722 * bl;
+        double z = (0.0193 * rl + 0.1192 * gl + 0.9505 * bl) / 1.08883;
+
+        double fx = labF(x), fy = labF(y), fz = labF(z);
+
+        out[offset] = (float) (116 * fy - 16);
+        out[offset + 1] = (float) (500 * (fx - fy));
+        out[offset + 2] = (float) (200 * (fy - fz));
+    }
+
+    private static double linear(int channel) {
+        double c = channel / 255.0;
+        return c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4);
+    }
+
+    private static double labF(double t) {
+        return t > 216.0 / 24389 ? Math.cbrt(t) : (24389.0 / 27 * t + 16) / 116;
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.bazmeraah.vision;
+
+/**
+ * Fixed-capacity detection candidates stored as parallel primitive arrays,
+ * so decoding and NMS can run frame after frame without allocating.
+ * Boxes are centre x/y plus width/height, in model-input coordinates.
+ */
+public class DetectionBuffer {
+
+    public final float[] x, y, w, h, score;
+    public final int[] classId;
+    int count;
+
+    public DetectionBuffer(int capacity) {
+        x = new float[capacity];
+        y = new float[capacity];
+        w = new float[capacity];
+        h = new float[capacity];
+        score = new float[capacity];
+        classId = new int[capacity];
+    }
+
+    public int capacity() {
+        return score.length;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public void clear() {
+        count = 0;
+    }
+
+    public boolean add(float cx, float cy, float bw, float bh, float conf, int cls) {
+        if (count == score.length) return false;
+
+        x[count] = cx;
+        y[count] = cy;
+        w[count] = bw;
+        h[count] = bh;
+        score[count] = conf;
+        classId[count] = cls;
+        count++;
+        return true;
+    }
+
+    /* ================= NMS ================= */
+
+    /**
+     * Moves the k best candidates to the front in descending score order and
+     * returns how many were selected. Quickselect for the cut, then only the
+     * k winners are sorted; the rest stay unordered behind them.
+     */
+    public int selectTop(int k) {
+        int n = Math.min(k, count);
+        if (n <= 0) return 0;
+
+        if (n < count) partitionAround(n - 1);
+
+        // insertion sort, k is small
+        for (int i = 1; i < n; i++) {
+            for (int j = i; j > 0 && score[j] > score[j - 1]; j--) swap(j, j - 1);
+        }
+        return n;
+    }
+
+    /**
+     * Greedy NMS over the first n (score-sorted) candidates. Survivors are
+     * compacted to the front and become the whole buffer.
+     */
+    public void suppress(int n, float iouThreshold) {
+        suppress(n, iouThreshold, false);
+    }
+
+    /** Same as above; when {@code classAware}, boxes only suppress boxes of their own class. */
+    public void suppress(int n, float iouThreshold, boolean classAware) {
+        int kept = 0;
+
+        for (int i = 0; i < n; i++) {
+            boolean keep = true;
+
+            for (int k = 0; k < kept; k++) {
+                if (classAware && classId[k] != classId[i]) continue;
+                if (iou(i, k) > iouThreshold) {
+                    keep = false;
+                    break;
+                }
+            }
+
+            if (keep) {
+                if (kept != i) copy(i, kept);
+                kept++;
+            }
+        }
+        count = kept;
+    }
+
+    public float iou(int a, int b) {
+        float x1 = Math.max(x[a] - w[a] / 2, x[b] - w[b] / 2);
+        float y1 = Math.max(y[a] - h[a] / 2, y[b] - h[b] / 2);
+        float x2 = Math.min(x[a] + w[a] / 2, x[b] + w[b] / 2);
+        float y2 = Math.min(y[a] + h[a] / 2, y[b] + h[b] / 2);
+        float inter = Math.max(0, x2 - x1) * Math.max(0, y2 - y1);
+        float union = w[a] * h[a] + w[b] * h[b] - inter + 1e-6f;
+        return inter / union;
+    }
+
+    void copy(int from, int to) {
+        x[to] = x[from];
+        y[to] = y[from];
+        w[to] = w[from];
+        h[to] = h[from];
+        score[to] = score[from];
+        classId[to] = classId[from];
+    }
+
+    /** Reorders so everything before {@code target} scores at least as high as everything after. */
+    private void partitionAround(int target) {
+        int lo = 0, hi = count - 1;
+
+        while (lo < hi) {
+            float a = score[lo], b = score[(lo + hi) >>> 1], c = score[hi];
+            float pivot = Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (score[i] > pivot) i++;
+                while (score[j] < pivot) j--;
+                if (i <= j) swap(i++, j--);
+            }
+
+            // [lo, j] >= pivot >= [i, hi], anything between equals the pivot
+            if (target <= j) hi = j;
+            else if (target >= i) lo = i;
+            else return;
+        }
+    }
+
+    private void swap(int a, int b) {
+        float t;
+        t = x[a]; x[a] = x[b]; x[b] = t;
+        t = y[a]; y[a] = y[b]; y[b] = t;
+        t = w[a]; w[a] = w[b]; w[b] = t;
+        t = h[a]; h[a] = h[b]; h[b] = t;
+        t = score[a]; score[a] = score[b]; score[b] = t;
+        int c = classId[a]; classId[a] = classId[b]; classId[b] = c;
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.bazmeraah.vision;
+
+/** Vector helpers for face embeddings, on plain float arrays. */
+public final class EmbeddingMath {
+
+    private EmbeddingMath() {
+    }
+
+    /** Scales the embedding to unit length in place and returns it. */
+    public static float[] normalize(float[] emb) {
+
+        float sum = 0f;
+
+        for (float v : emb)
+            sum += v * v;
+
+        float norm = (float) Math.sqrt(sum);
+
+        if (norm == 0) return emb;
+
+        for (int i = 0; i < emb.length; i++)
+            emb[i] /= norm;
+
+        return emb;
+    }
+
+    /** Euclidean (L2) distance between two embeddings of the same length. */
+    public static float distance(float[] e1, float[] e2) {
+        return (float) Math.sqrt(squaredDistance(e1, e2));
+    }
+
+    public static float squaredDistance(float[] e1, float[] e2) {
+
+        float sum = 0f;
+
+        for (int i = 0; i < e1.length; i++) {
+            float diff = e1[i] - e2[i];
+            sum += diff * diff;
+        }
+
+        return sum;
+    }
+}
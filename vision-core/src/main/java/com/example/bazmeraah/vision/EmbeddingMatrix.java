@@ -0,0 +1,215 @@
+package com.example.bazmeraah.vision;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * A gallery of unit-length embeddings as one row-major float[] with a
+ * parallel names array, for fast search. On unit vectors the squared L2
+ * distance is 2 - 2 * dot, so rows are ranked by dot product and the
+ * square root is taken only for the returned hits. Large galleries are
+ * split across cores. Immutable; rebuild it when the gallery changes.
+ */
+public final class EmbeddingMatrix {
+
+    /** Below this many rows one thread is faster than handing out the work. */
+    public static final int PARALLEL_MIN_ROWS = 8192;
+    private static final int MIN_ROWS_PER_PART = 2048;
+
+    /** One candidate, best first. */
+    public static final class Hit {
+        public final String name;
+        public final int row;          // in the matrix or gallery searched
+        public final float similarity; // dot product, 1 for the same face
+        public final float distance;   // L2 between the unit vectors
+        public final float margin;     // similarity above the next candidate
+
+        Hit(String name, int row, float similarity, float margin) {
+            this.name = name;
+            this.row = row;
+            this.similarity = similarity;
+            this.distance = (float) Math.sqrt(Math.max(0f, 2f - 2f * similarity));
+            this.margin = margin;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s (distance %.3f, margin %.3f)", name, distance, margin);
+        }
+    }
+
+    public static final EmbeddingMatrix EMPTY = new EmbeddingMatrix(new String[0], new float[0], 0);
+
+    private final String[] names;
+    private final float[] data;
+    private final int dimension;
+
+    /** Rows are {@code data[i * dimension ..]}, named {@code names[i]}. Takes ownership of both arrays. */
+    public EmbeddingMatrix(String[] names, float[] data, int dimension) {
+        if (data.length != names.length * dimension)
+            throw new IllegalArgumentException(names.length + " names for " + data.length + " values");
+        this.names = names;
+        this.data = data;
+        this.dimension = dimension;
+    }
+
+    public static EmbeddingMatrix of(Map<String, float[]> gallery) {
+        if (gallery.isEmpty()) return EMPTY;
+
+        int dimension = gallery.values().iterator().next().length;
+        String[] names = new String[gallery.size()];
+        float[] data = new float[names.length * dimension];
+
+        int row = 0;
+        for (Map.Entry<String, float[]> e : gallery.entrySet()) {
+            names[row] = e.getKey();
+            System.arraycopy(e.getValue(), 0, data, row * dimension, dimension);
+            row++;
+        }
+        return new EmbeddingMatrix(names, data, dimension);
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    public String name(int row) {
+        return names[row];
+    }
+
+    /** A copy of the row. */
+    public float[] row(int row) {
+        float[] copy = new float[dimension];
+        System.arraycopy(data, row * dimension, copy, 0, dimension);
+        return copy;
+    }
+
+    /* ================= SEARCH ================= */
+
+    /** The k most similar rows (fewer if the gallery is smaller), best first. */
+    public List<Hit> search(float[] query, int k) {
+        return search(query, k, names.length >= PARALLEL_MIN_ROWS);
+    }
+
+    List<Hit> search(float[] query, int k, boolean parallel) {
+        if (names.length == 0 || k <= 0) return Collections.emptyList();
+        if (query.length != dimension)
+            throw new IllegalArgumentException("Query has " + query.length + " values, rows " + dimension);
+
+        // one extra, so the last hit has a margin too
+        TopK top = parallel ? searchParallel(query, k + 1) : scan(query, k + 1, 0, names.length);
+
+        List<Hit> hits = new ArrayList<>(Math.min(k, top.size));
+        for (int i = 0; i < top.size && i < k; i++) {
+            float next = i + 1 < top.size ? top.scores[i + 1] : -1f;
+            hits.add(new Hit(names[top.rows[i]], top.rows[i], top.scores[i], top.scores[i] - next));
+        }
+        return hits;
+    }
+
+    private TopK searchParallel(float[] query, int k) {
+        int parts = Math.min(ForkJoinPool.getCommonPoolParallelism() + 1,
+                Math.max(1, names.length / MIN_ROWS_PER_PART));
+        if (parts == 1) return scan(query, k, 0, names.length);
+
+        List<Future<TopK>> futures = new ArrayList<>(parts);
+        int per = (names.length + parts - 1) / parts;
+        for (int from = per; from < names.length; from += per) {
+            int start = from, end = Math.min(names.length, from + per);
+            futures.add(ForkJoinPool.commonPool().submit(() -> scan(query, k, start, end)));
+        }
+
+        TopK top = scan(query, k, 0, per); // the caller takes the first part
+        try {
+            for (Future<TopK> f : futures) top.mergeFrom(f.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Search interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Search failed", e.getCause());
+        }
+        return top;
+    }
+
+    private TopK scan(float[] query, int k, int fromRow, int toRow) {
+        TopK top = new TopK(k);
+        for (int row = fromRow; row < toRow; row++) {
+            top.offer(row, dot(query, data, row * dimension, dimension));
+        }
+        return top;
+    }
+
+    /** Dot product of {@code a} with {@code dimension} values of {@code b} from {@code offset}, 4-way unrolled. */
+    public static float dot(float[] a, float[] b, int offset, int dimension) {
+        float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f;
+        int i = 0;
+        for (; i + 3 < dimension; i += 4) {
+            s0 += a[i] * b[offset + i];
+            s1 += a[i + 1] * b[offset + i + 1];
+            s2 += a[i + 2] * b[offset + i + 2];
+            s3 += a[i + 3] * b[offset + i + 3];
+        }
+        for (; i < dimension; i++) s0 += a[i] * b[offset + i];
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Sorts {@code n} scored candidates best first, in place, and returns the
+     * top k with their margins over the next. For short lists of candidates
+     * gathered from several places.
+     */
+    static List<Hit> ranked(String[] names, int[] rows, float[] scores, int n, int k) {
+        for (int i = 1; i < n; i++) {
+            for (int j = i; j > 0 && scores[j - 1] < scores[j]; j--) {
+                float sc = scores[j]; scores[j] = scores[j - 1]; scores[j - 1] = sc;
+                int r = rows[j]; rows[j] = rows[j - 1]; rows[j - 1] = r;
+                String nm = names[j]; names[j] = names[j - 1]; names[j - 1] = nm;
+            }
+        }
+
+        List<Hit> hits = new ArrayList<>(Math.min(k, n));
+        for (int i = 0; i < n && i < k; i++) {
+            float next = i + 1 < n ? scores[i + 1] : -1f;
+            hits.add(new Hit(names[i], rows[i], scores[i], scores[i] - next));
+        }
+        return hits;
+    }
+
+    // best k so far, sorted descending; k is small, insertion is cheapest
+    private static final class TopK {
+        final int[] rows;
+        final float[] scores;
+        int size;
+
+        TopK(int k) {
+            rows = new int[k];
+            scores = new float[k];
+        }
+
+        void offer(int row, float score) {
+            if (size == rows.length && score <= scores[size - 1]) return;
+
+            int i = size < rows.length ? size++ : size - 1;
+            while (i > 0 && scores[i - 1] < score) {
+                rows[i] = rows[i - 1];
+                scores[i] = scores[i - 1];
+                i--;
+            }
+            rows[i] = row;
+            scores[i] = score;
+        }
+
+        void mergeFrom(TopK other) {
+            for (int i = 0; i < other.size; i++) offer(other.rows[i], other.scores[i]);
+        }
+    }
+}
@@ -0,0 +1,477 @@
+package com.example.bazmeraah.vision;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Face embeddings in one binary file of fixed-width records, memory-mapped.
+ *
+ * <pre>
+ * header   magic, version, dimension, slots        4 x int32
+ * record   live, name length, name (UTF-8, padded), embedding
+ * </pre>
+ *
+ * The version is the {@link Encoding} of the embeddings: float32 x dimension
+ * (1), or a float32 scale and int8 x dimension (2), a quarter of the bytes.
+ * Int8 samples are scored against the float query without decoding them.
+ *
+ * A save writes a free slot (a deleted one, or appended), live flag last,
+ * and only then clears the live flag of the record it replaces; a delete
+ * clears the flag. Records are never rewritten in place, so a crash leaves
+ * the old record, or at worst the old and the new one, never a torn one.
+ * Writes cost the same however many faces are stored. Names
+ * are indexed in memory when the file is opened. Little-endian throughout.
+ * A person may have several live records, one per sample (see
+ * {@link #add}); the format is the same either way. Searches shortlist
+ * people by centroid in a {@link FaceIndex}, kept up to date with every
+ * write, then score each by their closest sample.
+ */
+public final class EmbeddingStore implements Closeable {
+
+    private static final int MAGIC = 0x424D4546; // "FEMB"
+    private static final int HEADER_BYTES = 16;
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** Longest name, in UTF-8 bytes. */
+    public static final int NAME_BYTES = 64;
+
+    /** People re-scored against their samples, per search. */
+    public static final int SHORTLIST = 8;
+
+    /** How embeddings are kept on disk, see {@link Int8Embedding}. */
+    public enum Encoding {
+        FLOAT32(1), INT8(2);
+
+        final int version;
+
+        Encoding(int version) {
+            this.version = version;
+        }
+
+        int embeddingBytes(int dimension) {
+            return this == INT8 ? 4 + dimension : 4 * dimension;
+        }
+
+        static Encoding ofVersion(int version) throws IOException {
+            for (Encoding e : values()) if (e.version == version) return e;
+            throw new IOException("Unknown store version " + version);
+        }
+    }
+
+    private final File file;
+    private RandomAccessFile raf;
+    private MappedByteBuffer map;
+
+    private final Encoding newFileEncoding;
+    private Encoding encoding; // an existing file keeps its own
+    private int dimension;   // 0 until the first save
+    private int recordBytes;
+    private int slots;       // records written, live or deleted
+    private int capacity;    // records the mapping holds
+
+    private final Map<String, List<Integer>> index = new LinkedHashMap<>(); // name -> sample slots
+    private final ArrayDeque<Integer> free = new ArrayDeque<>();            // deleted slots
+
+    private final FaceIndex centroids; // one entry per person
+
+    private EmbeddingStore(File file, FaceIndex centroids, Encoding encoding) {
+        this.file = file;
+        this.centroids = centroids;
+        this.newFileEncoding = encoding;
+        this.encoding = encoding;
+    }
+
+    /** Opens the store, or an empty one if the file does not exist yet (it is created on the first save). */
+    public static EmbeddingStore open(File file) throws IOException {
+        return open(file, new ExactFaceIndex());
+    }
+
+    /** As {@link #open(File)}, shortlisting with the given index, which should be empty or hold only saved state. */
+    public static EmbeddingStore open(File file, FaceIndex centroids) throws IOException {
+        return open(file, centroids, Encoding.FLOAT32);
+    }
+
+    /**
+     * As {@link #open(File, FaceIndex)}; a new file, or one recreated by
+     * {@link #clear}, is written with {@code encoding}. An existing file
+     * keeps the encoding it was created with.
+     */
+    public static EmbeddingStore open(File file, FaceIndex centroids, Encoding encoding) throws IOException {
+        EmbeddingStore store = new EmbeddingStore(file, centroids, encoding);
+        if (file.exists() && file.length() >= HEADER_BYTES) store.load();
+        return store;
+    }
+
+    private void load() throws IOException {
+        raf = new RandomAccessFile(file, "rw");
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        raf.getChannel().read(header, 0);
+        if (header.getInt(0) != MAGIC) throw new IOException("Not an embedding store: " + file);
+        encoding = Encoding.ofVersion(header.getInt(4));
+
+        dimension = header.getInt(8);
+        recordBytes = recordBytes(dimension, encoding);
+        capacity = (int) ((raf.length() - HEADER_BYTES) / recordBytes);
+        slots = Math.min(header.getInt(12), capacity);
+        mapFile();
+
+        for (int slot = 0; slot < slots; slot++) {
+            int at = offset(slot);
+            if (map.getInt(at) == 1) index.computeIfAbsent(readName(at), n -> new ArrayList<>()).add(slot);
+            else free.add(slot);
+        }
+
+        for (String name : index.keySet()) indexCentroid(name);
+        centroids.flush();
+    }
+
+    /* ================= WRITES ================= */
+
+    /**
+     * Adds the person, or replaces all their samples with this one; the new
+     * record is written before the old ones are released.
+     */
+    public synchronized void put(String name, float[] embedding) throws IOException {
+        byte[] nameBytes = checkWrite(name, embedding);
+
+        int fresh = write(claimSlot(), nameBytes, embedding);
+        map.force(); // durable before the old samples go
+
+        List<Integer> samples = index.get(name);
+        if (samples != null) {
+            for (int slot : samples) release(slot);
+            samples.clear();
+            map.force();
+        } else {
+            samples = new ArrayList<>(1);
+            index.put(name, samples);
+        }
+        samples.add(fresh);
+        indexCentroid(name);
+        centroids.flush();
+    }
+
+    /**
+     * Adds another sample for the person (a new person if unknown). Once they
+     * have {@code maxSamples}, the sample most like the others is replaced
+     * instead, so the set keeps its spread of lighting and angles.
+     * Returns how many samples the person now has.
+     */
+    public synchronized int add(String name, float[] embedding, int maxSamples) throws IOException {
+        if (maxSamples < 1) throw new IllegalArgumentException("maxSamples " + maxSamples);
+        byte[] nameBytes = checkWrite(name, embedding);
+
+        List<Integer> samples = index.get(name);
+        if (samples == null) samples = new ArrayList<>();
+        while (samples.size() > maxSamples) release(samples.remove(samples.size() - 1));
+
+        int replaced = samples.size() < maxSamples ? -1 : mostRedundant(samples);
+        int fresh = write(claimSlot(), nameBytes, embedding);
+        map.force();
+
+        if (replaced < 0) {
+            samples.add(fresh);
+            index.putIfAbsent(name, samples);
+        } else {
+            release(samples.set(replaced, fresh));
+            map.force();
+        }
+        indexCentroid(name);
+        centroids.flush();
+        return samples.size();
+    }
+
+    private byte[] checkWrite(String name, float[] embedding) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        if (nameBytes.length == 0 || nameBytes.length > NAME_BYTES)
+            throw new IllegalArgumentException("Name must be 1 to " + NAME_BYTES + " bytes: " + name);
+
+        if (map == null) create(embedding.length);
+        if (embedding.length != dimension)
+            throw new IllegalArgumentException("Embedding has " + embedding.length
+                    + " values, the store holds " + dimension);
+        return nameBytes;
+    }
+
+    // a deleted slot, or a new one at the end
+    private int claimSlot() throws IOException {
+        Integer slot = free.poll();
+        if (slot != null) return slot;
+
+        if (slots == capacity) grow();
+        slot = slots++;
+        map.putInt(12, slots);
+        return slot;
+    }
+
+    private int write(int slot, byte[] nameBytes, float[] embedding) {
+        int at = offset(slot);
+        map.putInt(at + 4, nameBytes.length);
+        for (int i = 0; i < NAME_BYTES; i++) map.put(at + 8 + i, i < nameBytes.length ? nameBytes[i] : 0);
+        int values = at + 8 + NAME_BYTES;
+        if (encoding == Encoding.INT8) {
+            byte[] codes = new byte[dimension];
+            map.putFloat(values, Int8Embedding.quantize(embedding, codes));
+            for (int i = 0; i < dimension; i++) map.put(values + 4 + i, codes[i]);
+        } else {
+            for (int i = 0; i < dimension; i++) map.putFloat(values + 4 * i, embedding[i]);
+        }
+        map.force(); // the record, then the flag that makes it visible
+        map.putInt(at, 1);
+        return slot;
+    }
+
+    private void indexCentroid(String name) {
+        centroids.put(name, centroid(readSamples(index.get(name)), dimension));
+    }
+
+    private void release(int slot) {
+        map.putInt(offset(slot), 0);
+        free.add(slot);
+    }
+
+    // index of the sample with the highest mean similarity to the rest
+    private int mostRedundant(List<Integer> samples) {
+        if (samples.size() < 2) return 0;
+
+        float[][] vectors = new float[samples.size()][];
+        for (int i = 0; i < vectors.length; i++) vectors[i] = readEmbedding(offset(samples.get(i)));
+
+        int worst = 0;
+        float worstScore = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < vectors.length; i++) {
+            float sum = 0f;
+            for (int j = 0; j < vectors.length; j++) {
+                if (i != j) sum += EmbeddingMatrix.dot(vectors[i], vectors[j], 0, dimension);
+            }
+            if (sum > worstScore) {
+                worstScore = sum;
+                worst = i;
+            }
+        }
+        return worst;
+    }
+
+    /** Returns false if there was nobody by that name. */
+    public synchronized boolean remove(String name) throws IOException {
+        List<Integer> samples = index.remove(name);
+        if (samples == null) return false;
+
+        for (int slot : samples) release(slot);
+        map.force();
+        centroids.remove(name);
+        centroids.flush(); // a merge back to one list drops the centroids file
+        return true;
+    }
+
+    /** Deletes every face, and the file. */
+    public synchronized void clear() throws IOException {
+        closeFile();
+        index.clear();
+        free.clear();
+        centroids.clear();
+        centroids.flush();
+        slots = capacity = dimension = 0;
+        if (file.exists() && !file.delete()) throw new IOException("Could not delete " + file);
+    }
+
+    /* ================= READS ================= */
+
+    /** People, however many samples each has. */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /** Samples stored for the person, 0 if unknown. */
+    public synchronized int sampleCount(String name) {
+        List<Integer> samples = index.get(name);
+        return samples != null ? samples.size() : 0;
+    }
+
+    public synchronized Encoding encoding() {
+        return encoding;
+    }
+
+    /** Values per embedding, 0 while the store is empty and new. */
+    public synchronized int dimension() {
+        return dimension;
+    }
+
+    public synchronized boolean contains(String name) {
+        return index.containsKey(name);
+    }
+
+    public synchronized List<String> names() {
+        return new ArrayList<>(index.keySet());
+    }
+
+    /** The person's centroid (their only embedding if there is one sample), or null. */
+    public synchronized float[] get(String name) {
+        List<Integer> samples = index.get(name);
+        return samples != null ? centroid(readSamples(samples), dimension) : null;
+    }
+
+    /** Copies of the person's samples, empty if unknown. */
+    public synchronized List<float[]> samples(String name) {
+        List<Integer> samples = index.get(name);
+        return samples != null ? readSamples(samples) : Collections.emptyList();
+    }
+
+    /** Every face's centroid, in the order they were first saved. Copies, for listing; match with {@link #search}. */
+    public synchronized Map<String, float[]> toMap() {
+        Map<String, float[]> faces = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Integer>> e : index.entrySet()) {
+            faces.put(e.getKey(), centroid(readSamples(e.getValue()), dimension));
+        }
+        return faces;
+    }
+
+    /**
+     * The k closest people, best first, with their margins: centroids pick
+     * the candidates, each scored by their closest sample. Embeddings must
+     * be unit length.
+     */
+    public synchronized List<EmbeddingMatrix.Hit> search(float[] query, int k) {
+        if (index.isEmpty() || query.length != dimension || k <= 0) return Collections.emptyList();
+
+        List<EmbeddingMatrix.Hit> shortlist = centroids.search(query, Math.max(k + 1, SHORTLIST));
+
+        int n = shortlist.size();
+        String[] names = new String[n];
+        int[] rows = new int[n];
+        float[] scores = new float[n];
+        for (int i = 0; i < n; i++) {
+            names[i] = shortlist.get(i).name;
+            rows[i] = -1;
+            scores[i] = bestSample(query, index.get(names[i]));
+        }
+        return EmbeddingMatrix.ranked(names, rows, scores, n, k);
+    }
+
+    // highest similarity among the person's samples, straight from the mapping
+    private float bestSample(float[] query, List<Integer> slots) {
+        float best = -1f;
+        for (int slot : slots) {
+            int values = offset(slot) + 8 + NAME_BYTES;
+            float s = 0f;
+            if (encoding == Encoding.INT8) {
+                s = Int8Embedding.dot(query, map, values + 4, dimension, map.getFloat(values));
+            } else {
+                for (int i = 0; i < dimension; i++) s += query[i] * map.getFloat(values + 4 * i);
+            }
+            best = Math.max(best, s);
+        }
+        return best;
+    }
+
+    /** Normalised mean of the samples; a lone sample is returned as it is. */
+    static float[] centroid(List<float[]> samples, int dimension) {
+        if (samples.size() == 1) return samples.get(0);
+        float[] sum = new float[dimension];
+        for (float[] s : samples) {
+            for (int i = 0; i < dimension; i++) sum[i] += s[i];
+        }
+        return EmbeddingMath.normalize(sum);
+    }
+
+    /** Bytes on disk. */
+    public synchronized long fileBytes() {
+        return file.exists() ? file.length() : 0;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closeFile();
+    }
+
+    /* ================= FILE ================= */
+
+    private void create(int dimension) throws IOException {
+        if (dimension <= 0) throw new IllegalArgumentException("Empty embedding");
+
+        this.encoding = newFileEncoding;
+        this.dimension = dimension;
+        this.recordBytes = recordBytes(dimension, encoding);
+        this.capacity = INITIAL_CAPACITY;
+        this.slots = 0;
+
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) throw new IOException("Could not create " + dir);
+
+        raf = new RandomAccessFile(file, "rw");
+        raf.setLength(0);
+        mapFile();
+
+        map.putInt(0, MAGIC);
+        map.putInt(4, encoding.version);
+        map.putInt(8, dimension);
+        map.putInt(12, 0);
+        map.force();
+    }
+
+    // doubling, so appends stay amortised O(1)
+    private void grow() throws IOException {
+        capacity *= 2;
+        mapFile();
+    }
+
+    private void mapFile() throws IOException {
+        long bytes = HEADER_BYTES + (long) capacity * recordBytes;
+        map = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, bytes); // extends the file
+        map.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private void closeFile() throws IOException {
+        map = null;
+        if (raf != null) raf.close();
+        raf = null;
+    }
+
+    private int offset(int slot) {
+        return HEADER_BYTES + slot * recordBytes;
+    }
+
+    private String readName(int at) {
+        int length = Math.min(map.getInt(at + 4), NAME_BYTES);
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) bytes[i] = map.get(at + 8 + i);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private List<float[]> readSamples(List<Integer> slots) {
+        List<float[]> samples = new ArrayList<>(slots.size());
+        for (int slot : slots) samples.add(readEmbedding(offset(slot)));
+        return samples;
+    }
+
+    private float[] readEmbedding(int at) {
+        int values = at + 8 + NAME_BYTES;
+        if (encoding == Encoding.INT8) {
+            byte[] codes = new byte[dimension];
+            for (int i = 0; i < dimension; i++) codes[i] = map.get(values + 4 + i);
+            return Int8Embedding.dequantize(codes, map.getFloat(values));
+        }
+
+        float[] embedding = new float[dimension];
+        for (int i = 0; i < dimension; i++) embedding[i] = map.getFloat(values + 4 * i);
+        return embedding;
+    }
+
+    private static int recordBytes(int dimension, Encoding encoding) {
+        return 8 + NAME_BYTES + encoding.embeddingBytes(dimension);
+    }
+}
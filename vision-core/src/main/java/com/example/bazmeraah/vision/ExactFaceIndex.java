@@ -0,0 +1,51 @@
+package com.example.bazmeraah.vision;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Every vector compared on every search, over an {@link EmbeddingMatrix}
+ * rebuilt after a write. Exact, and the fastest choice for a few hundred
+ * people; the reference {@link IvfFaceIndex} is measured against.
+ */
+public final class ExactFaceIndex implements FaceIndex {
+
+    private final Map<String, float[]> vectors = new LinkedHashMap<>();
+    private EmbeddingMatrix matrix; // null after a write
+
+    @Override
+    public void put(String name, float[] vector) {
+        vectors.put(name, vector.clone());
+        matrix = null;
+    }
+
+    @Override
+    public boolean remove(String name) {
+        if (vectors.remove(name) == null) return false;
+        matrix = null;
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        vectors.clear();
+        matrix = null;
+    }
+
+    @Override
+    public int size() {
+        return vectors.size();
+    }
+
+    @Override
+    public List<EmbeddingMatrix.Hit> search(float[] query, int k) {
+        if (matrix == null) matrix = EmbeddingMatrix.of(vectors);
+        return matrix.search(query, k);
+    }
+
+    @Override
+    public void flush() {
+        // nothing of its own to keep
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.bazmeraah.vision;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Finds the closest named vectors (one per person, their centroid) by dot
+ * product; EmbeddingStore keeps one up to date with every write and
+ * re-scores its shortlist against the person's samples. Implementations
+ * need not be thread-safe, the store calls them under its lock.
+ *
+ * @see ExactFaceIndex
+ * @see IvfFaceIndex
+ */
+public interface FaceIndex {
+
+    /** Adds the vector, or replaces the one stored under that name. Unit length. */
+    void put(String name, float[] vector);
+
+    /** Returns false if there was nothing by that name. */
+    boolean remove(String name);
+
+    void clear();
+
+    int size();
+
+    /** The k most similar, best first, each with its margin over the next. May be approximate. */
+    List<EmbeddingMatrix.Hit> search(float[] query, int k);
+
+    /** Writes whatever the index keeps on disk, if it changed; the vectors themselves live in the store. */
+    void flush() throws IOException;
+}
@@ -0,0 +1,53 @@
+package com.example.bazmeraah.vision;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Symmetric int8 scalar quantisation, one scale per embedding:
+ * {@code value ≈ scale * code} with codes in [-127, 127]. A quarter of the
+ * bytes of float32. Distances are asymmetric: the query stays float and
+ * only the stored side is quantised, so the error is that of one rounding.
+ */
+public final class Int8Embedding {
+
+    private Int8Embedding() {
+    }
+
+    /** Writes the codes into {@code codes} and returns the scale. */
+    public static float quantize(float[] embedding, byte[] codes) {
+        float max = 0f;
+        for (float v : embedding) max = Math.max(max, Math.abs(v));
+        if (max == 0f) {
+            Arrays.fill(codes, 0, embedding.length, (byte) 0);
+            return 0f;
+        }
+
+        float scale = max / 127f;
+        for (int i = 0; i < embedding.length; i++) codes[i] = (byte) Math.round(embedding[i] / scale);
+        return scale;
+    }
+
+    public static float[] dequantize(byte[] codes, float scale) {
+        float[] embedding = new float[codes.length];
+        for (int i = 0; i < codes.length; i++) embedding[i] = codes[i] * scale;
+        return embedding;
+    }
+
+    /** Float query against {@code dimension} codes of {@code buffer} from {@code offset}. */
+    public static float dot(float[] query, ByteBuffer buffer, int offset, int dimension, float scale) {
+        float s0 = 0f, s1 = 0f;
+        int i = 0;
+        for (; i + 1 < dimension; i += 2) {
+            s0 += query[i] * buffer.get(offset + i);
+            s1 += query[i + 1] * buffer.get(offset + i + 1);
+        }
+        for (; i < dimension; i++) s0 += query[i] * buffer.get(offset + i);
+        return (s0 + s1) * scale;
+    }
+
+    /** Float query against codes, as {@link #dot(float[], ByteBuffer, int, int, float)}. */
+    public static float dot(float[] query, byte[] codes, float scale) {
+        return dot(query, ByteBuffer.wrap(codes), 0, codes.length, scale);
+    }
+}
@@ -0,0 +1,450 @@
+package com.example.bazmeraah.vision;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executor;
+
+/**
+ * Inverted-file index (IVF-flat): k-means splits the vectors into about
+ * sqrt(n) lists around centroids, and a search scans only the lists of the
+ * {@code nprobe} centroids closest to the query. Inserts and deletes touch
+ * one list. Below {@link #TRAIN_MIN} vectors there is a single list, an
+ * exact scan; the centroids are retrained each time the index doubles, or
+ * halves. Training runs on a background thread; until it is done the
+ * index keeps searching with the lists it has.
+ *
+ * <p>Only the centroids are written to disk (small, and slow to train);
+ * the lists are refilled from the store when it opens.
+ *
+ * <pre>
+ * header   magic, version, dimension, lists, next training size   5 x int32
+ * body     centroids (float32 x dimension x lists)
+ * </pre>
+ */
+public final class IvfFaceIndex implements FaceIndex {
+
+    private static final int MAGIC = 0x46564946; // "FIVF"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 20;
+
+    /** Vectors before the first training; fewer are scanned exactly. */
+    public static final int TRAIN_MIN = 512;
+    public static final int DEFAULT_NPROBE = 8;
+
+    private static final int MAX_LISTS = 1024;
+    private static final int TRAIN_SAMPLES_PER_LIST = 64;
+    private static final int ITERATIONS = 10;
+
+    // one low-priority thread per training, which is rare
+    private static final Executor BACKGROUND = task -> {
+        Thread t = new Thread(task, "ivf-train");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        t.start();
+    };
+
+    private final File file; // null for in-memory
+    private final int nprobe;
+    private final Executor trainer;
+
+    private int dimension;
+    private EmbeddingMatrix centroids; // null until trained, one row per list
+    private List<PostingList> lists = single();
+    private final Map<String, Integer> listOf = new HashMap<>();
+    private int trainAt = TRAIN_MIN;
+    private int trainedSize;      // vectors the centroids were trained on, 0 if unknown
+    private boolean training;
+    private int generation;       // bumped when the lists are thrown away, stales a running training
+    private boolean dirty;
+
+    /** In memory, nothing persisted. */
+    public IvfFaceIndex(int nprobe) {
+        this(null, nprobe, BACKGROUND);
+    }
+
+    IvfFaceIndex(File file, int nprobe, Executor trainer) {
+        if (nprobe < 1) throw new IllegalArgumentException("nprobe " + nprobe);
+        this.file = file;
+        this.nprobe = nprobe;
+        this.trainer = trainer;
+    }
+
+    /**
+     * Reuses the centroids saved in {@code file}. An unreadable file is
+     * dropped, the index retrains when it next grows.
+     */
+    public static IvfFaceIndex open(File file, int nprobe) {
+        return open(file, nprobe, BACKGROUND);
+    }
+
+    static IvfFaceIndex open(File file, int nprobe, Executor trainer) {
+        IvfFaceIndex index = new IvfFaceIndex(file, nprobe, trainer);
+        if (file.exists()) {
+            try {
+                index.load();
+            } catch (IOException | RuntimeException e) {
+                index.centroids = null;
+                index.dimension = 0;
+                index.trainAt = TRAIN_MIN;
+                file.delete();
+            }
+        }
+        return index;
+    }
+
+    /* ================= WRITES ================= */
+
+    @Override
+    public synchronized void put(String name, float[] vector) {
+        if (vector.length != dimension) {
+            if (size() > 0) throw new IllegalArgumentException("Vector has " + vector.length
+                    + " values, the index holds " + dimension);
+            // first vector, or saved centroids of another model
+            if (centroids != null && centroids.dimension() != vector.length) untrain();
+            dimension = vector.length;
+        }
+
+        detach(name); // a replacement, the index does not shrink
+        int list = assign(vector);
+        lists.get(list).put(name, vector.clone());
+        listOf.put(name, list);
+
+        if (size() >= trainAt) scheduleTraining();
+    }
+
+    @Override
+    public synchronized boolean remove(String name) {
+        if (!detach(name)) return false;
+
+        if (centroids != null) {
+            if (size() < TRAIN_MIN) merge();                           // small again, scan it all
+            else if (size() * 2 <= trainedSize) scheduleTraining();    // lists have thinned out
+        }
+        return true;
+    }
+
+    private boolean detach(String name) {
+        Integer list = listOf.remove(name);
+        if (list == null) return false;
+        lists.get(list).remove(name);
+        return true;
+    }
+
+    @Override
+    public synchronized void clear() {
+        listOf.clear();
+        untrain();
+        dimension = 0;
+    }
+
+    private void untrain() {
+        centroids = null;
+        lists = single();
+        trainAt = TRAIN_MIN;
+        trainedSize = 0;
+        generation++;
+        dirty = true;
+    }
+
+    // back to one list, keeping the vectors
+    private void merge() {
+        List<PostingList> old = lists;
+        untrain();
+        for (PostingList list : old) {
+            for (Map.Entry<String, float[]> e : list.vectors.entrySet()) {
+                lists.get(0).put(e.getKey(), e.getValue());
+                listOf.put(e.getKey(), 0);
+            }
+        }
+    }
+
+    /* ================= READS ================= */
+
+    @Override
+    public synchronized int size() {
+        return listOf.size();
+    }
+
+    /** Lists the vectors are split into, 1 until the first training. */
+    public synchronized int lists() {
+        return lists.size();
+    }
+
+    /** Blocks until a background training, if any, is installed. For tests and benchmarks. */
+    public synchronized void awaitTraining() throws InterruptedException {
+        while (training) wait();
+    }
+
+    @Override
+    public synchronized List<EmbeddingMatrix.Hit> search(float[] query, int k) {
+        if (size() == 0 || k <= 0) return Collections.emptyList();
+        if (query.length != dimension)
+            throw new IllegalArgumentException("Query has " + query.length + " values, index " + dimension);
+
+        List<EmbeddingMatrix.Hit> candidates = new ArrayList<>();
+        if (centroids == null) {
+            candidates.addAll(lists.get(0).matrix().search(query, k + 1));
+        } else {
+            for (EmbeddingMatrix.Hit probe : centroids.search(query, nprobe)) {
+                candidates.addAll(lists.get(probe.row).matrix().search(query, k + 1));
+            }
+        }
+
+        // one extra each, so the last hit has a margin too
+        int n = candidates.size();
+        String[] names = new String[n];
+        int[] rows = new int[n];
+        float[] scores = new float[n];
+        for (int i = 0; i < n; i++) {
+            names[i] = candidates.get(i).name;
+            rows[i] = -1; // rows of a list, nothing to the caller
+            scores[i] = candidates.get(i).similarity;
+        }
+        return EmbeddingMatrix.ranked(names, rows, scores, n, k);
+    }
+
+    /* ================= TRAINING ================= */
+
+    private int assign(float[] vector) {
+        if (centroids == null) return 0;
+        return nearestRow(vector, centroids);
+    }
+
+    private static int nearestRow(float[] vector, EmbeddingMatrix matrix) {
+        return matrix.search(vector, 1).get(0).row;
+    }
+
+    // k-means runs on a snapshot off the lock; the result is swapped in under it
+    private void scheduleTraining() {
+        if (training) return;
+        training = true;
+
+        Map<String, float[]> snapshot = new LinkedHashMap<>();
+        for (PostingList list : lists) snapshot.putAll(list.vectors);
+        int dim = dimension, gen = generation;
+
+        trainer.execute(() -> {
+            try {
+                Trained trained = train(snapshot, dim);
+                install(trained, snapshot, gen);
+            } finally {
+                synchronized (this) {
+                    training = false;
+                    notifyAll();
+                }
+            }
+        });
+    }
+
+    private static final class Trained {
+        final EmbeddingMatrix centroids;
+        final Map<String, Integer> assigned = new HashMap<>();
+
+        Trained(EmbeddingMatrix centroids) {
+            this.centroids = centroids;
+        }
+    }
+
+    // spherical k-means on a sample, then every vector of the snapshot is assigned
+    private static Trained train(Map<String, float[]> snapshot, int dimension) {
+        int n = snapshot.size();
+        int k = Math.max(1, Math.min(MAX_LISTS, (int) Math.sqrt(n)));
+        float[][] vectors = snapshot.values().toArray(new float[0][]);
+
+        Random random = new Random(n); // deterministic for a given size
+        float[][] sample = sample(vectors, k * TRAIN_SAMPLES_PER_LIST, random);
+        float[] means = kMeans(sample, k, dimension, random);
+
+        String[] listNames = new String[k];
+        for (int i = 0; i < k; i++) listNames[i] = String.valueOf(i);
+        Trained trained = new Trained(new EmbeddingMatrix(listNames, means, dimension));
+
+        for (Map.Entry<String, float[]> e : snapshot.entrySet()) {
+            trained.assigned.put(e.getKey(), nearestRow(e.getValue(), trained.centroids));
+        }
+        return trained;
+    }
+
+    // vectors put since the snapshot are new arrays, and assigned here
+    private synchronized void install(Trained trained, Map<String, float[]> snapshot, int gen) {
+        if (gen != generation) return; // cleared or merged meanwhile
+
+        int k = trained.centroids.size();
+        List<PostingList> fresh = new ArrayList<>(k);
+        for (int i = 0; i < k; i++) fresh.add(new PostingList());
+
+        for (PostingList list : lists) {
+            for (Map.Entry<String, float[]> e : list.vectors.entrySet()) {
+                String name = e.getKey();
+                Integer row = snapshot.get(name) == e.getValue() ? trained.assigned.get(name) : null;
+                if (row == null) row = nearestRow(e.getValue(), trained.centroids);
+                fresh.get(row).put(name, e.getValue());
+                listOf.put(name, row);
+            }
+        }
+
+        centroids = trained.centroids;
+        lists = fresh;
+        trainedSize = snapshot.size();
+        trainAt = trainedSize * 2;
+        dirty = true;
+        try {
+            flush();
+        } catch (IOException e) {
+            // still dirty, written with the next change
+        }
+    }
+
+    private static float[][] sample(float[][] vectors, int count, Random random) {
+        if (vectors.length <= count) return vectors;
+        float[][] copy = vectors.clone();
+        for (int i = 0; i < count; i++) { // partial Fisher-Yates
+            int j = i + random.nextInt(copy.length - i);
+            float[] t = copy[i]; copy[i] = copy[j]; copy[j] = t;
+        }
+        float[][] out = new float[count][];
+        System.arraycopy(copy, 0, out, 0, count);
+        return out;
+    }
+
+    /** k unit-length centroids, row-major. Package-private for tests. */
+    static float[] kMeans(float[][] points, int k, int dimension, Random random) {
+        float[] means = new float[k * dimension];
+        float[][] seeds = sample(points, k, random);
+        for (int c = 0; c < k; c++) System.arraycopy(seeds[c % seeds.length], 0, means, c * dimension, dimension);
+
+        int[] assigned = new int[points.length];
+        for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+            boolean moved = false;
+            for (int p = 0; p < points.length; p++) {
+                int best = 0;
+                float bestScore = Float.NEGATIVE_INFINITY;
+                for (int c = 0; c < k; c++) {
+                    float s = EmbeddingMatrix.dot(points[p], means, c * dimension, dimension);
+                    if (s > bestScore) {
+                        bestScore = s;
+                        best = c;
+                    }
+                }
+                if (iteration == 0 || assigned[p] != best) moved = true;
+                assigned[p] = best;
+            }
+            if (!moved) break;
+
+            float[] sums = new float[k * dimension];
+            int[] counts = new int[k];
+            for (int p = 0; p < points.length; p++) {
+                int at = assigned[p] * dimension;
+                for (int i = 0; i < dimension; i++) sums[at + i] += points[p][i];
+                counts[assigned[p]]++;
+            }
+            for (int c = 0; c < k; c++) {
+                float[] mean = new float[dimension];
+                if (counts[c] == 0) {
+                    // an empty list takes a random point, or it stays empty for good
+                    System.arraycopy(points[random.nextInt(points.length)], 0, mean, 0, dimension);
+                } else {
+                    System.arraycopy(sums, c * dimension, mean, 0, dimension);
+                    EmbeddingMath.normalize(mean);
+                }
+                System.arraycopy(mean, 0, means, c * dimension, dimension);
+            }
+        }
+        return means;
+    }
+
+    /* ================= FILE ================= */
+
+    @Override
+    public synchronized void flush() throws IOException {
+        if (!dirty || file == null) return;
+
+        if (centroids == null) {
+            if (file.exists() && !file.delete()) throw new IOException("Could not delete " + file);
+            dirty = false;
+            return;
+        }
+
+        int k = centroids.size();
+        ByteBuffer out = ByteBuffer.allocate(HEADER_BYTES + 4 * k * dimension).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC).putInt(VERSION).putInt(dimension).putInt(k).putInt(trainAt);
+        for (int c = 0; c < k; c++) {
+            float[] row = centroids.row(c);
+            for (float v : row) out.putFloat(v);
+        }
+
+        // whole file or nothing: written beside it, then renamed over it
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(tmp)) {
+            stream.write(out.array());
+            stream.getFD().sync();
+        }
+        if (!tmp.renameTo(file)) throw new IOException("Could not replace " + file);
+        dirty = false;
+    }
+
+    private void load() throws IOException {
+        byte[] bytes;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            bytes = new byte[(int) raf.length()];
+            raf.readFully(bytes);
+        }
+        ByteBuffer in = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        if (bytes.length < HEADER_BYTES || in.getInt() != MAGIC) throw new IOException("Not an IVF index: " + file);
+        if (in.getInt() != VERSION) throw new IOException("Unknown index version");
+
+        int dim = in.getInt(), k = in.getInt(), nextTrain = in.getInt();
+        if (dim <= 0 || k <= 0 || bytes.length != HEADER_BYTES + 4L * k * dim)
+            throw new IOException("Truncated index: " + file);
+
+        float[] means = new float[k * dim];
+        for (int i = 0; i < means.length; i++) means[i] = in.getFloat();
+        String[] listNames = new String[k];
+        for (int i = 0; i < k; i++) listNames[i] = String.valueOf(i);
+
+        dimension = dim;
+        centroids = new EmbeddingMatrix(listNames, means, dim);
+        lists = new ArrayList<>(k);
+        for (int i = 0; i < k; i++) lists.add(new PostingList());
+        trainAt = nextTrain;
+        trainedSize = nextTrain / 2;
+    }
+
+    private static List<PostingList> single() {
+        List<PostingList> one = new ArrayList<>(1);
+        one.add(new PostingList());
+        return one;
+    }
+
+    // one list's vectors, searched as a matrix rebuilt after a write to it
+    private static final class PostingList {
+        final Map<String, float[]> vectors = new LinkedHashMap<>();
+        private EmbeddingMatrix matrix;
+
+        void put(String name, float[] vector) {
+            vectors.put(name, vector);
+            matrix = null;
+        }
+
+        void remove(String name) {
+            vectors.remove(name);
+            matrix = null;
+        }
+
+        EmbeddingMatrix matrix() {
+            if (matrix == null) matrix = EmbeddingMatrix.of(vectors);
+            return matrix;
+        }
+    }
+}
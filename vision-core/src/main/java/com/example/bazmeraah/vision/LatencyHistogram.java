@@ -0,0 +1,118 @@
+package com.example.bazmeraah.vision;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size latency histogram for percentiles (p50/p95/p99) without
+ * keeping samples. Durations are bucketed in microseconds: exact below
+ * 32 µs, then 16 buckets per power of two, so a reported percentile is
+ * within about 3% of the true one. Recording is lock-free and never
+ * allocates, so it is cheap enough to leave on in release builds.
+ *
+ * <pre>
+ * long t = System.nanoTime();
+ * letterbox(...);
+ * t = letterboxLatency.recordSince(t);
+ * run(...);
+ * inferLatency.recordSince(t);
+ * </pre>
+ */
+public class LatencyHistogram {
+
+    private static final int EXACT = 32;     // values below this get their own bucket
+    private static final int SUB_BITS = 4;   // 16 buckets per power of two above it
+    private static final int MAX_BIT = 40;   // ~12 days in µs, larger values are clamped
+    static final int BUCKETS = EXACT + (MAX_BIT - 5) * (1 << SUB_BITS);
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+
+        counts.incrementAndGet(bucket(micros));
+        count.incrementAndGet();
+        totalMicros.addAndGet(micros);
+
+        long max;
+        while (micros > (max = maxMicros.get()) && !maxMicros.compareAndSet(max, micros)) {
+            // lost the race, retry against the new max
+        }
+    }
+
+    /** Records the time since {@code startNanos} and returns now, the start of the next stage. */
+    public long recordSince(long startNanos) {
+        long now = System.nanoTime();
+        record(now - startNanos);
+        return now;
+    }
+
+    public long count() {
+        return count.get();
+    }
+
+    public double meanMs() {
+        long n = count.get();
+        return n == 0 ? 0 : totalMicros.get() / 1000.0 / n;
+    }
+
+    public double maxMs() {
+        return maxMicros.get() / 1000.0;
+    }
+
+    /** Latency at quantile q (0.5 for the median), in milliseconds; 0 when empty. */
+    public double percentileMs(double q) {
+        long n = count.get();
+        if (n == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(q * n));
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(midpoint(i), maxMicros.get()) / 1000.0;
+        }
+        return maxMs();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+        count.set(0);
+        totalMicros.set(0);
+        maxMicros.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "n %d, p50 %.1f ms, p95 %.1f ms, p99 %.1f ms, max %.1f ms",
+                count(), percentileMs(0.50), percentileMs(0.95), percentileMs(0.99), maxMs());
+    }
+
+    /* ================= BUCKETS ================= */
+
+    static int bucket(long micros) {
+        if (micros < EXACT) return (int) micros;
+
+        int msb = 63 - Long.numberOfLeadingZeros(micros);
+        if (msb >= MAX_BIT) return BUCKETS - 1;
+
+        int shift = msb - SUB_BITS;
+        int sub = (int) (micros >>> shift) - (1 << SUB_BITS);
+        return EXACT + (msb - 5) * (1 << SUB_BITS) + sub;
+    }
+
+    // centre of the bucket's range, in µs
+    static long midpoint(int bucket) {
+        if (bucket < EXACT) return bucket;
+
+        int octave = (bucket - EXACT) >> SUB_BITS;
+        int sub = (bucket - EXACT) & ((1 << SUB_BITS) - 1);
+        int shift = octave + 1;
+        long low = (long) ((1 << SUB_BITS) + sub) << shift;
+        return low + ((1L << shift) >> 1);
+    }
+}
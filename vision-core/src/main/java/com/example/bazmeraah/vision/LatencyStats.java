@@ -0,0 +1,69 @@
+package com.example.bazmeraah.vision;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Named {@link LatencyHistogram}s, one per pipeline stage. Names are
+ * "pipeline.stage" ("vision.infer", "camera.http"), so the report groups
+ * the stages of a pipeline together. Look a stage up once and keep the
+ * histogram, recording into it needs no further lookups. Thread-safe.
+ */
+public class LatencyStats {
+
+    private final Map<String, LatencyHistogram> stages = new LinkedHashMap<>();
+
+    /** The histogram for a stage, created on first use. */
+    public synchronized LatencyHistogram stage(String name) {
+        LatencyHistogram h = stages.get(name);
+        if (h == null) {
+            h = new LatencyHistogram();
+            stages.put(name, h);
+        }
+        return h;
+    }
+
+    /** Stage names in the order they were first used. */
+    public synchronized List<String> names() {
+        return new ArrayList<>(stages.keySet());
+    }
+
+    public synchronized void reset() {
+        for (LatencyHistogram h : stages.values()) h.reset();
+    }
+
+    /** One line per stage that has samples, sorted by pipeline. */
+    public synchronized String report() {
+        List<String> names = new ArrayList<>(stages.keySet());
+        names.sort((a, b) -> pipeline(a).compareTo(pipeline(b)));
+
+        StringBuilder out = new StringBuilder();
+        for (String name : names) {
+            LatencyHistogram h = stages.get(name);
+            if (h.count() == 0) continue;
+            out.append(String.format(Locale.US, "%-22s %s%n", name, h));
+        }
+        return out.toString();
+    }
+
+    public void writeTo(File file) throws IOException {
+        try (Writer w = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            w.write(report());
+        }
+    }
+
+    // "vision.infer" -> "vision"
+    static String pipeline(String name) {
+        int dot = name.indexOf('.');
+        return dot < 0 ? name : name.substring(0, dot);
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.bazmeraah.vision;
+
+/**
+ * Where a source frame lands inside a model input when it is scaled to fit
+ * with its aspect ratio kept and the rest padded, and the mapping from
+ * normalised model coordinates back onto the source frame.
+ */
+public class LetterboxGeometry {
+
+    public float scale;
+    public float padX, padY;
+    public int scaledWidth, scaledHeight;
+
+    private int targetWidth, targetHeight;
+
+    /** Fits {@code sourceW x sourceH} into {@code targetW x targetH}, centred. */
+    public LetterboxGeometry fit(int sourceW, int sourceH, int targetW, int targetH) {
+        targetWidth = targetW;
+        targetHeight = targetH;
+
+        scale = Math.min((float) targetW / sourceW, (float) targetH / sourceH);
+        scaledWidth = Math.round(sourceW * scale);
+        scaledHeight = Math.round(sourceH * scale);
+        padX = (targetW - scaledWidth) / 2f;
+        padY = (targetH - scaledHeight) / 2f;
+        return this;
+    }
+
+    /**
+     * Largest power-of-two reduction of the source (a JPEG inSampleSize)
+     * that the fit still only shrinks, so decoding at that size loses
+     * nothing the letterboxed input would have kept.
+     */
+    public static int sampleSize(int sourceW, int sourceH, int targetW, int targetH) {
+        float limit = Math.max((float) sourceW / targetW, (float) sourceH / targetH);
+        int sample = 1;
+        while (sample * 2 <= limit) sample *= 2;
+        return sample;
+    }
+
+    /** Normalised model x (0..1 across the padded input) to a source pixel x. */
+    public float toSourceX(float x) {
+        return (x * targetWidth - padX) / scale;
+    }
+
+    public float toSourceY(float y) {
+        return (y * targetHeight - padY) / scale;
+    }
+
+    /** Normalised model width to source pixels. */
+    public float toSourceWidth(float w) {
+        return w * targetWidth / scale;
+    }
+
+    public float toSourceHeight(float h) {
+        return h * targetHeight / scale;
+    }
+}
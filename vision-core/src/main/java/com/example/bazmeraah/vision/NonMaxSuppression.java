@@ -0,0 +1,130 @@
+package com.example.bazmeraah.vision;
+
+/**
+ * Non-maximum suppression over a {@link DetectionBuffer}, shared by the
+ * detection engines. Keeps the top K candidates by score (partial selection,
+ * no full sort), then suppresses greedily, optionally per class.
+ *
+ * With many candidates left after the top-K cut, kept boxes are bucketed in
+ * a uniform grid whose cells are at least as large as the largest box, so a
+ * candidate only needs to be compared with the kept boxes in its own and the
+ * eight neighbouring cells. Results are identical to the plain greedy pass.
+ *
+ * Allocation-free once warm; one instance per engine, not thread-safe.
+ */
+public class NonMaxSuppression {
+
+    private static final int DEFAULT_GRID_THRESHOLD = 64;
+    private static final int MAX_GRID_SIDE = 32;
+
+    private final float iouThreshold;
+    private final int topK;
+
+    private boolean classAware;
+    private int gridThreshold = DEFAULT_GRID_THRESHOLD;
+
+    // grid scratch: first kept box per cell, then a linked list through next[]
+    private final int[] cellHead = new int[MAX_GRID_SIDE * MAX_GRID_SIDE];
+    private int[] next;
+
+    /**
+     * @param topK candidates considered after ranking; 0 or less keeps them all
+     */
+    public NonMaxSuppression(float iouThreshold, int topK) {
+        this.iouThreshold = iouThreshold;
+        this.topK = topK;
+    }
+
+    /** Boxes only suppress boxes of the same class. Off by default. */
+    public NonMaxSuppression classAware(boolean enabled) {
+        classAware = enabled;
+        return this;
+    }
+
+    /** Minimum candidates after the top-K cut before the grid is used. */
+    public NonMaxSuppression gridThreshold(int candidates) {
+        gridThreshold = candidates;
+        return this;
+    }
+
+    /**
+     * Suppresses in place. Survivors end up at the front of the buffer in
+     * descending score order; returns how many there are.
+     */
+    public int apply(DetectionBuffer d) {
+        int n = d.selectTop(topK > 0 ? topK : d.size());
+
+        if (n >= gridThreshold) suppressGrid(d, n);
+        else d.suppress(n, iouThreshold, classAware);
+
+        return d.size();
+    }
+
+    /* ================= GRID ================= */
+
+    void suppressGrid(DetectionBuffer d, int n) {
+        if (n == 0) {
+            d.count = 0;
+            return;
+        }
+
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        float maxW = 0f, maxH = 0f;
+
+        for (int i = 0; i < n; i++) {
+            minX = Math.min(minX, d.x[i]);
+            maxX = Math.max(maxX, d.x[i]);
+            minY = Math.min(minY, d.y[i]);
+            maxY = Math.max(maxY, d.y[i]);
+            maxW = Math.max(maxW, d.w[i]);
+            maxH = Math.max(maxH, d.h[i]);
+        }
+
+        // two boxes can only overlap if their centres are less than one
+        // max-size box apart, i.e. in the same or a neighbouring cell
+        float cellW = Math.max(maxW, (maxX - minX) / (MAX_GRID_SIDE - 1));
+        float cellH = Math.max(maxH, (maxY - minY) / (MAX_GRID_SIDE - 1));
+        if (cellW <= 0f) cellW = 1f;
+        if (cellH <= 0f) cellH = 1f;
+
+        int cols = Math.min(MAX_GRID_SIDE, (int) ((maxX - minX) / cellW) + 1);
+        int rows = Math.min(MAX_GRID_SIDE, (int) ((maxY - minY) / cellH) + 1);
+
+        for (int c = 0; c < cols * rows; c++) cellHead[c] = -1;
+        if (next == null || next.length < n) next = new int[d.capacity()];
+
+        int kept = 0;
+
+        for (int i = 0; i < n; i++) {
+            int col = Math.min(cols - 1, (int) ((d.x[i] - minX) / cellW));
+            int row = Math.min(rows - 1, (int) ((d.y[i] - minY) / cellH));
+
+            if (suppressedByNeighbours(d, i, col, row, cols, rows)) continue;
+
+            // compacting only overwrites slots that are not live kept boxes
+            if (kept != i) d.copy(i, kept);
+
+            int cell = row * cols + col;
+            next[kept] = cellHead[cell];
+            cellHead[cell] = kept;
+            kept++;
+        }
+        d.count = kept;
+    }
+
+    private boolean suppressedByNeighbours(DetectionBuffer d, int i,
+                                           int col, int row, int cols, int rows) {
+
+        for (int r = Math.max(0, row - 1); r <= Math.min(rows - 1, row + 1); r++) {
+            for (int c = Math.max(0, col - 1); c <= Math.min(cols - 1, col + 1); c++) {
+
+                for (int k = cellHead[r * cols + c]; k != -1; k = next[k]) {
+                    if (classAware && d.classId[k] != d.classId[i]) continue;
+                    if (d.iou(i, k) > iouThreshold) return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.bazmeraah.vision;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Small multi-object tracker in the style of ByteTrack: confident detections
+ * are matched to the predicted track boxes first, weaker ones only get to
+ * extend tracks that already exist, and only confident leftovers start new
+ * tracks. Matching is greedy by IoU within the same class.
+ *
+ * Each track runs a constant-velocity alpha-beta filter (a fixed-gain Kalman
+ * filter), so positions can be extrapolated between inference frames.
+ * Boxes use the same normalised centre/size coordinates as
+ * {@link DetectionBuffer}. Thread-safe.
+ */
+public class ObjectTracker {
+
+    private static final float POSITION_GAIN = 0.6f;  // alpha
+    private static final float VELOCITY_GAIN = 0.2f;  // beta
+    private static final float SIZE_GAIN = 0.5f;
+
+    public static class Track {
+        public final int id;
+        public final int classId;
+
+        public float x, y, w, h;
+        public float score;
+
+        float vx, vy;          // per second
+        int hits;
+        long lastSeenMs;
+        boolean confirmed;
+        boolean announced;
+
+        Track(int id, int classId) {
+            this.id = id;
+            this.classId = classId;
+        }
+
+        public boolean isConfirmed() {
+            return confirmed;
+        }
+    }
+
+    private final float highThreshold;
+    private final float matchIou;
+    private final int minHits;
+    private final long maxLostMs;
+
+    private final List<Track> tracks = new ArrayList<>();
+    private int nextId = 1;
+    private long lastPredictMs = -1;
+    private boolean settled;
+
+    // scratch, grown to the largest detection count seen
+    private boolean[] detectionUsed = new boolean[0];
+    private boolean[] trackMatched = new boolean[0];
+
+    /**
+     * @param highThreshold detections at or above this can start tracks
+     * @param matchIou      minimum IoU between a predicted track and a detection
+     * @param minHits       matched frames before a track is confirmed
+     * @param maxLostMs     how long an unmatched track is kept alive
+     */
+    public ObjectTracker(float highThreshold, float matchIou, int minHits, long maxLostMs) {
+        this.highThreshold = highThreshold;
+        this.matchIou = matchIou;
+        this.minHits = minHits;
+        this.maxLostMs = maxLostMs;
+    }
+
+    /** Moves every track along its estimated velocity up to {@code nowMs}. */
+    public synchronized void predict(long nowMs) {
+        if (lastPredictMs >= 0 && nowMs > lastPredictMs) {
+            float dt = (nowMs - lastPredictMs) / 1000f;
+            for (Track t : tracks) {
+                t.x += t.vx * dt;
+                t.y += t.vy * dt;
+            }
+        }
+        lastPredictMs = nowMs;
+    }
+
+    /**
+     * Associates the frame's (already suppressed) detections with the tracks,
+     * starts new tracks and drops the ones lost for too long.
+     */
+    public synchronized void update(DetectionBuffer d, long nowMs) {
+        long lastMs = lastPredictMs;
+        predict(nowMs);
+        float dt = lastMs >= 0 ? Math.max(1e-3f, (nowMs - lastMs) / 1000f) : 0f;
+
+        int n = d.size();
+        if (detectionUsed.length < n) detectionUsed = new boolean[n];
+        if (trackMatched.length < tracks.size()) trackMatched = new boolean[tracks.size() * 2];
+
+        for (int i = 0; i < n; i++) detectionUsed[i] = false;
+        for (int t = 0; t < tracks.size(); t++) trackMatched[t] = false;
+
+        // 🎯 first confident detections, then the weak ones for what is left
+        associate(d, true, dt, nowMs);
+        associate(d, false, dt, nowMs);
+
+        // unmatched tracks: tentative ones go at once, confirmed ones after a while
+        for (int t = tracks.size() - 1; t >= 0; t--) {
+            if (trackMatched[t]) continue;
+            Track track = tracks.get(t);
+            if (!track.confirmed || nowMs - track.lastSeenMs > maxLostMs) tracks.remove(t);
+        }
+
+        for (int i = 0; i < n; i++) {
+            if (detectionUsed[i] || d.score[i] < highThreshold) continue;
+
+            Track track = new Track(nextId++, d.classId[i]);
+            track.x = d.x[i];
+            track.y = d.y[i];
+            track.w = d.w[i];
+            track.h = d.h[i];
+            track.score = d.score[i];
+            track.hits = 1;
+            track.lastSeenMs = nowMs;
+            track.confirmed = minHits <= 1;
+            tracks.add(track);
+        }
+
+        settled = !tracks.isEmpty();
+        for (int t = 0; t < tracks.size() && settled; t++) {
+            Track track = tracks.get(t);
+            settled = track.confirmed && track.lastSeenMs == nowMs;
+        }
+    }
+
+    private void associate(DetectionBuffer d, boolean confident, float dt, long nowMs) {
+        int n = d.size();
+
+        while (true) {
+            float bestIou = matchIou;
+            int bestTrack = -1, bestDetection = -1;
+
+            for (int t = 0; t < tracks.size(); t++) {
+                if (trackMatched[t]) continue;
+                Track track = tracks.get(t);
+
+                // weak detections only extend tracks that are already confirmed
+                if (!confident && !track.confirmed) continue;
+
+                for (int i = 0; i < n; i++) {
+                    if (detectionUsed[i] || d.classId[i] != track.classId) continue;
+                    if ((d.score[i] >= highThreshold) != confident) continue;
+
+                    float iou = iou(track, d, i);
+                    if (iou >= bestIou) {
+                        bestIou = iou;
+                        bestTrack = t;
+                        bestDetection = i;
+                    }
+                }
+            }
+
+            if (bestTrack < 0) return;
+
+            trackMatched[bestTrack] = true;
+            detectionUsed[bestDetection] = true;
+            correct(tracks.get(bestTrack), d, bestDetection, dt, nowMs);
+        }
+    }
+
+    private void correct(Track t, DetectionBuffer d, int i, float dt, long nowMs) {
+        float rx = d.x[i] - t.x;
+        float ry = d.y[i] - t.y;
+
+        t.x += POSITION_GAIN * rx;
+        t.y += POSITION_GAIN * ry;
+        if (dt > 0f) {
+            t.vx += VELOCITY_GAIN * rx / dt;
+            t.vy += VELOCITY_GAIN * ry / dt;
+        }
+
+        t.w += SIZE_GAIN * (d.w[i] - t.w);
+        t.h += SIZE_GAIN * (d.h[i] - t.h);
+        t.score = d.score[i];
+
+        t.hits++;
+        t.lastSeenMs = nowMs;
+        if (t.hits >= minHits) t.confirmed = true;
+    }
+
+    private static float iou(Track t, DetectionBuffer d, int i) {
+        float x1 = Math.max(t.x - t.w / 2, d.x[i] - d.w[i] / 2);
+        float y1 = Math.max(t.y - t.h / 2, d.y[i] - d.h[i] / 2);
+        float x2 = Math.min(t.x + t.w / 2, d.x[i] + d.w[i] / 2);
+        float y2 = Math.min(t.y + t.h / 2, d.y[i] + d.h[i] / 2);
+        float inter = Math.max(0, x2 - x1) * Math.max(0, y2 - y1);
+        float union = t.w * t.h + d.w[i] * d.h[i] - inter + 1e-6f;
+        return inter / union;
+    }
+
+    /* ================= QUERIES ================= */
+
+    /**
+     * Adds confirmed tracks that have not been announced yet to {@code out},
+     * highest score first, and marks them announced.
+     */
+    public synchronized int takeUnannounced(List<Track> out) {
+        int start = out.size();
+
+        for (Track t : tracks) {
+            if (!t.confirmed || t.announced) continue;
+            t.announced = true;
+
+            int at = out.size();
+            while (at > start && out.get(at - 1).score < t.score) at--;
+            out.add(at, t);
+        }
+        return out.size() - start;
+    }
+
+    /**
+     * True when the last update matched every track and all of them are
+     * confirmed, i.e. nothing new or uncertain is in view.
+     */
+    public synchronized boolean isSettled() {
+        return settled;
+    }
+
+    public synchronized int size() {
+        return tracks.size();
+    }
+
+    public synchronized void clear() {
+        tracks.clear();
+        lastPredictMs = -1;
+        settled = false;
+    }
+}
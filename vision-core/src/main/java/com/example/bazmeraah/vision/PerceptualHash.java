@@ -0,0 +1,57 @@
+package com.example.bazmeraah.vision;
+
+/**
+ * 64-bit difference hash (dHash) of a frame: the image is box-averaged down
+ * to 9x8 luminance cells and each bit says whether a cell is brighter than
+ * its right neighbour. Small changes in exposure, JPEG noise or a slight
+ * shake flip few bits; a different scene flips many.
+ */
+public final class PerceptualHash {
+
+    public static final int COLS = 9;
+    public static final int ROWS = 8;
+
+    private PerceptualHash() {
+    }
+
+    /**
+     * @param argb   packed ARGB pixels, row-major, at least {@code COLS x ROWS}
+     * @param cells  scratch of at least {@code COLS * ROWS}, avoids allocating
+     */
+    public static long dHash(int[] argb, int width, int height, int[] cells) {
+
+        for (int row = 0; row < ROWS; row++) {
+            int y0 = row * height / ROWS, y1 = (row + 1) * height / ROWS;
+
+            for (int col = 0; col < COLS; col++) {
+                int x0 = col * width / COLS, x1 = (col + 1) * width / COLS;
+
+                long sum = 0;
+                for (int y = y0; y < y1; y++) {
+                    int base = y * width;
+                    for (int x = x0; x < x1; x++) sum += luma(argb[base + x]);
+                }
+                cells[row * COLS + col] = (int) (sum / Math.max(1, (x1 - x0) * (y1 - y0)));
+            }
+        }
+
+        long hash = 0;
+        for (int row = 0; row < ROWS; row++) {
+            for (int col = 0; col < COLS - 1; col++) {
+                int i = row * COLS + col;
+                hash = (hash << 1) | (cells[i] > cells[i + 1] ? 1 : 0);
+            }
+        }
+        return hash;
+    }
+
+    /** Number of differing bits, 0 (same) to 64. */
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    // integer Rec. 601 luma, 0..255
+    private static int luma(int pixel) {
+        return (((pixel >> 16) & 0xFF) * 77 + ((pixel >> 8) & 0xFF) * 150 + (pixel & 0xFF) * 29) >> 8;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.bazmeraah.vision;
+
+/**
+ * Remembers the result computed for the last scene, keyed by its
+ * {@link PerceptualHash}. A lookup with a hash within {@code maxDistance}
+ * bits, no older than {@code maxAgeMs}, returns that result instead of
+ * running the model again. Counts hits and misses. Thread-safe.
+ */
+public class SceneCache<T> {
+
+    private final int maxDistance;
+    private final long maxAgeMs;
+
+    private long hash;
+    private long storedMs;
+    private T value;
+
+    private long hits;
+    private long misses;
+
+    public SceneCache(int maxDistance, long maxAgeMs) {
+        this.maxDistance = maxDistance;
+        this.maxAgeMs = maxAgeMs;
+    }
+
+    /** The cached result if the scene has not changed, otherwise null (a miss). */
+    public synchronized T lookup(long sceneHash, long nowMs) {
+        if (value != null
+                && nowMs - storedMs <= maxAgeMs
+                && PerceptualHash.distance(hash, sceneHash) <= maxDistance) {
+            hits++;
+            return value;
+        }
+        misses++;
+        return null;
+    }
+
+    public synchronized void store(long sceneHash, T result, long nowMs) {
+        hash = sceneHash;
+        value = result;
+        storedMs = nowMs;
+    }
+
+    public synchronized void invalidate() {
+        value = null;
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /** Share of lookups answered from the cache, 0 when there were none. */
+    public synchronized float hitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0f : (float) hits / total;
+    }
+}
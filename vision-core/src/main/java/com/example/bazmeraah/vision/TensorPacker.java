@@ -0,0 +1,57 @@
+package com.example.bazmeraah.vision;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts ARGB pixels into model input tensors, writing into a buffer the
+ * caller owns and reuses.
+ */
+public final class TensorPacker {
+
+    private TensorPacker() {
+    }
+
+    /** RGB floats scaled to 0..1, the layout the YOLO models expect. */
+    public static void packFloatRgb(int[] pixels, int count, ByteBuffer dst) {
+        dst.clear();
+
+        for (int i = 0; i < count; i++) {
+            int pixel = pixels[i];
+            dst.putFloat(((pixel >> 16) & 0xFF) / 255f);
+            dst.putFloat(((pixel >> 8) & 0xFF) / 255f);
+            dst.putFloat((pixel & 0xFF) / 255f);
+        }
+
+        dst.rewind();
+    }
+
+    /**
+     * Lookup table from an 8-bit colour channel to the model's quantized
+     * input value, for inputs normalised to 0..1 before quantization.
+     */
+    public static byte[] quantizationTable(float scale, int zeroPoint, boolean signed) {
+        byte[] table = new byte[256];
+        int min = signed ? -128 : 0;
+        int max = signed ? 127 : 255;
+
+        for (int v = 0; v < 256; v++) {
+            int q = Math.round(v / 255f / scale) + zeroPoint;
+            table[v] = (byte) Math.max(min, Math.min(max, q));
+        }
+        return table;
+    }
+
+    /** One byte per channel through the table, 4x smaller than the float input. */
+    public static void packQuantizedRgb(int[] pixels, int count, byte[] table, ByteBuffer dst) {
+        dst.clear();
+
+        for (int i = 0; i < count; i++) {
+            int pixel = pixels[i];
+            dst.put(table[(pixel >> 16) & 0xFF]);
+            dst.put(table[(pixel >> 8) & 0xFF]);
+            dst.put(table[pixel & 0xFF]);
+        }
+
+        dst.rewind();
+    }
+}
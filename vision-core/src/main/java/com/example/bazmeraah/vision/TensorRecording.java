@@ -0,0 +1,62 @@
+package com.example.bazmeraah.vision;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Raw dumps of tensors and frames, so real model outputs can be replayed
+ * off-device (benchmarks, tests). Files are headerless little-endian
+ * arrays; the shape goes in the file name, e.g.
+ * {@code yolo_output_605x8400.f32} or {@code frame_640x640.argb}.
+ */
+public final class TensorRecording {
+
+    private TensorRecording() {
+    }
+
+    public static void writeFloats(File file, float[] values) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(values);
+        write(file, buffer.array());
+    }
+
+    public static void writeInts(File file, int[] values) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asIntBuffer().put(values);
+        write(file, buffer.array());
+    }
+
+    public static float[] readFloats(File file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(read(file)).order(ByteOrder.LITTLE_ENDIAN);
+        float[] values = new float[buffer.remaining() / 4];
+        buffer.asFloatBuffer().get(values);
+        return values;
+    }
+
+    public static int[] readInts(File file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(read(file)).order(ByteOrder.LITTLE_ENDIAN);
+        int[] values = new int[buffer.remaining() / 4];
+        buffer.asIntBuffer().get(values);
+        return values;
+    }
+
+    private static void write(File file, byte[] bytes) throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(bytes);
+        }
+    }
+
+    private static byte[] read(File file) throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            in.readFully(bytes);
+        }
+        return bytes;
+    }
+}
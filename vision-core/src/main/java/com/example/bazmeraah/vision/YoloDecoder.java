@@ -0,0 +1,267 @@
+package com.example.bazmeraah.vision;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Turns the raw YOLOv8 output tensor (flattened to one float[]) into
+ * thresholded candidates. Works on primitive arrays only so it can be reused
+ * every frame without allocating.
+ *
+ * The label allowlist is compiled once into a per-class minimum score, so
+ * the hot loop never touches strings. For the transposed [4 + classes][anchors]
+ * layout the class scores are walked row by row, in memory order, keeping a
+ * running best per anchor; anchors whose best score stays under the threshold
+ * are rejected before their box is read.
+ */
+public class YoloDecoder {
+
+    private final List<String> labels;
+    private final Set<String> allowed;
+
+    private final float threshold;
+    private final float otherThreshold;
+    private final float minArea;
+
+    // compiled for the model's class count on first use
+    private boolean[] classAllowed;
+    private float[] classMin;
+    private int[] classMinQ;
+
+    // per-anchor running best, transposed layout only
+    private float[] bestScore;
+    private int[] bestQ;
+    private int[] bestClass;
+
+    /**
+     * @param allowed        labels accepted at {@code threshold}; any other label
+     *                       needs {@code otherThreshold}. Null accepts everything.
+     * @param minArea        boxes smaller than this (normalised w * h) are dropped
+     */
+    public YoloDecoder(List<String> labels, Set<String> allowed,
+                       float threshold, float otherThreshold, float minArea) {
+        this.labels = labels;
+        this.allowed = allowed;
+        this.threshold = threshold;
+        this.otherThreshold = otherThreshold;
+        this.minArea = minArea;
+    }
+
+    /**
+     * @param output     model output, [dim1][dim2] flattened row-major
+     * @param transposed true for the [4 + classes][anchors] layout
+     */
+    public void decode(float[] output, int dim1, int dim2,
+                       boolean transposed, DetectionBuffer out) {
+
+        out.clear();
+
+        int anchors = transposed ? dim2 : dim1;
+        int classes = (transposed ? dim1 : dim2) - 4;
+        float[] min = compile(classes);
+
+        if (!transposed) {
+            for (int i = 0; i < anchors; i++) {
+                int base = i * dim2;
+
+                float best = 0f;
+                int cls = -1;
+                for (int c = 0; c < classes; c++) {
+                    float score = output[base + 4 + c];
+                    if (score > best) {
+                        best = score;
+                        cls = c;
+                    }
+                }
+
+                if (best <= threshold || cls < 0 || best <= min[cls]) continue;
+
+                if (!add(out, output[base], output[base + 1],
+                        output[base + 2], output[base + 3], best, cls)) return;
+            }
+            return;
+        }
+
+        float[] best = scratchScores(anchors);
+        int[] cls = scratchClasses(anchors);
+
+        for (int i = 0; i < anchors; i++) {
+            best[i] = 0f;
+            cls[i] = -1;
+        }
+
+        // 🔍 best class per anchor, one contiguous class row at a time
+        for (int c = 0; c < classes; c++) {
+            int row = (4 + c) * anchors;
+            for (int i = 0; i < anchors; i++) {
+                float score = output[row + i];
+                if (score > best[i]) {
+                    best[i] = score;
+                    cls[i] = c;
+                }
+            }
+        }
+
+        for (int i = 0; i < anchors; i++) {
+            float score = best[i];
+            if (score <= threshold) continue;
+
+            int c = cls[i];
+            if (score <= min[c]) continue;
+
+            if (!add(out, output[i], output[anchors + i],
+                    output[2 * anchors + i], output[3 * anchors + i], score, c)) return;
+        }
+    }
+
+    /**
+     * Same as {@link #decode} for a uint8/int8 output tensor. Scores are
+     * compared in the quantized domain and only the boxes that pass are
+     * dequantized with {@code scale} and {@code zeroPoint}.
+     */
+    public void decodeQuantized(byte[] output, int dim1, int dim2, boolean transposed,
+                                boolean signed, float scale, int zeroPoint,
+                                DetectionBuffer out) {
+
+        out.clear();
+
+        int anchors = transposed ? dim2 : dim1;
+        int classes = (transposed ? dim1 : dim2) - 4;
+        int step = transposed ? dim2 : 1;
+        int mask = signed ? -1 : 0xFF;
+
+        // q > qThreshold  <=>  (q - zeroPoint) * scale > threshold
+        int qThreshold = quantizedThreshold(threshold, scale, zeroPoint);
+        int[] minQ = compileQuantized(classes, qThreshold,
+                quantizedThreshold(otherThreshold, scale, zeroPoint));
+
+        int[] best;
+        int[] cls;
+
+        if (transposed) {
+            best = scratchQ(anchors);
+            cls = scratchClasses(anchors);
+
+            for (int i = 0; i < anchors; i++) {
+                best[i] = Integer.MIN_VALUE;
+                cls[i] = -1;
+            }
+
+            for (int c = 0; c < classes; c++) {
+                int row = (4 + c) * anchors;
+                for (int i = 0; i < anchors; i++) {
+                    int q = output[row + i] & mask;
+                    if (q > best[i]) {
+                        best[i] = q;
+                        cls[i] = c;
+                    }
+                }
+            }
+        } else {
+            best = null;
+            cls = null;
+        }
+
+        for (int i = 0; i < anchors; i++) {
+
+            int base = transposed ? i : i * dim2;
+            int q;
+            int c;
+
+            if (transposed) {
+                q = best[i];
+                c = cls[i];
+            } else {
+                q = Integer.MIN_VALUE;
+                c = -1;
+                for (int k = 0; k < classes; k++) {
+                    int v = output[base + 4 + k] & mask;
+                    if (v > q) {
+                        q = v;
+                        c = k;
+                    }
+                }
+            }
+
+            if (q <= qThreshold || c < 0 || q <= minQ[c]) continue;
+
+            float x = ((output[base] & mask) - zeroPoint) * scale;
+            float y = ((output[base + step] & mask) - zeroPoint) * scale;
+            float w = ((output[base + 2 * step] & mask) - zeroPoint) * scale;
+            float h = ((output[base + 3 * step] & mask) - zeroPoint) * scale;
+
+            if (!add(out, x, y, w, h, (q - zeroPoint) * scale, c)) return;
+        }
+    }
+
+    private boolean add(DetectionBuffer out, float x, float y, float w, float h,
+                        float score, int cls) {
+        if (w * h < minArea) return true;
+        return out.add(x, y, w, h, score, cls);
+    }
+
+    /* ================= ALLOWLIST ================= */
+
+    /**
+     * Minimum score per class, exclusive: allowed labels need more than
+     * {@code threshold}, the rest at least {@code otherThreshold}.
+     */
+    private float[] compile(int classes) {
+        if (classMin != null && classMin.length == classes) return classMin;
+
+        boolean[] ok = new boolean[classes];
+        float[] min = new float[classes];
+        float other = Math.max(threshold, Math.nextDown(otherThreshold));
+
+        for (int c = 0; c < classes; c++) {
+            ok[c] = isAllowed(c);
+            min[c] = ok[c] ? threshold : other;
+        }
+
+        classAllowed = ok;
+        classMin = min;
+        return min;
+    }
+
+    private int[] compileQuantized(int classes, int qThreshold, int qOther) {
+        if (classMinQ == null || classMinQ.length != classes) classMinQ = new int[classes];
+
+        compile(classes);
+        int other = Math.max(qThreshold, qOther);
+
+        for (int c = 0; c < classes; c++) {
+            classMinQ[c] = classAllowed[c] ? qThreshold : other;
+        }
+        return classMinQ;
+    }
+
+    private boolean isAllowed(int classId) {
+        if (allowed == null) return true;
+
+        String label = (classId >= 0 && classId < labels.size())
+                ? labels.get(classId)
+                : "object";
+        return allowed.contains(label);
+    }
+
+    private static int quantizedThreshold(float value, float scale, int zeroPoint) {
+        return (int) Math.floor(value / scale) + zeroPoint;
+    }
+
+    /* ================= SCRATCH ================= */
+
+    private float[] scratchScores(int anchors) {
+        if (bestScore == null || bestScore.length < anchors) bestScore = new float[anchors];
+        return bestScore;
+    }
+
+    private int[] scratchQ(int anchors) {
+        if (bestQ == null || bestQ.length < anchors) bestQ = new int[anchors];
+        return bestQ;
+    }
+
+    private int[] scratchClasses(int anchors) {
+        if (bestClass == null || bestClass.length < anchors) bestClass = new int[anchors];
+        return bestClass;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.bazmeraah.vision;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ColorAnalyzerTest {
+
+    private final ColorAnalyzer analyzer = new ColorAnalyzer();
+    private final Random random = new Random(9);
+
+    @Test
+    public void namesSolidColours() {
+        assertEquals("Red", analyzer.dominantColor(solid(0xD02020), 1600));
+        assertEquals("Green", analyzer.dominantColor(solid(0x30B040), 1600));
+        assertEquals("Blue", analyzer.dominantColor(solid(0x2040D0), 1600));
+        assertEquals("Yellow", analyzer.dominantColor(solid(0xE0D020), 1600));
+        assertEquals("White", analyzer.dominantColor(solid(0xF8F8F8), 1600));
+    }
+
+    @Test
+    public void noisyShadesOfOneColourClusterTogether() {
+        // spread over many histogram bins, still one perceptual colour
+        int[] px = new int[1600];
+        for (int i = 0; i < px.length; i++) {
+            px[i] = 0xFF000000 | jitter(40, 40) << 16 | jitter(80, 50) << 8 | jitter(200, 50);
+        }
+        assertEquals("Blue", analyzer.dominantColor(px, px.length));
+    }
+
+    @Test
+    public void majorityWinsAndGreyGivesWayToCloseRunnerUp() {
+        assertEquals("Red", analyzer.dominantColor(patch(0xD02020, 0x2040D0, 1000, 1600), 1600));
+        assertEquals("Green", analyzer.dominantColor(patch(0x808080, 0x30B040, 900, 1600), 1600));
+        assertEquals("Gray", analyzer.dominantColor(patch(0x808080, 0x30B040, 1300, 1600), 1600));
+    }
+
+    private static int[] solid(int rgb) {
+        return patch(rgb, rgb, 1600, 1600);
+    }
+
+    // `first` colour for the first n pixels, `second` for the rest
+    private static int[] patch(int first, int second, int n, int total) {
+        int[] px = new int[total];
+        for (int i = 0; i < total; i++) px[i] = 0xFF000000 | (i < n ? first : second);
+        return px;
+    }
+
+    private int jitter(int centre, int spread) {
+        return Math.max(0, Math.min(255, centre + random.nextInt(spread) - spread / 2));
+    }
+}
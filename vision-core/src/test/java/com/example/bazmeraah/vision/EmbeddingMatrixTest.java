@@ -0,0 +1,107 @@
+package com.example.bazmeraah.vision;
+
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class EmbeddingMatrixTest {
+
+    private static float[][] randomUnit(int count, int dim, long seed) {
+        Random random = new Random(seed);
+        float[][] rows = new float[count][dim];
+        for (float[] row : rows) {
+            for (int i = 0; i < dim; i++) row[i] = (float) random.nextGaussian();
+            EmbeddingMath.normalize(row);
+        }
+        return rows;
+    }
+
+    private static Map<String, float[]> gallery(float[][] rows) {
+        Map<String, float[]> gallery = new LinkedHashMap<>();
+        for (int i = 0; i < rows.length; i++) gallery.put("p" + i, rows[i]);
+        return gallery;
+    }
+
+    @Test
+    public void ranksLikeL2WithoutTheSquareRoot() {
+        Map<String, float[]> gallery = gallery(randomUnit(200, 128, 1));
+        float[] query = randomUnit(1, 128, 2)[0];
+
+        String expected = null;
+        float expectedDistance = Float.MAX_VALUE;
+        for (Map.Entry<String, float[]> e : gallery.entrySet()) {
+            float d = EmbeddingMath.distance(query, e.getValue());
+            if (d < expectedDistance) {
+                expectedDistance = d;
+                expected = e.getKey();
+            }
+        }
+        List<EmbeddingMatrix.Hit> hits = EmbeddingMatrix.of(gallery).search(query, 1);
+
+        assertEquals(expected, hits.get(0).name);
+        assertEquals(expectedDistance, hits.get(0).distance, 1e-4f);
+    }
+
+    @Test
+    public void topKIsSortedWithMarginsToTheNext() {
+        Map<String, float[]> gallery = new LinkedHashMap<>();
+        gallery.put("Ali", EmbeddingMath.normalize(new float[]{1, 0, 0, 0, 0}));
+        gallery.put("Sara", EmbeddingMath.normalize(new float[]{1, 1, 0, 0, 0}));
+        gallery.put("Omar", EmbeddingMath.normalize(new float[]{0, 0, 1, 0, 0}));
+        gallery.put("Zara", EmbeddingMath.normalize(new float[]{0, 1, 0, 0, 0}));
+
+        List<EmbeddingMatrix.Hit> hits = EmbeddingMatrix.of(gallery)
+                .search(EmbeddingMath.normalize(new float[]{1, 0.2f, 0, 0, 0}), 3);
+
+        assertEquals(3, hits.size());
+        assertEquals("Ali", hits.get(0).name);
+        assertEquals("Sara", hits.get(1).name);
+        assertEquals("Zara", hits.get(2).name);
+        for (int i = 0; i < 2; i++) {
+            assertEquals(hits.get(i).similarity - hits.get(i + 1).similarity, hits.get(i).margin, 1e-6f);
+        }
+        assertTrue(hits.get(2).margin > 0); // over Omar, the fourth
+    }
+
+    @Test
+    public void parallelSearchAgreesWithSerial() {
+        float[][] rows = randomUnit(20_000, 128, 3);
+        EmbeddingMatrix matrix = EmbeddingMatrix.of(gallery(rows));
+
+        for (long seed = 10; seed < 15; seed++) {
+            float[] query = randomUnit(1, 128, seed)[0];
+            List<EmbeddingMatrix.Hit> serial = matrix.search(query, 5, false);
+            List<EmbeddingMatrix.Hit> parallel = matrix.search(query, 5, true);
+
+            assertEquals(5, parallel.size());
+            for (int i = 0; i < 5; i++) {
+                assertEquals(serial.get(i).name, parallel.get(i).name);
+                assertEquals(serial.get(i).margin, parallel.get(i).margin, 0f);
+            }
+        }
+    }
+
+    @Test
+    public void unrolledDotHandlesOddLengths() {
+        float[] a = {1, 2, 3, 4, 5, 6, 7};
+        float[] b = {0, 0, 7, 6, 5, 4, 3, 2, 1};
+        assertEquals(7 + 12 + 15 + 16 + 15 + 12 + 7, EmbeddingMatrix.dot(a, b, 2, 7), 0f);
+    }
+
+    @Test
+    public void emptyOrSmallGalleries() {
+        assertTrue(EmbeddingMatrix.EMPTY.search(new float[0], 3).isEmpty());
+
+        Map<String, float[]> one = new LinkedHashMap<>();
+        one.put("Ali", EmbeddingMath.normalize(new float[]{1, 0}));
+        List<EmbeddingMatrix.Hit> hits = EmbeddingMatrix.of(one).search(new float[]{1, 0}, 3);
+
+        assertEquals(1, hits.size());
+        assertEquals(0f, hits.get(0).distance, 1e-6f);
+    }
+}
@@ -0,0 +1,268 @@
+package com.example.bazmeraah.vision;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class EmbeddingStoreTest {
+
+    private File dir;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("faces").toFile();
+        file = new File(dir, "faces.bin");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+        dir.delete();
+    }
+
+    private static float[] unit(float... v) {
+        return EmbeddingMath.normalize(v);
+    }
+
+    @Test
+    public void savedFacesSurviveReopening() throws IOException {
+        try (EmbeddingStore store = EmbeddingStore.open(file)) {
+            assertEquals(0, store.size());
+            store.put("Ali", unit(1, 0, 0, 0));
+            store.put("سارہ", unit(0, 1, 0, 0));
+        }
+
+        try (EmbeddingStore store = EmbeddingStore.open(file)) {
+            assertEquals(2, store.size());
+            assertEquals(4, store.dimension());
+            assertArrayEquals(unit(0, 1, 0, 0), store.get("سارہ"), 0f);
+
+            Map<String, float[]> all = store.toMap();
+            assertEquals("Ali", all.keySet().iterator().next());
+        }
+    }
+
+    @Test
+    public void searchFindsNearestByL2() throws IOException {
+        try (EmbeddingStore store = EmbeddingStore.open(file)) {
+            store.put("Ali", unit(1, 0, 0, 0));
+            store.put("Sara", unit(0, 1, 0, 0));
+            store.put("Omar", unit(0, 0, 1, 1));
+
+            float[] query = unit(0.1f, 0.9f, 0, 0);
+            EmbeddingMatrix.Hit match = store.search(query, 1).get(0);
+
+            assertEquals("Sara", match.name);
+            assertEquals(EmbeddingMath.distance(query, store.get("Sara")), match.distance, 1e-6f);
+            assertTrue(store.search(unit(1, 0), 1).isEmpty()); // wrong dimension
+        }
+    }
+
+    @Test
+    public void bestSampleBeatsACloserCentroid() throws IOException {
+        try (EmbeddingStore store = EmbeddingStore.open(file)) {
+            // Ali in daylight and in the dark; his centroid sits between the two
+            store.add("Ali", unit(1, 0, 0), 5);
+            store.add("Ali", unit(0, 0, 1), 5);
+            store.put("Sara", unit(1, 0.6f, 0.6f));
+
+            float[] query = unit(1, 0.05f, 0);
+            assertTrue(EmbeddingMath.distance(query, store.get("Sara"))
+                    < EmbeddingMath.distance(query, store.get("Ali")));
+
+            List<EmbeddingMatrix.Hit> hits = store.search(query, 2);
+            assertEquals("Ali", hits.get(0).name);
+            assertEquals("Sara", hits.get(1).name);
+            assertEquals(hits.get(0).similarity - hits.get(1).similarity, hits.get(0).margin, 1e-6f);
+        }
+    }
+
+    @Test
+    public void centroidIsTheNormalisedMean() {
+        float[] c = EmbeddingStore.centroid(Arrays.asList(unit(1, 0), unit(0, 1)), 2);
+        assertArrayEquals(unit(1, 1), c, 1e-6f);
+    }
+
+    @Test
+    public void updatesAndDeletesInPlace() throws IOException {
+        try (EmbeddingStore store = EmbeddingStore.open(file)) {
+            for (int i = 0; i < 10; i++) store.put("p" + i, unit(i, 1, 0, 0));
+            long bytes = store.fileBytes();
+
+            store.put("p3", unit(0, 0, 0, 1));
+            assertTrue(store.remove("p5"));
+            assertFalse(store.remove("p5"));
+            store.put("new", unit(0, 0, 1, 0)); // takes the deleted slot
+
+            assertEquals(bytes, store.fileBytes());
+            assertEquals(10, store.size());
+        }
+
+        try (EmbeddingStore store = EmbeddingStore.open(file)) {
+            assertArrayEquals(unit(0, 0, 0, 1), store.get("p3"), 0f);
+            assertNull(store.get("p5"));
+            assertTrue(store.contains("new"));
+        }
+    }
+
+    @Test
+    public void growsPastInitialCapacity() throws IOException {
+        try (EmbeddingStore store = EmbeddingStore.open(file)) {
+            for (int i = 0; i < 100; i++) store.put("person " + i, unit(i, i % 7, 1, 0));
+        }
+        try (EmbeddingStore store = EmbeddingStore.open(file)) {
+            assertEquals(100, store.size());
+            assertEquals("person 99", store.search(unit(99, 99 % 7, 1, 0), 1).get(0).name);
+        }
+    }
+
+    @Test
+    public void rejectsMismatchedDimensionAndLongNames() throws IOException {
+        try (EmbeddingStore store = EmbeddingStore.open(file)) {
+            store.put("Ali", unit(1, 0, 0, 0));
+            try {
+                store.put("Sara", unit(1, 0));
+                fail("expected a dimension error");
+            } catch (IllegalArgumentException expected) {
+                // 2 values in a 4-value store
+            }
+            try {
+                store.put(new String(new char[EmbeddingStore.NAME_BYTES + 1]).replace('\0', 'a'),
+                        unit(1, 0, 0, 0));
+                fail("expected a name error");
+            } catch (IllegalArgumentException expected) {
+                // longer than a record holds
+            }
+            assertEquals(1, store.size());
+        }
+    }
+
+    @Test
+    public void clearDeletesTheFile() throws IOException {
+        try (EmbeddingStore store = EmbeddingStore.open(file)) {
+            store.put("Ali", unit(1, 0));
+            store.clear();
+            assertEquals(0, store.size());
+            assertFalse(file.exists());
+
+            store.put("Sara", unit(0, 1, 0)); // new dimension after a clear
+            assertEquals(3, store.dimension());
+        }
+    }
+
+    @Test
+    public void samplesAccumulateAndSurviveReopening() throws IOException {
+        try (EmbeddingStore store = EmbeddingStore.open(file)) {
+            store.put("Ali", unit(1, 0, 0, 0));
+            assertEquals(2, store.add("Ali", unit(1, 1, 0, 0), 5));
+            assertEquals(1, store.add("Sara", unit(0, 0, 1, 0), 5));
+        }
+
+        try (EmbeddingStore store = EmbeddingStore.open(file)) {
+            assertEquals(2, store.size());
+            assertEquals(2, store.sampleCount("Ali"));
+            assertEquals(1, store.sampleCount("Sara"));
+            assertArrayEquals(unit(2 + (float) Math.sqrt(2), (float) Math.sqrt(2), 0, 0), store.get("Ali"), 1e-6f);
+
+            // the second sample is the closer one
+            assertEquals("Ali", store.search(unit(1, 1.2f, 0, 0), 1).get(0).name);
+            assertEquals(0.9957f, store.search(unit(1, 1.2f, 0, 0), 1).get(0).similarity, 1e-3f);
+        }
+    }
+
+    @Test
+    public void fullPersonReplacesTheirMostRedundantSample() throws IOException {
+        try (EmbeddingStore store = EmbeddingStore.open(file)) {
+            store.add("Ali", unit(1, 0, 0, 0), 3);
+            store.add("Ali", unit(1, 0.1f, 0, 0), 3);   // nearly the first
+            store.add("Ali", unit(0, 0, 1, 0), 3);
+            long bytes = store.fileBytes();
+
+            assertEquals(3, store.add("Ali", unit(0, 0, 0, 1), 3));
+            assertEquals(bytes, store.fileBytes());
+
+            List<float[]> samples = store.samples("Ali");
+            assertEquals(3, samples.size());
+            int kept = 0;
+            for (float[] s : samples) if (s[0] > 0.9f) kept++;
+            assertEquals(1, kept); // one of the two near-duplicates went
+        }
+    }
+
+    @Test
+    public void putAndRemoveFreeEverySample() throws IOException {
+        try (EmbeddingStore store = EmbeddingStore.open(file)) {
+            for (int i = 0; i < 4; i++) store.add("Ali", unit(1, i, 0, 0), 5);
+            store.put("Ali", unit(0, 1, 0, 0));
+            assertEquals(1, store.sampleCount("Ali"));
+
+            assertEquals(1, store.add("Sara", unit(0, 0, 1, 0), 5));
+            assertTrue(store.remove("Ali"));
+            assertEquals(0, store.sampleCount("Ali"));
+        }
+
+        try (EmbeddingStore store = EmbeddingStore.open(file)) {
+            assertEquals(1, store.size());
+            assertTrue(store.samples("Ali").isEmpty());
+            assertEquals("Sara", store.names().get(0));
+        }
+    }
+
+    @Test
+    public void int8StoreIsSmallerAndMatchesTheSameFaces() throws IOException {
+        File floats = new File(dir, "floats.bin");
+        try (EmbeddingStore f = EmbeddingStore.open(floats);
+             EmbeddingStore q = EmbeddingStore.open(file, new ExactFaceIndex(), EmbeddingStore.Encoding.INT8)) {
+            Random random = new Random(3);
+            float[][] faces = new float[40][128];
+            for (int p = 0; p < faces.length; p++) {
+                for (int i = 0; i < 128; i++) faces[p][i] = (float) random.nextGaussian();
+                EmbeddingMath.normalize(faces[p]);
+                f.put("p" + p, faces[p]);
+                q.put("p" + p, faces[p]);
+            }
+
+            assertEquals(EmbeddingStore.Encoding.INT8, q.encoding());
+            assertTrue(q.fileBytes() * 2 < f.fileBytes()); // embeddings 4x, names are the same 72 bytes
+            for (int p = 0; p < faces.length; p++) {
+                assertEquals("p" + p, q.search(faces[p], 1).get(0).name);
+                assertEquals(f.search(faces[p], 2).get(1).distance, q.search(faces[p], 2).get(1).distance, 0.01f);
+            }
+        } finally {
+            floats.delete();
+        }
+
+        try (EmbeddingStore q = EmbeddingStore.open(file)) { // the file says int8
+            assertEquals(EmbeddingStore.Encoding.INT8, q.encoding());
+            assertEquals(40, q.size());
+            assertEquals(128, q.get("p0").length);
+        }
+    }
+
+    @Test
+    public void existingFileKeepsItsEncodingUntilCleared() throws IOException {
+        try (EmbeddingStore store = EmbeddingStore.open(file)) {
+            store.put("Ali", unit(1, 0));
+        }
+        try (EmbeddingStore store = EmbeddingStore.open(file, new ExactFaceIndex(), EmbeddingStore.Encoding.INT8)) {
+            assertEquals(EmbeddingStore.Encoding.FLOAT32, store.encoding());
+            assertArrayEquals(unit(1, 0), store.get("Ali"), 0f);
+
+            store.clear();
+            store.put("Sara", unit(0, 1));
+            assertEquals(EmbeddingStore.Encoding.INT8, store.encoding());
+            assertEquals(1f, store.search(unit(0, 1), 1).get(0).similarity, 1e-2f);
+        }
+    }
+}
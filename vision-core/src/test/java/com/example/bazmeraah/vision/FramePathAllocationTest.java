@@ -0,0 +1,141 @@
+package com.example.bazmeraah.vision;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the per-frame JVM side of VisionEngine (tensor packing, YOLO
+ * decoding and NMS over a reused DetectionBuffer) allocates nothing once warm.
+ */
+public class FramePathAllocationTest {
+
+    private static final int INPUT = 640;
+    private static final int CLASSES = 601;
+    private static final int CHANNELS = 4 + CLASSES;
+    private static final int ANCHORS = 8400;
+
+    private final Random random = new Random(7);
+    private final DetectionBuffer candidates = new DetectionBuffer(ANCHORS);
+    private final YoloDecoder decoder = new YoloDecoder(labels(),
+            new HashSet<>(Arrays.asList("Label 3", "Label 42", "Label 77")),
+            0.22f, 0.40f, 0.01f);
+    private final NonMaxSuppression nms = new NonMaxSuppression(0.35f, 50);
+
+    @Test
+    public void steadyStateFloatFramesAllocateNothing() {
+
+        int[] pixels = randomPixels();
+        float[] output = syntheticOutput();
+
+        ByteBuffer input = ByteBuffer.allocateDirect(INPUT * INPUT * 3 * 4);
+        input.order(ByteOrder.nativeOrder());
+
+        assertNoSteadyStateAllocation(() -> {
+            TensorPacker.packFloatRgb(pixels, pixels.length, input);
+            decoder.decode(output, CHANNELS, ANCHORS, true, candidates);
+            suppress();
+        });
+    }
+
+    @Test
+    public void steadyStateQuantizedFramesAllocateNothing() {
+
+        int[] pixels = randomPixels();
+        float scale = 1f / 255f;
+        int zeroPoint = -128;
+
+        float[] floats = syntheticOutput();
+        byte[] output = new byte[floats.length];
+        for (int i = 0; i < floats.length; i++) {
+            output[i] = (byte) Math.max(-128, Math.min(127, Math.round(floats[i] / scale) + zeroPoint));
+        }
+
+        byte[] table = TensorPacker.quantizationTable(scale, zeroPoint, true);
+        ByteBuffer input = ByteBuffer.allocateDirect(INPUT * INPUT * 3);
+
+        assertNoSteadyStateAllocation(() -> {
+            TensorPacker.packQuantizedRgb(pixels, pixels.length, table, input);
+            decoder.decodeQuantized(output, CHANNELS, ANCHORS, true, true, scale, zeroPoint, candidates);
+            suppress();
+        });
+    }
+
+    private void suppress() {
+        nms.apply(candidates);
+    }
+
+    private void assertNoSteadyStateAllocation(Runnable frame) {
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assertTrue("allocation counter not supported on this JVM",
+                threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        // warm-up, lets the JIT settle
+        for (int i = 0; i < 100; i++) frame.run();
+
+        // the JVM itself can charge a few stray bytes to the thread now and then
+        // (deoptimisation, OSR), so measure several batches and keep the cleanest
+        long threadId = Thread.currentThread().getId();
+        long best = Long.MAX_VALUE;
+
+        for (int batch = 0; batch < 5; batch++) {
+            long before = threads.getThreadAllocatedBytes(threadId);
+
+            for (int i = 0; i < 50; i++) frame.run();
+
+            long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+            // one real per-frame buffer would be kilobytes per frame
+            assertTrue("batch allocated " + allocated + " bytes", allocated < 1024);
+            best = Math.min(best, allocated);
+        }
+
+        assertTrue("frames produced no detections", candidates.size() > 0);
+        assertEquals("bytes allocated over 50 warm frames", 0, best);
+    }
+
+    private static List<String> labels() {
+        List<String> labels = new ArrayList<>();
+        for (int i = 0; i < CLASSES; i++) labels.add("Label " + i);
+        return labels;
+    }
+
+    private int[] randomPixels() {
+        int[] pixels = new int[INPUT * INPUT];
+        for (int i = 0; i < pixels.length; i++) pixels[i] = random.nextInt();
+        return pixels;
+    }
+
+    // transposed [4 + classes][anchors], a handful of confident anchors
+    private float[] syntheticOutput() {
+        float[] out = new float[CHANNELS * ANCHORS];
+
+        for (int i = 0; i < ANCHORS; i++) {
+            out[i] = random.nextFloat();
+            out[ANCHORS + i] = random.nextFloat();
+            out[2 * ANCHORS + i] = 0.1f + random.nextFloat() * 0.3f;
+            out[3 * ANCHORS + i] = 0.1f + random.nextFloat() * 0.3f;
+            for (int c = 4; c < CHANNELS; c++) {
+                out[c * ANCHORS + i] = random.nextFloat() * 0.05f;
+            }
+        }
+
+        for (int i = 0; i < ANCHORS; i += 97) {
+            out[(4 + (i % CLASSES)) * ANCHORS + i] = 0.3f + random.nextFloat() * 0.6f;
+        }
+        return out;
+    }
+}
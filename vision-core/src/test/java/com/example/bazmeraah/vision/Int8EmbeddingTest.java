@@ -0,0 +1,66 @@
+package com.example.bazmeraah.vision;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class Int8EmbeddingTest {
+
+    private static final float THRESHOLD = 0.9f; // FaceEngine's L2 match threshold
+
+    private static float[] randomUnit(Random random, int dim) {
+        float[] v = new float[dim];
+        for (int i = 0; i < dim; i++) v[i] = (float) random.nextGaussian();
+        return EmbeddingMath.normalize(v);
+    }
+
+    private static float l2(float similarity) {
+        return (float) Math.sqrt(Math.max(0f, 2f - 2f * similarity));
+    }
+
+    @Test
+    public void roundTripIsWithinHalfAStep() {
+        float[] v = randomUnit(new Random(1), 128);
+        byte[] codes = new byte[v.length];
+        float scale = Int8Embedding.quantize(v, codes);
+
+        float[] back = Int8Embedding.dequantize(codes, scale);
+        for (int i = 0; i < v.length; i++) assertEquals(v[i], back[i], scale / 2 + 1e-7f);
+    }
+
+    @Test
+    public void zeroVectorStaysZero() {
+        byte[] codes = {5, 5, 5};
+        assertEquals(0f, Int8Embedding.quantize(new float[3], codes), 0f);
+        assertArrayEquals(new byte[3], codes);
+    }
+
+    // faces at L2 0.3 to 1.3 from the query, the band where the threshold sits
+    @Test
+    public void matchDecisionsAgreeWithFloat() {
+        Random random = new Random(2);
+        byte[] codes = new byte[128];
+        int pairs = 20_000, flips = 0;
+        float worst = 0f;
+
+        for (int n = 0; n < pairs; n++) {
+            float[] saved = randomUnit(random, 128);
+            float[] query = saved.clone();
+            float sigma = 0.03f + 0.1f * random.nextFloat();
+            for (int i = 0; i < query.length; i++) query[i] += sigma * (float) random.nextGaussian();
+            EmbeddingMath.normalize(query);
+
+            float exact = l2(EmbeddingMatrix.dot(query, saved, 0, 128));
+            float scale = Int8Embedding.quantize(saved, codes);
+            float quantized = l2(Int8Embedding.dot(query, codes, scale));
+
+            worst = Math.max(worst, Math.abs(exact - quantized));
+            if ((exact < THRESHOLD) != (quantized < THRESHOLD)) flips++;
+        }
+
+        assertTrue("worst L2 error " + worst, worst < 0.01f);
+        assertTrue(flips + " of " + pairs + " decisions flipped", flips <= pairs / 500);
+    }
+}
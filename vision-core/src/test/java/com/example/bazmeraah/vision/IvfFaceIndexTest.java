@@ -0,0 +1,230 @@
+package com.example.bazmeraah.vision;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class IvfFaceIndexTest {
+
+    private File dir;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("ivf").toFile();
+        file = new File(dir, "faces.ivf");
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) for (File f : files) f.delete();
+        dir.delete();
+    }
+
+    private static float[][] randomUnit(int count, int dim, long seed) {
+        Random random = new Random(seed);
+        float[][] rows = new float[count][dim];
+        for (float[] row : rows) {
+            for (int i = 0; i < dim; i++) row[i] = (float) random.nextGaussian();
+            EmbeddingMath.normalize(row);
+        }
+        return rows;
+    }
+
+    // the same face on another day: cosine about 0.8 to the enrolled one
+    private static float[] noisy(float[] enrolled, Random random) {
+        float[] q = enrolled.clone();
+        for (int i = 0; i < q.length; i++) q[i] += (float) random.nextGaussian() * 0.06f;
+        return EmbeddingMath.normalize(q);
+    }
+
+    @Test
+    public void smallIndexIsExact() {
+        float[][] rows = randomUnit(300, 32, 1);
+        IvfFaceIndex ivf = new IvfFaceIndex(1);
+        ExactFaceIndex exact = new ExactFaceIndex();
+        for (int i = 0; i < rows.length; i++) {
+            ivf.put("p" + i, rows[i]);
+            exact.put("p" + i, rows[i]);
+        }
+        assertEquals(1, ivf.lists());
+
+        float[] query = randomUnit(1, 32, 2)[0];
+        List<EmbeddingMatrix.Hit> expected = exact.search(query, 3);
+        List<EmbeddingMatrix.Hit> hits = ivf.search(query, 3);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(expected.get(i).name, hits.get(i).name);
+            assertEquals(expected.get(i).margin, hits.get(i).margin, 1e-6f);
+        }
+    }
+
+    @Test
+    public void trainedIndexKeepsRecall() throws InterruptedException {
+        float[][] rows = randomUnit(3000, 64, 3);
+        IvfFaceIndex ivf = new IvfFaceIndex(IvfFaceIndex.DEFAULT_NPROBE);
+        ExactFaceIndex exact = new ExactFaceIndex();
+        for (int i = 0; i < rows.length; i++) {
+            ivf.put("p" + i, rows[i]);
+            exact.put("p" + i, rows[i]);
+        }
+        ivf.awaitTraining();
+        assertTrue(ivf.lists() > 1);
+
+        Random random = new Random(4);
+        int agree = 0, queries = 300;
+        for (int q = 0; q < queries; q++) {
+            float[] query = noisy(rows[random.nextInt(rows.length)], random);
+            if (ivf.search(query, 1).get(0).name.equals(exact.search(query, 1).get(0).name)) agree++;
+        }
+        assertTrue("recall " + agree + "/" + queries, agree >= queries * 0.95);
+    }
+
+    @Test
+    public void insertsAndDeletesAfterTraining() throws InterruptedException {
+        float[][] rows = randomUnit(IvfFaceIndex.TRAIN_MIN + 100, 32, 5);
+        IvfFaceIndex ivf = new IvfFaceIndex(4);
+        for (int i = 0; i < rows.length; i++) ivf.put("p" + i, rows[i]);
+        ivf.awaitTraining();
+
+        assertTrue(ivf.remove("p7"));
+        assertFalse(ivf.remove("p7"));
+        assertEquals(rows.length - 1, ivf.size());
+        assertNotEquals("p7", ivf.search(rows[7], 1).get(0).name);
+
+        ivf.put("p8", rows[9]); // replaced, not duplicated
+        assertEquals(rows.length - 1, ivf.size());
+        assertEquals(1f, ivf.search(rows[9], 1).get(0).similarity, 1e-5f);
+
+        ivf.put("new", rows[7]);
+        assertEquals("new", ivf.search(rows[7], 1).get(0).name);
+    }
+
+    @Test
+    public void centroidsSurviveReopening() throws Exception {
+        float[][] rows = randomUnit(IvfFaceIndex.TRAIN_MIN, 32, 6);
+        IvfFaceIndex ivf = IvfFaceIndex.open(file, 4);
+        for (int i = 0; i < rows.length; i++) ivf.put("p" + i, rows[i]);
+        ivf.awaitTraining(); // writes the centroids
+
+        int lists = ivf.lists();
+        assertTrue(lists > 1);
+        assertTrue(file.exists());
+
+        IvfFaceIndex reopened = IvfFaceIndex.open(file, 4);
+        assertEquals(lists, reopened.lists());
+        assertEquals(0, reopened.size());
+        for (int i = 0; i < rows.length; i++) reopened.put("p" + i, rows[i]);
+        assertEquals(lists, reopened.lists()); // not retrained
+        assertEquals("p42", reopened.search(rows[42], 1).get(0).name);
+
+        reopened.clear();
+        reopened.flush();
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void unreadableFileStartsUntrained() throws IOException {
+        Files.write(file.toPath(), new byte[]{1, 2, 3});
+        IvfFaceIndex ivf = IvfFaceIndex.open(file, 4);
+        assertEquals(1, ivf.lists());
+        assertFalse(file.exists());
+
+        ivf.put("Ali", EmbeddingMath.normalize(new float[]{1, 0}));
+        assertEquals("Ali", ivf.search(new float[]{1, 0}, 1).get(0).name);
+    }
+
+    @Test
+    public void storeSearchesThroughTheIndex() throws IOException {
+        File faces = new File(dir, "faces.bin");
+        float[][] rows = randomUnit(IvfFaceIndex.TRAIN_MIN + 50, 32, 7);
+
+        try (EmbeddingStore store = EmbeddingStore.open(faces, IvfFaceIndex.open(file, 8, Runnable::run))) {
+            for (int i = 0; i < rows.length; i++) store.put("p" + i, rows[i]);
+            float[] extra = randomUnit(1, 32, 8)[0];
+            store.add("p3", extra, 5);
+            assertEquals("p3", store.search(extra, 1).get(0).name); // by its second sample
+        }
+        assertTrue(file.exists());
+
+        try (EmbeddingStore store = EmbeddingStore.open(faces, IvfFaceIndex.open(file, 8))) {
+            assertEquals(rows.length, store.size());
+            assertEquals("p99", store.search(rows[99], 1).get(0).name);
+        }
+    }
+
+    @Test
+    public void storeDeletesReachTheCentroidsFile() throws IOException {
+        File faces = new File(dir, "faces.bin");
+        float[][] rows = randomUnit(IvfFaceIndex.TRAIN_MIN, 32, 12);
+
+        try (EmbeddingStore store = EmbeddingStore.open(faces, IvfFaceIndex.open(file, 8, Runnable::run))) {
+            for (int i = 0; i < rows.length; i++) store.put("p" + i, rows[i]);
+            assertTrue(file.exists());
+
+            assertTrue(store.remove("p0")); // below TRAIN_MIN, merged back to one list
+            assertFalse(file.exists());
+        }
+    }
+
+    @Test
+    public void trainingRunsOffTheWritingThread() {
+        List<Runnable> pending = new ArrayList<>();
+        IvfFaceIndex ivf = new IvfFaceIndex(null, 8, pending::add);
+        float[][] rows = randomUnit(IvfFaceIndex.TRAIN_MIN + 1, 32, 9);
+
+        for (int i = 0; i < IvfFaceIndex.TRAIN_MIN; i++) ivf.put("p" + i, rows[i]);
+        assertEquals(1, pending.size());
+        assertEquals(1, ivf.lists()); // still exact until it is trained
+
+        ivf.put("late", rows[IvfFaceIndex.TRAIN_MIN]); // not in the training snapshot
+        ivf.remove("p0");
+        pending.get(0).run();
+
+        assertTrue(ivf.lists() > 1);
+        assertEquals(IvfFaceIndex.TRAIN_MIN, ivf.size());
+        assertEquals("late", ivf.search(rows[IvfFaceIndex.TRAIN_MIN], 1).get(0).name);
+        assertNotEquals("p0", ivf.search(rows[0], 1).get(0).name);
+    }
+
+    @Test
+    public void clearDiscardsAPendingTraining() {
+        List<Runnable> pending = new ArrayList<>();
+        IvfFaceIndex ivf = new IvfFaceIndex(null, 8, pending::add);
+        float[][] rows = randomUnit(IvfFaceIndex.TRAIN_MIN, 32, 10);
+        for (int i = 0; i < rows.length; i++) ivf.put("p" + i, rows[i]);
+
+        ivf.clear();
+        ivf.put("Ali", rows[0]);
+        pending.get(0).run();
+
+        assertEquals(1, ivf.lists());
+        assertEquals("Ali", ivf.search(rows[0], 1).get(0).name);
+    }
+
+    @Test
+    public void deletesRetrainThenMerge() {
+        IvfFaceIndex ivf = new IvfFaceIndex(null, 8, Runnable::run);
+        float[][] rows = randomUnit(2 * IvfFaceIndex.TRAIN_MIN, 32, 11);
+        for (int i = 0; i < rows.length; i++) ivf.put("p" + i, rows[i]);
+        int trained = ivf.lists(); // trained on all of them
+
+        int i = rows.length;
+        while (ivf.size() > IvfFaceIndex.TRAIN_MIN) ivf.remove("p" + --i);
+        assertNotEquals(trained, ivf.lists()); // retrained on half
+        assertEquals((int) Math.sqrt(IvfFaceIndex.TRAIN_MIN), ivf.lists());
+
+        ivf.remove("p" + --i);
+        assertEquals(1, ivf.lists()); // exact again
+        assertEquals("p3", ivf.search(rows[3], 1).get(0).name);
+    }
+}
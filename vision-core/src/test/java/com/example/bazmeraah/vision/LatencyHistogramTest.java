@@ -0,0 +1,74 @@
+package com.example.bazmeraah.vision;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsAreMonotonicAndContainTheirValues() {
+        int last = -1;
+        for (long us = 0; us < 1_000_000; us += 1 + us / 64) {
+            int b = LatencyHistogram.bucket(us);
+            assertTrue(b >= last);
+            assertEquals(us, LatencyHistogram.midpoint(b), Math.max(0.5, us * 0.035));
+            last = b;
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucket(Long.MAX_VALUE / 1000));
+    }
+
+    @Test
+    public void percentilesMatchSortedSamples() {
+        Random random = new Random(13);
+        LatencyHistogram h = new LatencyHistogram();
+        long[] micros = new long[5000];
+
+        for (int i = 0; i < micros.length; i++) {
+            // log-normal-ish: mostly 10-50 ms, with a long tail
+            micros[i] = (long) (20_000 * Math.exp(random.nextGaussian() * 0.6));
+            h.record(micros[i] * 1000);
+        }
+        Arrays.sort(micros);
+
+        for (double q : new double[]{0.5, 0.95, 0.99}) {
+            double exact = micros[(int) Math.ceil(q * micros.length) - 1] / 1000.0;
+            assertEquals(exact, h.percentileMs(q), exact * 0.035);
+        }
+        assertEquals(micros.length, h.count());
+        assertEquals(micros[micros.length - 1] / 1000.0, h.maxMs(), 1e-9);
+    }
+
+    @Test
+    public void emptyAndResetReportZero() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.percentileMs(0.5), 0);
+
+        h.record(5_000_000);
+        h.reset();
+
+        assertEquals(0, h.count());
+        assertEquals(0, h.percentileMs(0.99), 0);
+        assertEquals(0, h.maxMs(), 0);
+    }
+
+    @Test
+    public void reportGroupsStagesByPipeline() {
+        LatencyStats stats = new LatencyStats();
+        stats.stage("vision.fetch").record(1_000_000);
+        stats.stage("face.detect").record(2_000_000);
+        stats.stage("vision.infer").record(3_000_000);
+        stats.stage("currency.infer");   // no samples, left out
+
+        String[] lines = stats.report().split("\n");
+
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].startsWith("face.detect"));
+        assertTrue(lines[1].startsWith("vision.fetch"));
+        assertTrue(lines[2].startsWith("vision.infer"));
+        assertSame(stats.stage("vision.infer"), stats.stage("vision.infer"));
+    }
+}
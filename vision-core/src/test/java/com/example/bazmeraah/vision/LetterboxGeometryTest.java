@@ -0,0 +1,54 @@
+package com.example.bazmeraah.vision;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LetterboxGeometryTest {
+
+    @Test
+    public void wideFrameIsPaddedTopAndBottom() {
+        LetterboxGeometry g = new LetterboxGeometry().fit(1280, 720, 640, 640);
+
+        assertEquals(0.5f, g.scale, 1e-6f);
+        assertEquals(640, g.scaledWidth);
+        assertEquals(360, g.scaledHeight);
+        assertEquals(0f, g.padX, 1e-6f);
+        assertEquals(140f, g.padY, 1e-6f);
+    }
+
+    @Test
+    public void mapsNormalisedBoxBackOntoSourceFrame() {
+        LetterboxGeometry g = new LetterboxGeometry().fit(1280, 720, 640, 640);
+
+        // centre of the input is the centre of the frame
+        assertEquals(640f, g.toSourceX(0.5f), 1e-3f);
+        assertEquals(360f, g.toSourceY(0.5f), 1e-3f);
+
+        // the top padding edge is the frame's first row
+        assertEquals(0f, g.toSourceY(140f / 640f), 1e-3f);
+
+        assertEquals(256f, g.toSourceWidth(0.2f), 1e-3f);
+        assertEquals(256f, g.toSourceHeight(0.2f), 1e-3f);
+    }
+
+    @Test
+    public void sampleSizeKeepsDecodedFrameAtLeastModelSize() {
+        assertEquals(2, LetterboxGeometry.sampleSize(1600, 1200, 640, 640));
+        assertEquals(2, LetterboxGeometry.sampleSize(1280, 720, 640, 640));
+        assertEquals(1, LetterboxGeometry.sampleSize(640, 480, 640, 640));
+        assertEquals(1, LetterboxGeometry.sampleSize(320, 240, 640, 640));
+        assertEquals(4, LetterboxGeometry.sampleSize(2592, 1944, 640, 640));
+
+        for (int w = 320; w <= 4000; w += 37) {
+            int h = w * 3 / 4;
+            int s = LetterboxGeometry.sampleSize(w, h, 640, 640);
+            float atSample = new LetterboxGeometry().fit(w / s, h / s, 640, 640).scale;
+            float atNext = new LetterboxGeometry().fit(w / (2 * s), h / (2 * s), 640, 640).scale;
+
+            // still only shrunk at s, but upscaled at the next power of two
+            assertTrue(w + "x" + h + " / " + s, s == 1 || atSample <= 1f);
+            assertTrue(w + "x" + h + " / " + s, atNext > 1f);
+        }
+    }
+}
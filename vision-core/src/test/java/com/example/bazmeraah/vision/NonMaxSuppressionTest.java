@@ -0,0 +1,89 @@
+package com.example.bazmeraah.vision;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class NonMaxSuppressionTest {
+
+    private final Random random = new Random(3);
+
+    @Test
+    public void selectTopReturnsBestInDescendingOrder() {
+        DetectionBuffer d = randomBoxes(500, 0.05f, 5);
+
+        float[] sorted = Arrays.copyOf(d.score, d.size());
+        Arrays.sort(sorted);
+
+        int n = d.selectTop(20);
+
+        assertEquals(20, n);
+        for (int i = 0; i < n; i++) {
+            assertEquals(sorted[sorted.length - 1 - i], d.score[i], 0f);
+        }
+        assertEquals(500, d.size());
+    }
+
+    @Test
+    public void gridMatchesGreedyOnDenseScenes() {
+        for (int round = 0; round < 20; round++) {
+            for (boolean classAware : new boolean[]{false, true}) {
+                DetectionBuffer greedy = randomBoxes(400, 0.02f + round * 0.01f, 4);
+                DetectionBuffer grid = copyOf(greedy);
+
+                new NonMaxSuppression(0.45f, 300).classAware(classAware)
+                        .gridThreshold(Integer.MAX_VALUE).apply(greedy);
+                new NonMaxSuppression(0.45f, 300).classAware(classAware)
+                        .gridThreshold(1).apply(grid);
+
+                assertEquals(greedy.size(), grid.size());
+                for (int i = 0; i < greedy.size(); i++) {
+                    assertEquals(greedy.score[i], grid.score[i], 0f);
+                    assertEquals(greedy.x[i], grid.x[i], 0f);
+                    assertEquals(greedy.classId[i], grid.classId[i]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void classAwareKeepsOverlappingBoxesOfOtherClasses() {
+        DetectionBuffer d = new DetectionBuffer(4);
+        d.add(0.5f, 0.5f, 0.2f, 0.2f, 0.9f, 1);
+        d.add(0.5f, 0.5f, 0.2f, 0.2f, 0.8f, 2);
+        d.add(0.51f, 0.5f, 0.2f, 0.2f, 0.7f, 1);
+
+        assertEquals(1, new NonMaxSuppression(0.5f, 10).apply(copyOf(d)));
+        assertEquals(2, new NonMaxSuppression(0.5f, 10).classAware(true).apply(d));
+        assertEquals(2, d.classId[1]);
+    }
+
+    @Test
+    public void topKCapsCandidates() {
+        DetectionBuffer d = randomBoxes(1000, 0.001f, 1);
+
+        // boxes this small barely overlap, so the cap is what limits the output
+        assertEquals(50, new NonMaxSuppression(0.5f, 50).apply(d));
+    }
+
+    private DetectionBuffer randomBoxes(int n, float size, int classes) {
+        DetectionBuffer d = new DetectionBuffer(n);
+        for (int i = 0; i < n; i++) {
+            d.add(random.nextFloat(), random.nextFloat(),
+                    size * (0.5f + random.nextFloat()), size * (0.5f + random.nextFloat()),
+                    random.nextFloat(), random.nextInt(classes));
+        }
+        return d;
+    }
+
+    private static DetectionBuffer copyOf(DetectionBuffer src) {
+        DetectionBuffer d = new DetectionBuffer(src.capacity());
+        for (int i = 0; i < src.size(); i++) {
+            d.add(src.x[i], src.y[i], src.w[i], src.h[i], src.score[i], src.classId[i]);
+        }
+        return d;
+    }
+}
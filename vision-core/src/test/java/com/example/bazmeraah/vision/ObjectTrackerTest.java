@@ -0,0 +1,88 @@
+package com.example.bazmeraah.vision;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ObjectTrackerTest {
+
+    private final ObjectTracker tracker = new ObjectTracker(0.5f, 0.3f, 2, 1000);
+    private final DetectionBuffer frame = new DetectionBuffer(8);
+    private final List<ObjectTracker.Track> fresh = new ArrayList<>();
+
+    @Test
+    public void movingObjectKeepsItsIdAndIsAnnouncedOnce() {
+        int id = -1;
+
+        for (int i = 0; i < 10; i++) {
+            frame.clear();
+            frame.add(0.2f + i * 0.02f, 0.5f, 0.2f, 0.2f, 0.8f, 3);
+            tracker.update(frame, i * 100L);
+
+            fresh.clear();
+            int announced = tracker.takeUnannounced(fresh);
+
+            if (i == 1) {
+                assertEquals(1, announced);
+                id = fresh.get(0).id;
+            } else {
+                assertEquals("frame " + i, 0, announced);
+            }
+        }
+
+        assertEquals(1, tracker.size());
+        assertTrue(tracker.isSettled());
+
+        // the filter has picked up the motion and keeps going without detections
+        frame.clear();
+        fresh.clear();
+        tracker.predict(1100);
+        tracker.update(frame, 1100);
+        assertEquals(1, tracker.size());
+        assertFalse(tracker.isSettled());
+        assertEquals(0, tracker.takeUnannounced(fresh));
+        assertTrue(id > 0);
+    }
+
+    @Test
+    public void weakDetectionsOnlyExtendExistingTracks() {
+        frame.clear();
+        frame.add(0.5f, 0.5f, 0.2f, 0.2f, 0.3f, 1);
+        tracker.update(frame, 0);
+        assertEquals(0, tracker.size());
+
+        frame.clear();
+        frame.add(0.5f, 0.5f, 0.2f, 0.2f, 0.9f, 1);
+        tracker.update(frame, 100);
+        tracker.update(frame, 200);
+
+        frame.clear();
+        frame.add(0.51f, 0.5f, 0.2f, 0.2f, 0.3f, 1);
+        tracker.update(frame, 300);
+
+        assertEquals(1, tracker.size());
+        assertTrue(tracker.isSettled());
+    }
+
+    @Test
+    public void otherClassStartsNewTrackAndLostTracksExpire() {
+        frame.clear();
+        frame.add(0.5f, 0.5f, 0.2f, 0.2f, 0.9f, 1);
+        tracker.update(frame, 0);
+        tracker.update(frame, 100);
+
+        frame.clear();
+        frame.add(0.5f, 0.5f, 0.2f, 0.2f, 0.9f, 2);
+        tracker.update(frame, 200);
+        tracker.update(frame, 300);
+
+        assertEquals(2, tracker.size());
+        assertEquals(2, tracker.takeUnannounced(fresh));
+
+        tracker.update(frame, 1500);
+        assertEquals(1, tracker.size());
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.bazmeraah.vision;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SceneCacheTest {
+
+    private static final int W = 160;
+    private static final int H = 120;
+
+    private final Random random = new Random(5);
+    private final int[] cells = new int[PerceptualHash.COLS * PerceptualHash.ROWS];
+
+    @Test
+    public void noisyCopyOfSceneHashesClose() {
+        int[] scene = scene(0);
+        int[] noisy = scene.clone();
+        for (int i = 0; i < noisy.length; i++) noisy[i] = shift(noisy[i], random.nextInt(9) - 4);
+
+        long a = PerceptualHash.dHash(scene, W, H, cells);
+        long b = PerceptualHash.dHash(noisy, W, H, cells);
+
+        assertTrue(PerceptualHash.distance(a, b) <= 6);
+    }
+
+    @Test
+    public void differentSceneHashesFar() {
+        long a = PerceptualHash.dHash(scene(0), W, H, cells);
+        long b = PerceptualHash.dHash(scene(1), W, H, cells);
+
+        assertTrue(PerceptualHash.distance(a, b) > 6);
+    }
+
+    @Test
+    public void cacheCountsHitsAndMissesAndExpires() {
+        SceneCache<String> cache = new SceneCache<>(6, 1000);
+        long hash = PerceptualHash.dHash(scene(0), W, H, cells);
+
+        assertNull(cache.lookup(hash, 0));
+        cache.store(hash, "I see a Chair", 0);
+
+        assertEquals("I see a Chair", cache.lookup(hash ^ 0b101, 500));
+        assertNull(cache.lookup(~hash, 600));
+        assertNull(cache.lookup(hash, 1500));
+
+        assertEquals(1, cache.hits());
+        assertEquals(3, cache.misses());
+        assertEquals(0.25f, cache.hitRate(), 1e-6f);
+    }
+
+    // smooth gradients plus a few blocks; the seed picks the layout
+    private static int[] scene(int seed) {
+        Random r = new Random(seed);
+        int[] px = new int[W * H];
+        int angle = r.nextInt(4);
+
+        for (int y = 0; y < H; y++) {
+            for (int x = 0; x < W; x++) {
+                int v = angle == 0 ? x * 255 / W : angle == 1 ? y * 255 / H : (x + y) * 255 / (W + H);
+                px[y * W + x] = 0xFF000000 | v << 16 | v << 8 | v;
+            }
+        }
+
+        for (int b = 0; b < 6; b++) {
+            int bx = r.nextInt(W - 30), by = r.nextInt(H - 30), color = r.nextInt() | 0xFF000000;
+            for (int y = by; y < by + 30; y++) {
+                for (int x = bx; x < bx + 30; x++) px[y * W + x] = color;
+            }
+        }
+        return px;
+    }
+
+    private static int shift(int pixel, int d) {
+        int r = Math.max(0, Math.min(255, ((pixel >> 16) & 0xFF) + d));
+        int g = Math.max(0, Math.min(255, ((pixel >> 8) & 0xFF) + d));
+        int b = Math.max(0, Math.min(255, (pixel & 0xFF) + d));
+        return 0xFF000000 | r << 16 | g << 8 | b;
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.bazmeraah.vision;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * YoloDecoder against the previous per-anchor decode (strided class scan
+ * plus a label lookup and HashSet check per anchor), on an OIV7-sized
+ * transposed output: both must produce the same detections. Timings are in
+ * the benchmarks module, YoloDecodeBenchmark.
+ */
+public class YoloDecoderTest {
+
+    private static final int CLASSES = 601;
+    private static final int CHANNELS = 4 + CLASSES;
+    private static final int ANCHORS = 8400;
+
+    private static final float THRESHOLD = 0.22f;
+    private static final float OTHER_THRESHOLD = 0.40f;
+    private static final float MIN_AREA = 0.01f;
+
+    private final Random random = new Random(11);
+    private final List<String> labels = labels();
+    private final Set<String> allowed =
+            new HashSet<>(Arrays.asList("Label 3", "Label 42", "Label 77", "Label 300"));
+
+    @Test
+    public void decodeMatchesPrevious() {
+
+        float[] output = syntheticOutput();
+
+        YoloDecoder decoder = new YoloDecoder(labels, allowed, THRESHOLD, OTHER_THRESHOLD, MIN_AREA);
+        DetectionBuffer current = new DetectionBuffer(ANCHORS);
+        DetectionBuffer previous = new DetectionBuffer(ANCHORS);
+
+        decoder.decode(output, CHANNELS, ANCHORS, true, current);
+        legacyDecode(output, CHANNELS, ANCHORS, previous);
+
+        assertTrue("no detections to compare", current.size() > 0);
+        assertSame(previous, current);
+    }
+
+    @Test
+    public void reusedBufferMatchesAFreshDecode() {
+
+        YoloDecoder decoder = new YoloDecoder(labels, allowed, THRESHOLD, OTHER_THRESHOLD, MIN_AREA);
+        DetectionBuffer reused = new DetectionBuffer(ANCHORS);
+        DetectionBuffer previous = new DetectionBuffer(ANCHORS);
+
+        decoder.decode(syntheticOutput(), CHANNELS, ANCHORS, true, reused);
+        float[] output = syntheticOutput(); // the next frame
+        decoder.decode(output, CHANNELS, ANCHORS, true, reused);
+        legacyDecode(output, CHANNELS, ANCHORS, previous);
+
+        assertSame(previous, reused);
+    }
+
+    private static void assertSame(DetectionBuffer expected, DetectionBuffer actual) {
+        assertEquals("detection count", expected.size(), actual.size());
+
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals("class " + i, expected.classId[i], actual.classId[i]);
+            assertEquals("score " + i, expected.score[i], actual.score[i], 0f);
+            assertEquals("x " + i, expected.x[i], actual.x[i], 0f);
+            assertEquals("y " + i, expected.y[i], actual.y[i], 0f);
+            assertEquals("w " + i, expected.w[i], actual.w[i], 0f);
+            assertEquals("h " + i, expected.h[i], actual.h[i], 0f);
+        }
+    }
+
+    /* ================= PREVIOUS DECODE ================= */
+
+    private void legacyDecode(float[] output, int dim1, int dim2, DetectionBuffer out) {
+
+        out.clear();
+
+        for (int i = 0; i < dim2; i++) {
+
+            float bestScore = 0f;
+            int bestClass = -1;
+
+            for (int c = 4; c < dim1; c++) {
+                float score = output[i + c * dim2];
+                if (score > bestScore) {
+                    bestScore = score;
+                    bestClass = c - 4;
+                }
+            }
+
+            String label = (bestClass >= 0 && bestClass < labels.size())
+                    ? labels.get(bestClass)
+                    : "object";
+
+            if (!allowed.contains(label) && bestScore < OTHER_THRESHOLD) continue;
+
+            if (bestScore > THRESHOLD) {
+                float w = output[i + 2 * dim2];
+                float h = output[i + 3 * dim2];
+                if (w * h < MIN_AREA) continue;
+
+                if (!out.add(output[i], output[i + dim2], w, h, bestScore, bestClass)) return;
+            }
+        }
+    }
+
+    /* ================= DATA ================= */
+
+    private static List<String> labels() {
+        List<String> labels = new ArrayList<>();
+        for (int i = 0; i < CLASSES; i++) labels.add("Label " + i);
+        return labels;
+    }
+
+    // transposed [4 + classes][anchors]; mostly background, some allowed and
+    // some disallowed confident anchors, a few of them below the area cut-off
+    private float[] syntheticOutput() {
+        float[] out = new float[CHANNELS * ANCHORS];
+
+        for (int i = 0; i < ANCHORS; i++) {
+            out[i] = random.nextFloat();
+            out[ANCHORS + i] = random.nextFloat();
+            out[2 * ANCHORS + i] = 0.05f + random.nextFloat() * 0.3f;
+            out[3 * ANCHORS + i] = 0.05f + random.nextFloat() * 0.3f;
+            for (int c = 4; c < CHANNELS; c++) {
+                out[c * ANCHORS + i] = random.nextFloat() * 0.05f;
+            }
+        }
+
+        for (int i = 0; i < ANCHORS; i += 37) {
+            int cls = (i / 37) % 3 == 0 ? 42 : random.nextInt(CLASSES);
+            out[(4 + cls) * ANCHORS + i] = 0.2f + random.nextFloat() * 0.7f;
+        }
+        return out;
+    }
+}